@@ -4,9 +4,13 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.example.rideshareapp.auth.Session;
 import org.example.rideshareapp.controllers.LoginController;
 import org.example.rideshareapp.controllers.MainController;
 import org.example.rideshareapp.db.DB;
+import org.example.rideshareapp.services.DispatchEngine;
+import org.example.rideshareapp.services.DriverService;
+import org.example.rideshareapp.services.EtaService;
 import org.example.rideshareapp.services.MapService;
 import org.example.rideshareapp.services.PaymentService;
 import org.example.rideshareapp.services.ProfileService;
@@ -41,50 +45,175 @@ public class Main extends Application {
         return instance;
     }
 
-    /** Shared profile management service. */
-    public static final ProfileService PROFILE_SERVICE = new ProfileService();
+    // Shared services are built on first use rather than when this class loads:
+    // several open files, start threads or hash a dummy password, and none of
+    // that should run on the launcher thread before the login screen shows.
+    // start() builds them in the background once the database is ready.
 
-    /** Shared payment processing service. */
-    public static final PaymentService PAYMENT_SERVICE = new PaymentService();
+    private static final class ProfileHolder {
+        static final ProfileService INSTANCE = new ProfileService();
+    }
+
+    private static final class PaymentHolder {
+        static final PaymentService INSTANCE = new PaymentService();
+    }
+
+    private static final class MapHolder {
+        static final MapService INSTANCE = new MapService();
+    }
+
+    private static final class DriverHolder {
+        static final DriverService INSTANCE = new DriverService();
+    }
+
+    private static final class RideRequestHolder {
+        static final RideRequestService INSTANCE = new RideRequestService(paymentService(), mapService());
+    }
+
+    /**
+     * Returns the shared profile management service.
+     *
+     * @return the profile service
+     */
+    public static ProfileService profileService() {
+        return ProfileHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the shared payment processing service.
+     *
+     * @return the payment service
+     */
+    public static PaymentService paymentService() {
+        return PaymentHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the shared map and distance calculation service.
+     *
+     * @return the map service
+     */
+    public static MapService mapService() {
+        return MapHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the shared travel time model, learned from completed rides.
+     *
+     * @return the ETA service
+     */
+    public static EtaService etaService() {
+        return EtaService.shared();
+    }
+
+    /**
+     * Returns the shared driver service, for the driver's side of rides.
+     *
+     * @return the driver service
+     */
+    public static DriverService driverService() {
+        return DriverHolder.INSTANCE;
+    }
 
-    /** Shared map and distance calculation service. */
-    public static final MapService MAP_SERVICE = new MapService();
+    /**
+     * Returns the shared ride request service.
+     *
+     * @return the ride request service
+     */
+    public static RideRequestService rideRequestService() {
+        return RideRequestHolder.INSTANCE;
+    }
 
-    /** Shared ride request service. */
-    public static final RideRequestService RIDE_REQUEST_SERVICE =
-            new RideRequestService(PAYMENT_SERVICE, MAP_SERVICE);
+    /** Session of the user logged in to this window, or null. */
+    private static volatile Session currentSession;
 
     /** Primary application window. */
     private Stage primaryStage;
 
     /**
-     * Initializes the application, ensures that the database exists,
-     * and loads the login screen as the default view.
+     * Returns the session of the user logged in to this window.
+     *
+     * @return the current session, or null if nobody is logged in
+     */
+    public static Session currentSession() {
+        return currentSession;
+    }
+
+    /**
+     * Records the session of the user who just logged in to this window.
+     *
+     * @param session the new session
+     */
+    public static void setCurrentSession(Session session) {
+        currentSession = session;
+    }
+
+    /**
+     * Initializes the application, starts preparing the database in the
+     * background, and loads the login screen as the default view.
      *
      * @param stage the primary stage provided by JavaFX
      * @throws Exception if the login screen cannot be loaded
      */
     @Override
     public void start(Stage stage) throws Exception {
+        long launched = System.nanoTime();
         this.primaryStage = stage;
 
-        try (var conn = DB.get()) {
-            System.out.println("✅ Database ready at: " +
-                    new java.io.File("data/app.db").getAbsolutePath());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // Warm the database in the background while the login screen renders,
+        // then build the shared services on the same thread so the first
+        // screen that needs one finds it ready.
+        DB.startup().whenComplete((v, e) -> {
+            if (e != null) {
+                e.printStackTrace();
+            } else {
+                System.out.println("✅ Database ready at: " +
+                        new java.io.File("data/app.db").getAbsolutePath());
+                warmServices();
+            }
+        });
 
         showLogin();
+        System.out.println("[Startup] Login screen shown in "
+                + (System.nanoTime() - launched) / 1_000_000 + " ms");
+    }
+
+    /** Builds the shared services; failures are left for their first real use to report. */
+    private static void warmServices() {
+        try {
+            profileService();
+            etaService();
+            driverService();
+            rideRequestService();
+        } catch (RuntimeException | ExceptionInInitializerError e) {
+            System.err.println("[Startup] Service warm-up failed: " + e);
+        }
+    }
+
+    /**
+     * Releases pooled database connections when the application exits.
+     */
+    @Override
+    public void stop() {
+        DispatchEngine.shutdown();
+        EtaService.shutdown();
+        DB.shutdown();
     }
 
     /**
      * Universal logout method used by both Driver and Rider interfaces.
-     * Reloads the login screen using the provided stage.
+     * Closes the current session and reloads the login screen using the
+     * provided stage.
      *
      * @param stage the window in which the login screen should be displayed
      */
     public void logout(Stage stage) {
+        Session session = currentSession;
+        if (session != null) {
+            profileService().logout(session.token());
+            currentSession = null;
+        }
+
         try {
             FXMLLoader loader = new FXMLLoader(
                     getClass().getResource("/org/example/rideshareapp/login.fxml")
@@ -0,0 +1,186 @@
+package org.example.rideshareapp.auth;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate-limits login attempts per username and per source, in memory.
+ *
+ * <p>Each username and each source gets a token bucket: an attempt spends
+ * one token, and tokens refill at a steady rate up to a burst size. An
+ * attempt is allowed only if both its source bucket and its username bucket
+ * have a token, so a burst of guesses is shed before it reaches the
+ * database or the password hasher.</p>
+ *
+ * <p>Buckets live in a fixed-size table of primitive arrays indexed by key
+ * hash, guarded by a fixed set of stripe locks. There is no global lock and
+ * nothing is allocated per attempt, and memory stays bounded no matter how
+ * many distinct usernames an attacker tries. Keys that hash to the same
+ * slot share a bucket; with the default table size that is rare, and it
+ * can only make throttling stricter, never looser.</p>
+ *
+ * <p>Username limits can differ per classification. They are read from the
+ * {@code rideshare.throttle.<classification>.burst} and
+ * {@code rideshare.throttle.<classification>.perMinute} system properties
+ * (for example {@code rideshare.throttle.driver.perMinute}), and source
+ * limits from {@code rideshare.throttle.source.burst} and
+ * {@code rideshare.throttle.source.perMinute}.</p>
+ */
+public class LoginThrottle {
+
+    /** Source used for attempts made from this process's own UI. */
+    public static final String LOCAL_SOURCE = "local";
+
+    /**
+     * A bucket configuration.
+     *
+     * @param burst     attempts allowed back to back
+     * @param perMinute sustained attempts allowed per minute
+     */
+    public record Limit(int burst, double perMinute) {
+    }
+
+    /**
+     * Snapshot of the throttle's counters.
+     *
+     * @param allowed          attempts let through
+     * @param rejectedUsername attempts refused by a username bucket
+     * @param rejectedSource   attempts refused by a source bucket
+     */
+    public record Stats(long allowed, long rejectedUsername, long rejectedSource) {
+    }
+
+    private static final class Holder {
+        static final LoginThrottle INSTANCE = new LoginThrottle(
+                Map.of("rider", limitFromProperties("rider", new Limit(5, 5)),
+                        "driver", limitFromProperties("driver", new Limit(5, 10))),
+                new Limit(5, 5),
+                limitFromProperties("source", new Limit(50, 600)),
+                1 << 16);
+    }
+
+    private static final int STRIPES = 64;
+
+    private final Map<String, Limit> perClassification;
+    private final Limit defaultLimit;
+    private final Limit sourceLimit;
+    private final Table users;
+    private final Table sources;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedUsername = new LongAdder();
+    private final LongAdder rejectedSource = new LongAdder();
+
+    /**
+     * Creates a throttle.
+     *
+     * @param perClassification username limits by lower-case classification
+     * @param defaultLimit      username limit for other classifications
+     * @param sourceLimit       limit per source
+     * @param slots             buckets per table, rounded up to a power of two
+     */
+    public LoginThrottle(Map<String, Limit> perClassification, Limit defaultLimit, Limit sourceLimit, int slots) {
+        this.perClassification = Map.copyOf(perClassification);
+        this.defaultLimit = defaultLimit;
+        this.sourceLimit = sourceLimit;
+        this.users = new Table(slots);
+        this.sources = new Table(Math.max(STRIPES, slots / 16));
+    }
+
+    /**
+     * Returns the process-wide throttle, configured from system properties.
+     *
+     * @return the shared throttle
+     */
+    public static LoginThrottle shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Records a login attempt and says whether it may proceed.
+     *
+     * @param username       the username being tried
+     * @param classification the classification being tried
+     * @param source         where the attempt comes from, such as a client address
+     * @return true if the attempt is within both limits
+     */
+    public boolean tryAcquire(String username, String classification, String source) {
+        long now = System.nanoTime();
+
+        if (!sources.tryTake(source == null ? LOCAL_SOURCE : source, sourceLimit, now)) {
+            rejectedSource.increment();
+            return false;
+        }
+
+        String cls = classification == null ? "" : classification.trim().toLowerCase(Locale.ROOT);
+        Limit limit = perClassification.getOrDefault(cls, defaultLimit);
+        // Case-folded so varying the case of a username does not buy new attempts.
+        String key = cls + '\u0000' + (username == null ? "" : username.trim().toLowerCase(Locale.ROOT));
+        if (!users.tryTake(key, limit, now)) {
+            rejectedUsername.increment();
+            return false;
+        }
+
+        allowed.increment();
+        return true;
+    }
+
+    /**
+     * Returns the throttle's counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(allowed.sum(), rejectedUsername.sum(), rejectedSource.sum());
+    }
+
+    private static Limit limitFromProperties(String name, Limit defaults) {
+        String prefix = "rideshare.throttle." + name + ".";
+        int burst = Integer.getInteger(prefix + "burst", defaults.burst());
+        String perMinute = System.getProperty(prefix + "perMinute");
+        return new Limit(burst, perMinute == null ? defaults.perMinute() : Double.parseDouble(perMinute));
+    }
+
+    /**
+     * Fixed-size table of token buckets. Slot {@code i} is guarded by
+     * {@code locks[i % STRIPES]}.
+     */
+    private static final class Table {
+        private final Object[] locks = new Object[STRIPES];
+        private final double[] tokens;
+        private final long[] updated;
+        private final int mask;
+
+        Table(int slots) {
+            int n = Integer.highestOneBit(Math.max(STRIPES, slots) - 1) << 1;
+            this.tokens = new double[n];
+            this.updated = new long[n];
+            this.mask = n - 1;
+            for (int i = 0; i < STRIPES; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        boolean tryTake(String key, Limit limit, long now) {
+            int h = key.hashCode() * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            synchronized (locks[slot & (STRIPES - 1)]) {
+                double t;
+                if (updated[slot] == 0) {
+                    t = limit.burst(); // untouched slot starts full
+                } else {
+                    double refill = (now - updated[slot]) / 60e9 * limit.perMinute();
+                    t = Math.min(limit.burst(), tokens[slot] + refill);
+                }
+                updated[slot] = now;
+                if (t < 1) {
+                    tokens[slot] = t;
+                    return false;
+                }
+                tokens[slot] = t - 1;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.rideshareapp.auth;
+
+/**
+ * Thrown when a login attempt is refused by the {@link LoginThrottle}
+ * before any credentials are checked.
+ */
+public class LoginThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception.
+     *
+     * @param message the detail message
+     */
+    public LoginThrottledException(String message) {
+        super(message);
+    }
+}
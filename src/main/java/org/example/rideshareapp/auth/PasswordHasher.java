@@ -0,0 +1,200 @@
+package org.example.rideshareapp.auth;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and verifies passwords with BCrypt on a dedicated, bounded pool.
+ *
+ * <p>BCrypt is deliberately slow, so hashing never runs on the caller's
+ * thread. Work goes to a fixed number of daemon threads behind a bounded
+ * queue; once the queue is full new requests fail straight away with a
+ * {@link RejectedExecutionException} instead of piling up, so a login storm
+ * cannot stall the UI or starve the rest of the process.</p>
+ *
+ * <p>Stored values that are not BCrypt hashes are treated as legacy
+ * plaintext passwords and compared in constant time. Callers should rehash
+ * them after a successful login; see {@link #needsRehash(String)}.</p>
+ *
+ * <p>Configuration (system properties):</p>
+ * <ul>
+ *   <li>{@code rideshare.bcrypt.cost} – BCrypt log rounds, default 10</li>
+ *   <li>{@code rideshare.hash.threads} – hashing threads, default half the cores</li>
+ *   <li>{@code rideshare.hash.queue} – maximum queued requests, default 256</li>
+ * </ul>
+ */
+public class PasswordHasher implements AutoCloseable {
+
+    /**
+     * Snapshot of the hashing pool's counters.
+     *
+     * @param queued    requests waiting for a thread
+     * @param maxQueued the deepest the queue has been
+     * @param active    requests being hashed right now
+     * @param completed requests finished
+     * @param rejected  requests turned away because the queue was full
+     */
+    public record Stats(int queued, int maxQueued, int active, long completed, long rejected) {
+    }
+
+    private static final class Holder {
+        static final PasswordHasher INSTANCE = new PasswordHasher(
+                Integer.getInteger("rideshare.bcrypt.cost", 10),
+                Integer.getInteger("rideshare.hash.threads",
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                Integer.getInteger("rideshare.hash.queue", 256));
+    }
+
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Hash checked when the user does not exist, so misses take as long as hits. */
+    private final String dummyHash;
+
+    /**
+     * Creates a hasher.
+     *
+     * @param cost      BCrypt log rounds (4–31)
+     * @param threads   number of hashing threads
+     * @param queueSize maximum requests waiting for a thread
+     */
+    public PasswordHasher(int cost, int threads, int queueSize) {
+        if (cost < 4 || cost > 31) {
+            throw new IllegalArgumentException("BCrypt cost must be between 4 and 31: " + cost);
+        }
+        this.cost = cost;
+
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "password-hasher-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("Password hashing queue is full");
+                });
+        this.dummyHash = BCrypt.hashpw("dummy", BCrypt.gensalt(cost));
+    }
+
+    /**
+     * Returns the process-wide hasher, configured from system properties.
+     *
+     * @return the shared hasher
+     */
+    public static PasswordHasher shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Hashes a password.
+     *
+     * @param password the plaintext password
+     * @return a future completed with the BCrypt hash, or failed with
+     *         {@link RejectedExecutionException} if the pool is saturated
+     */
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    /**
+     * Checks a password against a stored value, which may be a BCrypt hash
+     * or a legacy plaintext password. Pass {@code null} as the stored value
+     * when the user does not exist; the check still costs one hash, so
+     * unknown usernames cannot be told apart by timing.
+     *
+     * @param password the plaintext password
+     * @param stored   the stored value, or null
+     * @return a future completed with true if the password matches
+     */
+    public CompletableFuture<Boolean> verify(String password, String stored) {
+        return submit(() -> {
+            if (stored == null) {
+                BCrypt.checkpw(password, dummyHash);
+                return false;
+            }
+            if (isHash(stored)) {
+                try {
+                    return BCrypt.checkpw(password, stored);
+                } catch (IllegalArgumentException e) {
+                    return false; // malformed hash
+                }
+            }
+            return MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    /**
+     * Returns whether a stored value should be replaced with a fresh hash:
+     * it is plaintext, or was hashed with a different cost.
+     *
+     * @param stored the stored value
+     * @return true if the value should be rehashed
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHash(stored)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(stored.substring(4, 6)) != cost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether a stored value looks like a BCrypt hash.
+     *
+     * @param stored the stored value
+     * @return true for {@code $2a$}, {@code $2b$} and {@code $2y$} hashes
+     */
+    public static boolean isHash(String stored) {
+        return stored != null && stored.length() == 60
+                && stored.charAt(0) == '$' && stored.charAt(1) == '2'
+                && "aby".indexOf(stored.charAt(2)) >= 0 && stored.charAt(3) == '$';
+    }
+
+    /**
+     * Returns the pool's current counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(executor.getQueue().size(), maxQueued.get(), executor.getActiveCount(),
+                executor.getCompletedTaskCount(), rejected.get());
+    }
+
+    /**
+     * Stops the hashing threads once queued work is done.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            CompletableFuture<T> f = CompletableFuture.supplyAsync(task, executor);
+            maxQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+            return f;
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
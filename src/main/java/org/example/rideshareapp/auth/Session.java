@@ -0,0 +1,27 @@
+package org.example.rideshareapp.auth;
+
+/**
+ * Immutable snapshot of a logged-in user, as held by the {@link SessionRegistry}.
+ *
+ * <p>Profile changes replace the snapshot rather than mutating it, so a
+ * reader always sees a consistent set of fields.</p>
+ *
+ * @param token          the opaque session token
+ * @param userId         the user's ID
+ * @param username       the username at login or last profile update
+ * @param classification {@code Rider} or {@code Driver}
+ * @param createdAt      when the session was opened, in epoch milliseconds
+ */
+public record Session(String token, int userId, String username, String classification, long createdAt) {
+
+    /**
+     * Returns a copy of this session with new profile fields.
+     *
+     * @param newUsername       the new username
+     * @param newClassification the new classification
+     * @return the updated snapshot
+     */
+    public Session withProfile(String newUsername, String newClassification) {
+        return new Session(token, userId, newUsername, newClassification, createdAt);
+    }
+}
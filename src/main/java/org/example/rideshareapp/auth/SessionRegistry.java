@@ -0,0 +1,274 @@
+package org.example.rideshareapp.auth;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tracks logged-in users by opaque session token.
+ *
+ * <p>Sessions live in a {@link ConcurrentHashMap}, so looking one up never
+ * takes a lock, and each holds an immutable {@link Session} snapshot that
+ * profile changes swap with compare-and-set. Any number of users can be
+ * logged in at once.</p>
+ *
+ * <p>Sessions expire after {@code ttlMillis} without use. Every lookup
+ * pushes the deadline back. Expiry is driven by a hashed timer wheel: a
+ * ring of buckets, one per tick, advanced by a single daemon thread. A
+ * session is filed under the bucket of its deadline; when that bucket comes
+ * round, the session is removed if its deadline has passed, or re-filed
+ * under its new deadline if it was used in the meantime. Expiring a
+ * session therefore costs O(1), and nothing ever scans the whole map.
+ * Lookups also check the deadline themselves, so a session is never
+ * returned after it expires, even between ticks.</p>
+ *
+ * <p>Configuration (system properties):</p>
+ * <ul>
+ *   <li>{@code rideshare.session.ttlMs} – idle timeout, default 30 minutes</li>
+ *   <li>{@code rideshare.session.tickMs} – wheel tick, default 1000</li>
+ * </ul>
+ */
+public class SessionRegistry implements AutoCloseable {
+
+    /**
+     * Snapshot of the registry's counters.
+     *
+     * @param active  sessions currently open
+     * @param opened  sessions opened since startup
+     * @param closed  sessions closed by logout
+     * @param expired sessions removed after their timeout
+     */
+    public record Stats(int active, long opened, long closed, long expired) {
+    }
+
+    private static final class Holder {
+        static final SessionRegistry INSTANCE = new SessionRegistry(
+                Long.getLong("rideshare.session.ttlMs", TimeUnit.MINUTES.toMillis(30)),
+                Long.getLong("rideshare.session.tickMs", 1000L),
+                512);
+    }
+
+    /** Number of bytes of randomness in a token. */
+    private static final int TOKEN_BYTES = 32;
+
+    /** One open session. */
+    private static final class Entry {
+        final AtomicReference<Session> session;
+        volatile long expiresAt;
+        volatile boolean closed;
+
+        Entry(Session session, long expiresAt) {
+            this.session = new AtomicReference<>(session);
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry>[] wheel;
+    private final int mask;
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService ticker;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /** Next tick to process; only touched by the ticker thread. */
+    private long nextTick;
+
+    /**
+     * Creates a registry and starts its expiry thread.
+     *
+     * @param ttlMillis  idle time after which a session expires
+     * @param tickMillis resolution of the expiry wheel
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SessionRegistry(long ttlMillis, long tickMillis, int wheelSize) {
+        this.ttlMillis = ttlMillis;
+        this.tickMillis = Math.max(1, tickMillis);
+        int n = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new ConcurrentLinkedQueue[n];
+        for (int i = 0; i < n; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = n - 1;
+        this.nextTick = System.currentTimeMillis() / this.tickMillis;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the process-wide registry, configured from system properties.
+     *
+     * @return the shared registry
+     */
+    public static SessionRegistry shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Opens a session for a user who has just authenticated.
+     *
+     * @param userId         the user's ID
+     * @param username       the username
+     * @param classification the user classification
+     * @return the new session, including its token
+     */
+    public Session open(int userId, String username, String classification) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            Session s = new Session(newToken(), userId, username, classification, now);
+            Entry e = new Entry(s, now + ttlMillis);
+            if (sessions.putIfAbsent(s.token(), e) == null) {
+                schedule(e, 0);
+                opened.incrementAndGet();
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Looks up a session and extends its timeout.
+     *
+     * @param token the session token
+     * @return the session, or empty if it is unknown, closed or expired
+     */
+    public Optional<Session> get(String token) {
+        Entry e = token == null ? null : sessions.get(token);
+        if (e == null) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        if (e.expiresAt <= now) {
+            expire(e);
+            return Optional.empty();
+        }
+        // Only write the deadline when it moves by at least a tick, so busy
+        // sessions do not turn every lookup into a contended write.
+        long deadline = now + ttlMillis;
+        if (deadline - e.expiresAt >= tickMillis) {
+            e.expiresAt = deadline;
+        }
+        return Optional.of(e.session.get());
+    }
+
+    /**
+     * Replaces a session's snapshot, for example after a profile update.
+     *
+     * @param token  the session token
+     * @param change computes the new snapshot from the current one
+     * @return the new snapshot, or empty if the session is not open
+     */
+    public Optional<Session> update(String token, UnaryOperator<Session> change) {
+        Entry e = token == null ? null : sessions.get(token);
+        if (e == null || e.closed) {
+            return Optional.empty();
+        }
+        return Optional.of(e.session.updateAndGet(change));
+    }
+
+    /**
+     * Closes a session.
+     *
+     * @param token the session token
+     * @return true if the session was open
+     */
+    public boolean close(String token) {
+        Entry e = token == null ? null : sessions.remove(token);
+        if (e == null) {
+            return false;
+        }
+        e.closed = true;
+        closedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return the session count
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the registry's counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(sessions.size(), opened.get(), closedCount.get(), expired.get());
+    }
+
+    /**
+     * Stops the expiry thread. Open sessions stay readable but no longer
+     * expire in the background.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    /** Processes every wheel bucket up to the current time. */
+    private void advance() {
+        long now = System.currentTimeMillis();
+        long current = now / tickMillis;
+        List<Entry> due = new ArrayList<>();
+        for (; nextTick <= current; nextTick++) {
+            ConcurrentLinkedQueue<Entry> bucket = wheel[(int) (nextTick & mask)];
+            // Drain first: entries re-filed below may land in this same bucket.
+            for (Entry e; (e = bucket.poll()) != null; ) {
+                due.add(e);
+            }
+            for (Entry e : due) {
+                if (e.closed) {
+                    continue;
+                }
+                if (e.expiresAt <= now) {
+                    expire(e);
+                } else {
+                    schedule(e, nextTick + 1);
+                }
+            }
+            due.clear();
+        }
+    }
+
+    private void expire(Entry e) {
+        if (sessions.remove(e.session.get().token(), e)) {
+            e.closed = true;
+            expired.incrementAndGet();
+        }
+    }
+
+    /** Files the entry under its deadline's bucket, but no earlier than {@code minTick}. */
+    private void schedule(Entry e, long minTick) {
+        long tick = Math.max(e.expiresAt / tickMillis, minTick);
+        wheel[(int) (tick & mask)].add(e);
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.rideshareapp.bench;
+
+import org.example.rideshareapp.geo.DriverSpatialIndex;
+import org.example.rideshareapp.services.BatchMatcher;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the {@link BatchMatcher} strategies on one dispatch window:
+ * first come, first served (what dispatching requests one at a time does),
+ * greedy and optimal batch matching.
+ *
+ * <p>Drivers and requests are random within a city-sized box. Candidates
+ * are each request's nearest drivers from a {@link DriverSpatialIndex},
+ * looked up in parallel as the dispatch engine does. For each strategy the
+ * benchmark reports the requests matched, the mean pickup distance and the
+ * time to match the window. For example:</p>
+ *
+ * <pre>
+ * java ... org.example.rideshareapp.bench.DispatchBenchmark 5000 2000 8 5
+ * </pre>
+ *
+ * <p>Arguments are the number of available drivers, the number of requests
+ * in the window, the candidates per request and the number of measured
+ * rounds per strategy.</p>
+ */
+public final class DispatchBenchmark {
+
+    private DispatchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional drivers, requests, candidates and rounds
+     */
+    public static void main(String[] args) {
+        int driverCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        DriverSpatialIndex index = new DriverSpatialIndex(1000);
+        for (int d = 0; d < driverCount; d++) {
+            index.updatePosition(d, 40.5 + random.nextDouble() * 0.4, -74.2 + random.nextDouble() * 0.5, true);
+        }
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = 40.5 + random.nextDouble() * 0.4;
+            lon[i] = -74.2 + random.nextDouble() * 0.5;
+        }
+
+        long start = System.nanoTime();
+        List<List<DriverSpatialIndex.Nearby>> nearby = IntStream.range(0, n).parallel()
+                .mapToObj(i -> index.nearest(lat[i], lon[i], k, 5))
+                .toList();
+        double lookupMs = (System.nanoTime() - start) / 1e6;
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + nearby.get(i).size();
+        }
+        int[] drivers = new int[offsets[n]];
+        double[] miles = new double[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int j = offsets[i];
+            for (DriverSpatialIndex.Nearby d : nearby.get(i)) {
+                drivers[j] = d.driverId();
+                miles[j] = d.miles();
+                j++;
+            }
+        }
+
+        System.out.printf("%d drivers, %d requests, %d candidates, %d rounds, %d cores%n",
+                driverCount, n, k, rounds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("candidate lookup: %.2f ms (%.0f requests/s)%n", lookupMs, n / lookupMs * 1e3);
+        System.out.printf("%-12s %10s %14s %12s %14s%n", "strategy", "matched", "mean pickup mi", "ms/window", "requests/s");
+        for (BatchMatcher.Strategy strategy : BatchMatcher.Strategy.values()) {
+            int[] result = BatchMatcher.match(n, offsets, drivers, miles, strategy); // warm-up
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                result = BatchMatcher.match(n, offsets, drivers, miles, strategy);
+            }
+            double ms = (System.nanoTime() - start) / 1e6 / rounds;
+            int matched = (int) IntStream.of(result).filter(d -> d >= 0).count();
+            double total = BatchMatcher.totalCost(offsets, drivers, miles, result);
+            System.out.printf("%-12s %10d %14.3f %12.2f %14.0f%n", strategy, matched,
+                    matched == 0 ? 0 : total / matched, ms, n / ms * 1e3);
+        }
+    }
+}
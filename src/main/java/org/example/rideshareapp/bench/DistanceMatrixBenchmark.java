@@ -0,0 +1,103 @@
+package org.example.rideshareapp.bench;
+
+import org.example.rideshareapp.geo.DistanceMatrix;
+import org.example.rideshareapp.geo.Geocoder;
+import org.example.rideshareapp.geo.RoadGraph;
+import org.example.rideshareapp.services.MapService;
+import org.example.rideshareapp.services.QuoteCache;
+import org.example.rideshareapp.storage.InMemoryStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares ways of computing an origins-by-destinations distance matrix:
+ * calling {@link MapService#calculateDistance} pair by pair on
+ * {@code Location} objects, and {@link DistanceMatrix} on one thread and on
+ * the common fork-join pool.
+ *
+ * <p>Points are random within a city-sized box. The map service is built
+ * without a road graph, and with a one-metre quote cache that every pair
+ * misses, so every method computes the same straight-line distances. For
+ * example:</p>
+ *
+ * <pre>
+ * java ... org.example.rideshareapp.bench.DistanceMatrixBenchmark 1000 1000 5
+ * </pre>
+ *
+ * <p>Arguments are the number of origins, the number of destinations and
+ * the number of measured rounds per method.</p>
+ */
+public final class DistanceMatrixBenchmark {
+
+    /** One way of filling the matrix. */
+    private interface Method {
+        void run(double[] out);
+    }
+
+    private DistanceMatrixBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional origins, destinations and rounds
+     */
+    public static void main(String[] args) {
+        int m = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double[] fromLat = new double[m];
+        double[] fromLon = new double[m];
+        double[] toLat = new double[n];
+        double[] toLon = new double[n];
+        MapService.Location[] from = new MapService.Location[m];
+        MapService.Location[] to = new MapService.Location[n];
+        for (int i = 0; i < m; i++) {
+            fromLat[i] = 40.5 + random.nextDouble() * 0.4;
+            fromLon[i] = -74.2 + random.nextDouble() * 0.5;
+            from[i] = new MapService.Location("", "", fromLat[i], fromLon[i]);
+        }
+        for (int j = 0; j < n; j++) {
+            toLat[j] = 40.5 + random.nextDouble() * 0.4;
+            toLon[j] = -74.2 + random.nextDouble() * 0.5;
+            to[j] = new MapService.Location("", "", toLat[j], toLon[j]);
+        }
+        MapService maps = new MapService(Geocoder.empty(16), RoadGraph.empty(), new QuoteCache(16, 0, 1),
+                new InMemoryStorage().locations());
+
+        double[] expected = new double[m * n];
+        DistanceMatrix.miles(fromLat, fromLon, toLat, toLon, expected, null);
+
+        System.out.printf("%d x %d pairs, %d rounds, %d cores%n", m, n, rounds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-26s %10s %14s%n", "method", "ms/matrix", "Mpairs/s");
+        measure("scalar calculateDistance", m, n, rounds, expected, out -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    out[i * n + j] = maps.calculateDistance(from[i], to[j]);
+                }
+            }
+        });
+        measure("matrix, one thread", m, n, rounds, expected,
+                out -> DistanceMatrix.miles(fromLat, fromLon, toLat, toLon, out, null));
+        measure("matrix, fork-join", m, n, rounds, expected,
+                out -> DistanceMatrix.miles(fromLat, fromLon, toLat, toLon, out));
+    }
+
+    private static void measure(String name, int m, int n, int rounds, double[] expected, Method method) {
+        double[] out = new double[m * n];
+        method.run(out); // warm-up
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            method.run(out);
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / rounds;
+        double maxError = 0;
+        for (int i = 0; i < out.length; i++) {
+            maxError = Math.max(maxError, Math.abs(out[i] - expected[i]));
+        }
+        System.out.printf("%-26s %10.2f %14.1f%s%n", name, ms, (double) m * n / ms / 1e3,
+                maxError > 1e-9 ? "  (max error " + maxError + ")" : "");
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.rideshareapp.bench;
+
+import org.example.rideshareapp.db.DB;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures read throughput against the application database as the number
+ * of reader threads grows, comparing the read-only pool ({@link DB#read()})
+ * with the read/write pool ({@link DB#get()}).
+ *
+ * <p>Each thread repeatedly runs the login lookup for a random user ID while
+ * a background thread keeps the writer busy. Run it from the project root
+ * so {@code ./data/app.db} resolves, for example:</p>
+ *
+ * <pre>
+ * java -Drideshare.db.readPoolSize=8 ... org.example.rideshareapp.bench.ReadThroughputBenchmark 5
+ * </pre>
+ *
+ * <p>The optional argument is the number of seconds to run each step.</p>
+ */
+public final class ReadThroughputBenchmark {
+
+    private static final String QUERY =
+            "SELECT id, username, password_hash, classification FROM users WHERE id = ?";
+
+    /** Source of connections being measured. */
+    private interface Source {
+        Connection open() throws SQLException;
+    }
+
+    private ReadThroughputBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional seconds per step
+     * @throws Exception if the database cannot be used
+     */
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        DB.startup().join();
+        int maxId = maxUserId();
+        if (maxId == 0) {
+            System.out.println("No users in the database; load some before benchmarking.");
+            return;
+        }
+
+        Thread writer = startBackgroundWrites();
+
+        System.out.printf("%-8s %14s %14s%n", "threads", "read pool/s", "main pool/s");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double readOnly = run(DB::read, threads, seconds, maxId);
+            double readWrite = run(DB::get, threads, seconds, maxId);
+            System.out.printf("%-8d %14.0f %14.0f%n", threads, readOnly, readWrite);
+        }
+
+        writer.interrupt();
+        DB.shutdown();
+    }
+
+    /** Runs the query on {@code threads} threads and returns queries per second. */
+    private static double run(Source source, int threads, int seconds, int maxId) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try (Connection c = source.open(); PreparedStatement ps = c.prepareStatement(QUERY)) {
+                            ps.setInt(1, 1 + random.nextInt(maxId));
+                            ResultSet rs = ps.executeQuery();
+                            rs.next();
+                        }
+                        ops.increment();
+                    }
+                } catch (SQLException e) {
+                    System.err.println("[BENCH] " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        done.await();
+        return ops.sum() / (double) seconds;
+    }
+
+    /** Keeps the writer busy so readers compete with a live write stream. */
+    private static Thread startBackgroundWrites() {
+        Thread t = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                DB.writer().submit(c -> {
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "UPDATE users SET classification = classification WHERE id = 1")) {
+                        return ps.executeUpdate();
+                    }
+                }).join();
+            }
+        }, "bench-writer");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static int maxUserId() throws SQLException {
+        try (Connection c = DB.read(); PreparedStatement ps = c.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM users")) {
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
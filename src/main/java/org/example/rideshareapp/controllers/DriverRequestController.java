@@ -1,15 +1,23 @@
 package org.example.rideshareapp.controllers;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
-import javafx.scene.control.TextField;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextArea;
 import javafx.scene.text.Text;
-
-import java.io.IOException;
+import org.example.rideshareapp.Main;
+import org.example.rideshareapp.auth.Session;
+import org.example.rideshareapp.db.RideStatus;
+import org.example.rideshareapp.services.MapService;
+import org.example.rideshareapp.services.RideLifecycle;
 
 
 public class DriverRequestController {
-@FXML private TextField requestText;
+// where the driver is, from their saved locations; dispatch offers rides near it
+@FXML private ComboBox<MapService.Location> locationBox;
+
+@FXML private TextArea requestText;
 
 @FXML private Text text1;
 
@@ -17,12 +25,115 @@ public class DriverRequestController {
 
 @FXML private Button rejectButton;
 
+@FXML private Button startButton;
+
+@FXML private Button completeButton;
+
+// the driver's current ride as shown: offered to them by dispatch, accepted or in progress
+private RideLifecycle.State shown;
+
 @FXML
-    private void onAcceptButton() throws IOException {
-        requestText.clear(); // This will also take you to another page, but I think we need the map for that
+    private void initialize() {
+        Session session = Main.currentSession();
+        if (session != null) {
+            Main.mapService().savedLocations(session.userId()).all().stream()
+                    .filter(MapService.Location::hasCoordinates)
+                    .forEach(locationBox.getItems()::add);
+            if (!locationBox.getItems().isEmpty()) {
+                locationBox.setValue(locationBox.getItems().get(0));
+                onLocationSelected();
+            }
+        }
+        refresh();
+}
+
+@FXML
+    private void onLocationSelected() {
+        Session session = Main.currentSession();
+        MapService.Location at = locationBox.getValue();
+        if (session != null && at != null) {
+            Main.driverService().updatePosition(session.userId(), at.getLatitude(), at.getLongitude());
+        }
+}
+
+@FXML
+    private void onAcceptButton() {
+        Session session = Main.currentSession();
+        if (session == null || shown == null) {
+            refresh();
+            return;
+        }
+        long rideId = shown.rideId();
+        // the ride can be cancelled up to the moment it is accepted; whichever comes first wins
+        Main.driverService().acceptRide(session.userId(), rideId)
+                .whenComplete((v, e) -> Platform.runLater(() -> {
+                    refresh();
+                    if (e != null) {
+                        requestText.setText("Ride #" + rideId + " is no longer available.");
+                    }
+                }));
+}
+
+@FXML private void onRejectButton() {
+    Session session = Main.currentSession();
+    if (session != null && shown != null) {
+        Main.driverService().declineRide(session.userId(), shown.rideId());
+    }
+    refresh();
+}
+
+// rider picked up
+@FXML private void onStartButton() {
+    Session session = Main.currentSession();
+    if (session == null || shown == null) {
+        refresh();
+        return;
+    }
+    long rideId = shown.rideId();
+    boolean started = Main.driverService().startRide(session.userId(), rideId);
+    refresh();
+    if (!started) {
+        requestText.setText("Ride #" + rideId + " can no longer be started.");
+    }
+}
+
+// rider dropped off; the driver is available again once it is saved
+@FXML private void onCompleteButton() {
+    Session session = Main.currentSession();
+    if (session == null || shown == null) {
+        refresh();
+        return;
+    }
+    long rideId = shown.rideId();
+    Main.driverService().completeRide(session.userId(), rideId)
+            .whenComplete((v, e) -> Platform.runLater(() -> {
+                refresh();
+                if (e != null) {
+                    requestText.setText("Ride #" + rideId + " could not be completed.");
+                }
+            }));
+}
+
+// offers come in while the screen is open
+@FXML private void onRefreshButton() {
+    refresh();
 }
 
-@FXML private void onRejectButton() throws IOException {
-    requestText.clear();
+// show the driver's current ride, with the actions that apply to where it is:
+// accept or reject an offer, start an accepted ride, complete one in progress
+private void refresh() {
+    Session session = Main.currentSession();
+    shown = session == null
+            ? null
+            : Main.driverService().currentRide(session.userId()).orElse(null);
+    RideStatus status = shown == null ? null : shown.status();
+    acceptButton.setDisable(status != RideStatus.MATCHED);
+    rejectButton.setDisable(status != RideStatus.MATCHED);
+    startButton.setDisable(status != RideStatus.ACCEPTED);
+    completeButton.setDisable(status != RideStatus.IN_PROGRESS);
+    requestText.setText(shown == null
+            ? "No ride requests right now."
+            : String.format("Ride #%d (%s)%nFrom: %s%nTo: %s%nFare: $%.2f",
+                    shown.rideId(), status, shown.origin(), shown.destination(), shown.fare()));
 }
 }
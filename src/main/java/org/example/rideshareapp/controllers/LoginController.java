@@ -1,5 +1,6 @@
 package org.example.rideshareapp.controllers;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -8,8 +9,11 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import org.example.rideshareapp.Main;
+import org.example.rideshareapp.auth.LoginThrottledException;
+import org.example.rideshareapp.db.DB;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller responsible for handling user login operations within the
@@ -63,6 +67,8 @@ public class LoginController {
      * Triggered when the user presses the Login button. Validates credentials
      * using the application's shared {@code ProfileService} instance and, if
      * valid, loads the appropriate interface for the user's classification.
+     * If the database is still starting up, the login is retried once it is
+     * ready.
      *
      * @param event the action event generated by clicking the login button
      */
@@ -79,15 +85,51 @@ public class LoginController {
             return;
         }
 
-        boolean ok = Main.PROFILE_SERVICE.login(username, password, classification);
-
-        if (!ok) {
-            statusLabel.setText("Invalid credentials.");
+        // The database warms up in the background; if it is not ready yet,
+        // retry this login as soon as it is instead of blocking the UI.
+        if (!DB.isReady()) {
+            statusLabel.setText("Connecting to database...");
+            DB.startup().whenComplete((v, e) -> Platform.runLater(() -> {
+                if (e != null) {
+                    statusLabel.setText("Database unavailable.");
+                } else {
+                    onLogin(event);
+                }
+            }));
             return;
         }
 
+        // Password checks run on the hashing pool; the UI thread only
+        // picks up the result.
+        statusLabel.setText("Signing in...");
+        Main.profileService().loginAsync(username, password, classification)
+                .whenComplete((session, e) -> Platform.runLater(() -> {
+                    if (e != null) {
+                        if (e.getCause() instanceof LoginThrottledException) {
+                            statusLabel.setText("Too many attempts. Please wait a minute and try again.");
+                        } else if (e.getCause() instanceof RejectedExecutionException) {
+                            statusLabel.setText("Too many sign-ins right now, please try again.");
+                        } else {
+                            statusLabel.setText("Login failed.");
+                        }
+                    } else if (session.isEmpty()) {
+                        statusLabel.setText("Invalid credentials.");
+                    } else {
+                        Main.setCurrentSession(session.get());
+                        showHome(username, classification);
+                    }
+                }));
+    }
+
+    /**
+     * Loads the interface for the logged-in user's classification.
+     *
+     * @param username the user who logged in
+     * @param classification the user's classification
+     */
+    private void showHome(String username, String classification) {
         System.out.println("[Login] User '" + username + "' logged in successfully.");
-        System.out.println("[DEBUG] Logged-in user ID = " + Main.PROFILE_SERVICE.getProfileId());
+        System.out.println("[DEBUG] Logged-in user ID = " + Main.currentSession().userId());
 
         Stage window = (Stage) statusLabel.getScene().getWindow();
 
@@ -4,20 +4,27 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import org.example.rideshareapp.Main;
+import org.example.rideshareapp.auth.Session;
+import org.example.rideshareapp.geo.GeoDistance;
+import org.example.rideshareapp.services.MapService;
 
 /**
  * Controller class for managing map-related interactions within the RideShare application.
  * <p>
  * This class handles user input for adding and labeling saved locations through
  * the application's {@link org.example.rideshareapp.services.MapService}.
- * It provides a simple interface for entering an address and an optional label,
- * then updates the status field to confirm the action.
+ * It provides a simple interface for entering an address and a label,
+ * then updates the status field to confirm the action and whether the
+ * address was found by the geocoder. Latitude and longitude can be entered
+ * as well, for addresses the geocoder does not know; they are then used
+ * instead of looking the address up.
  * </p>
  *
  * <p><strong>FXML Mapped Elements:</strong></p>
  * <ul>
  *     <li>{@code addressField} — Text input for entering the location address.</li>
  *     <li>{@code labelField} — Text input for labeling the location (e.g., “Home”, “Work”).</li>
+ *     <li>{@code latitudeField}, {@code longitudeField} — Optional coordinates in decimal degrees.</li>
  *     <li>{@code statusLabel} — Label for displaying confirmation or feedback messages.</li>
  * </ul>
  */
@@ -29,22 +36,66 @@ public class MapController {
     /** Text field for entering a custom label for the location. */
     @FXML private TextField labelField;
 
+    /** Optional text field for the location's latitude in decimal degrees. */
+    @FXML private TextField latitudeField;
+
+    /** Optional text field for the location's longitude in decimal degrees. */
+    @FXML private TextField longitudeField;
+
     /** Label for displaying success or error messages related to map actions. */
     @FXML private Label statusLabel;
 
     /**
      * Triggered when the user clicks the “Add Location” button.
      * <p>
-     * Calls {@link org.example.rideshareapp.services.MapService#addLocation(String, String)}
-     * to add the specified address and label to the user’s saved locations.
-     * After the operation, the input fields are cleared and a confirmation message is shown.
+     * Calls {@link MapService.SavedLocations#add(String, String)}
+     * to add the specified address and label to the user’s saved locations,
+     * or {@link MapService.SavedLocations#add(String, String, double, double)}
+     * if coordinates were entered. After the operation, the input fields are
+     * cleared and a confirmation message is shown.
      * </p>
      */
     @FXML
     private void onAddLocation() {
-        Main.MAP_SERVICE.addLocation(addressField.getText(), labelField.getText());
-        statusLabel.setText("Location added (stub).");
+        Session session = Main.currentSession();
+        if (session == null) {
+            statusLabel.setText("Session expired. Please log in again.");
+            return;
+        }
+        String label = labelField.getText() == null ? "" : labelField.getText().trim();
+        if (label.isEmpty()) {
+            statusLabel.setText("Enter a label for the location.");
+            return;
+        }
+        String lat = latitudeField.getText() == null ? "" : latitudeField.getText().trim();
+        String lon = longitudeField.getText() == null ? "" : longitudeField.getText().trim();
+        MapService.SavedLocations saved = Main.mapService().savedLocations(session.userId());
+        MapService.Location location;
+        if (lat.isEmpty() && lon.isEmpty()) {
+            location = saved.add(addressField.getText(), label);
+        } else {
+            double latitude;
+            double longitude;
+            try {
+                latitude = Double.parseDouble(lat);
+                longitude = Double.parseDouble(lon);
+            } catch (NumberFormatException e) {
+                latitude = Double.NaN;
+                longitude = Double.NaN;
+            }
+            if (!GeoDistance.isValid(latitude, longitude)) {
+                statusLabel.setText("Enter a latitude from -90 to 90 and a longitude from -180 to 180.");
+                return;
+            }
+            location = saved.add(addressField.getText(), label, latitude, longitude);
+        }
+        statusLabel.setText(location.hasCoordinates()
+                ? "Location added."
+                : "Location added, but the address was not found; enter its latitude and longitude "
+                        + "to get distances to it.");
         addressField.clear();
         labelField.clear();
+        latitudeField.clear();
+        longitudeField.clear();
     }
 }
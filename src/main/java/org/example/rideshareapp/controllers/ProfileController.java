@@ -1,10 +1,12 @@
 package org.example.rideshareapp.controllers;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import org.example.rideshareapp.Main;
+import org.example.rideshareapp.auth.Session;
 
 /**
  * Controller class for managing the user's profile within the RideShare application.
@@ -63,7 +65,7 @@ public class ProfileController {
      * Triggered when the user clicks the “Update Profile” button.
      * <p>
      * Attempts to update the user's profile using
-     * {@link org.example.rideshareapp.services.ProfileService#updateProfile(String, String, String)}.
+     * {@link org.example.rideshareapp.services.ProfileService#updateProfileAsync(String, String, String, String)}.
      * If the phone number field is not numeric, an error message is displayed.
      * </p>
      */
@@ -78,13 +80,23 @@ public class ProfileController {
             return;
         }
 
-        boolean ok = Main.PROFILE_SERVICE.updateProfile(user, pass, classification);
-
-        if (ok) {
-            statusLabel.setText("Profile updated successfully.");
-        } else {
-            statusLabel.setText("Update failed. No matching user ID.");
+        Session session = Main.currentSession();
+        if (session == null) {
+            statusLabel.setText("Session expired. Please log in again.");
+            return;
         }
+
+        // The new password is hashed off the UI thread.
+        Main.profileService().updateProfileAsync(session.token(), user, pass, classification)
+                .whenComplete((ok, e) -> Platform.runLater(() -> {
+                    if (e != null) {
+                        statusLabel.setText("Update failed, please try again.");
+                    } else if (ok) {
+                        statusLabel.setText("Profile updated successfully.");
+                    } else {
+                        statusLabel.setText("Update failed. Session expired or username taken.");
+                    }
+                }));
     }
 
 
@@ -98,7 +110,7 @@ public class ProfileController {
      */
     @FXML
     private void onContactSupport() {
-        Main.PROFILE_SERVICE.contactSupport("General", "User opened support from profile.");
+        Main.profileService().contactSupport("General", "User opened support from profile.");
         statusLabel.setText("Support ticket submitted (stub).");
     }
 
@@ -117,7 +129,7 @@ public class ProfileController {
             long cvv = Long.parseLong(cvvField.getText());
             String exp = expField.getText();
 
-            boolean ok = Main.PAYMENT_SERVICE.addPaymentMethod(cardNum, cvv, exp);
+            boolean ok = Main.paymentService().addPaymentMethod(cardNum, cvv, exp);
             paymentStatus.setText(ok ? "Payment added." : "Payment invalid.");
         } catch (NumberFormatException e) {
             paymentStatus.setText("Card/CVV must be numeric.");
@@ -1,10 +1,18 @@
 package org.example.rideshareapp.controllers;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import org.example.rideshareapp.Main;
+import org.example.rideshareapp.auth.Session;
+import org.example.rideshareapp.services.EtaService;
 import org.example.rideshareapp.services.MapService;
 
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Controller class responsible for managing the user interface
  * related to creating and submitting ride requests within the
@@ -55,7 +63,7 @@ public class RideRequestController {
 
     /**
      * Initializes the controller by populating location ComboBoxes
-     * with saved locations retrieved from {@link MapService}.
+     * with the current user's saved locations retrieved from {@link MapService}.
      * <p>
      * This method is automatically called after the FXML components
      * are loaded and injected by the JavaFX runtime.
@@ -63,8 +71,16 @@ public class RideRequestController {
      */
     @FXML
     private void initialize() {
-        currentLocationBox.getItems().addAll(Main.MAP_SERVICE.getSavedLocations());
-        destinationBox.getItems().addAll(Main.MAP_SERVICE.getSavedLocations());
+        Session session = Main.currentSession();
+        if (session == null) {
+            return;
+        }
+        List<MapService.Location> saved = Main.mapService().savedLocations(session.userId()).all();
+        currentLocationBox.getItems().addAll(saved);
+        destinationBox.getItems().addAll(saved);
+        if (saved.isEmpty()) {
+            statusLabel.setText("No saved locations yet. Add some on the map page.");
+        }
     }
 
     /**
@@ -89,8 +105,16 @@ public class RideRequestController {
             return;
         }
 
-        double distance = Main.MAP_SERVICE.calculateDistance(from, to);
-        distanceLabel.setText("Distance: " + distance + " miles");
+        double distance = Main.mapService().calculateDistance(from, to);
+        if (Double.isNaN(distance)) {
+            statusLabel.setText("Both locations need a known position.");
+            requestRideBtn.setDisable(true);
+            return;
+        }
+        EtaService.Estimate eta = Main.etaService().estimate(from.getLatitude(), from.getLongitude(),
+                to.getLatitude(), to.getLongitude(), distance, System.currentTimeMillis());
+        distanceLabel.setText("Distance: " + String.format("%.2f", distance) + " miles"
+                + " (about " + Math.max(1, Math.round(eta.seconds() / 60)) + " min)");
 
         double ppm = 3.5;
         try {
@@ -98,7 +122,7 @@ public class RideRequestController {
         } catch (NumberFormatException ignored) {
         }
 
-        double cost = Main.MAP_SERVICE.calculateCost(distance, ppm);
+        double cost = Main.mapService().calculateCost(distance, ppm);
         costLabel.setText("Cost: $" + String.format("%.2f", cost));
 
         requestRideBtn.setDisable(false);
@@ -119,24 +143,49 @@ public class RideRequestController {
      */
     @FXML
     private void onRequestRide() {
+        Session session = Main.currentSession();
+        if (session == null) {
+            statusLabel.setText("Session expired. Please log in again.");
+            return;
+        }
+
         MapService.Location to = destinationBox.getValue();
         MapService.Location from = currentLocationBox.getValue();
 
-        double distance = Main.MAP_SERVICE.calculateDistance(from, to);
-        double cost = Main.MAP_SERVICE.calculateCost(
+        double distance = Main.mapService().calculateDistance(from, to);
+        if (Double.isNaN(distance)) {
+            statusLabel.setText("Both locations need a known position.");
+            return;
+        }
+        double cost = Main.mapService().calculateCost(
                 distance,
                 Double.parseDouble(pricePerMileField.getText())
         );
 
-        boolean ok = Main.RIDE_REQUEST_SERVICE.requestRide(
+        statusLabel.setText("Ride requested. Finding a driver...");
+        Main.rideRequestService().requestAndDispatch(
+                session.userId(),
+                from,
                 to,
                 cost,
                 distance,
-                Main.PAYMENT_SERVICE.getFirstPaymentMethod()
-        );
-
-        statusLabel.setText(ok
-                ? "Ride requested (stub)."
-                : "Ride request failed (no valid payment?)");
+                Main.paymentService().getFirstPaymentMethod()
+        ).whenComplete((assignment, e) -> Platform.runLater(() -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause == null && Double.isNaN(assignment.pickupMiles())) {
+                statusLabel.setText(String.format("Driver #%d accepted your ride.", assignment.driverId()));
+            } else if (cause == null) {
+                statusLabel.setText(String.format("Driver #%d accepted your ride (%.1f mi away).",
+                        assignment.driverId(), assignment.pickupMiles()));
+            } else if (cause instanceof CancellationException) {
+                statusLabel.setText("Ride cancelled.");
+            } else if (cause instanceof TimeoutException) {
+                statusLabel.setText("No driver is available nearby. Please try again later.");
+            } else if (cause instanceof IllegalStateException) {
+                statusLabel.setText("Ride request failed (no valid payment?)");
+            } else {
+                statusLabel.setText("Ride request failed.");
+            }
+        }));
     }
 }
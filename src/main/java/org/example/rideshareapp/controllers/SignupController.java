@@ -1,5 +1,6 @@
 package org.example.rideshareapp.controllers;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -66,29 +67,28 @@ public class SignupController {
         }
 
         ProfileService profileService = new ProfileService();
-        boolean created;
 
-        try {
-            created = profileService.register(u, p, c);
-        } catch (Exception e) {
-            e.printStackTrace();
-            statusLabel.setText("Error creating user");
-            return;
-        }
-
-        if (created) {
-            // Return user to login screen
-            try {
-                FXMLLoader fx = new FXMLLoader(getClass().getResource(
-                        "/org/example/rideshareapp/login.fxml"));
-                Stage st = (Stage) statusLabel.getScene().getWindow();
-                st.setScene(new Scene(fx.load()));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        } else {
-            statusLabel.setText("Username already taken or error occurred");
-        }
+        // The password is hashed off the UI thread; only the result comes back here.
+        statusLabel.setText("Creating account...");
+        profileService.registerAsync(u, p, c)
+                .whenComplete((created, e) -> Platform.runLater(() -> {
+                    if (e != null) {
+                        e.printStackTrace();
+                        statusLabel.setText("Error creating user");
+                    } else if (created) {
+                        // Return user to login screen
+                        try {
+                            FXMLLoader fx = new FXMLLoader(getClass().getResource(
+                                    "/org/example/rideshareapp/login.fxml"));
+                            Stage st = (Stage) statusLabel.getScene().getWindow();
+                            st.setScene(new Scene(fx.load()));
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                        }
+                    } else {
+                        statusLabel.setText("Username already taken or error occurred");
+                    }
+                }));
     }
 
     /**
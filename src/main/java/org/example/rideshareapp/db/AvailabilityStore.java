@@ -0,0 +1,368 @@
+package org.example.rideshareapp.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory, authoritative copy of every driver's availability flag.
+ *
+ * <p>The store is loaded from the {@code drivers} table at startup and then
+ * answers availability reads and flips from lock-free bitsets indexed by
+ * driver ID. Changes are marked dirty and written back to the database by a
+ * background flush every {@code flushIntervalMillis}, through the shared
+ * {@link WriteQueue}, so the database never lags the store by more than
+ * roughly one flush interval plus one commit.</p>
+ *
+ * <p>Callers that need to know when a change is durable can wait on
+ * {@link #persisted()}, which completes after the next flush commits.</p>
+ */
+public class AvailabilityStore implements AutoCloseable {
+
+    private static final String UPDATE_SQL =
+            "UPDATE drivers SET availabilityStatus = ? WHERE driverId = ?";
+
+    /** Drivers that exist in the {@code drivers} table. */
+    private final ConcurrentBitSet known = new ConcurrentBitSet();
+
+    /** Drivers that are currently available. */
+    private final ConcurrentBitSet available = new ConcurrentBitSet();
+
+    /** Drivers whose availability changed since the last flush. */
+    private final ConcurrentBitSet dirty = new ConcurrentBitSet();
+
+    /** Number of bits set in {@link #available}. */
+    private final AtomicInteger availableCount = new AtomicInteger();
+
+    /** Completed when the flush that will include the latest changes commits. */
+    private final AtomicReference<CompletableFuture<Void>> nextFlush =
+            new AtomicReference<>(new CompletableFuture<>());
+
+    /** Writer used to persist changes. */
+    private final WriteQueue writer;
+
+    /** Runs the periodic write-behind flush. */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Creates an empty store and starts its write-behind flush.
+     *
+     * @param writer              writer used to persist changes
+     * @param flushIntervalMillis maximum time a change stays only in memory
+     */
+    public AvailabilityStore(WriteQueue writer, long flushIntervalMillis) {
+        this.writer = writer;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loads every driver's availability from the database, replacing
+     * whatever the store held for those drivers.
+     *
+     * @param c connection to read from
+     * @return the number of drivers loaded
+     * @throws SQLException if the drivers cannot be read
+     */
+    public int load(Connection c) throws SQLException {
+        int count = 0;
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT driverId, availabilityStatus FROM drivers")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                register(rs.getInt(1), rs.getInt(2) == 1);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a driver that was just inserted into the database. The change is
+     * not written back, since the row already holds this value.
+     *
+     * @param driverId  the driver's ID
+     * @param isAvailable the driver's stored availability
+     */
+    public void register(int driverId, boolean isAvailable) {
+        known.set(driverId);
+        apply(driverId, isAvailable);
+    }
+
+    /**
+     * Returns whether the store knows about the given driver.
+     *
+     * @param driverId the driver's ID
+     * @return true if the driver exists
+     */
+    public boolean isKnown(int driverId) {
+        return known.get(driverId);
+    }
+
+    /**
+     * Returns whether the given driver is available.
+     *
+     * @param driverId the driver's ID
+     * @return true if the driver is available
+     */
+    public boolean isAvailable(int driverId) {
+        return available.get(driverId);
+    }
+
+    /**
+     * Sets a driver's availability.
+     *
+     * @param driverId    the driver's ID
+     * @param isAvailable the new availability
+     * @return the previous availability
+     * @throws RuntimeException if the driver does not exist
+     */
+    public boolean set(int driverId, boolean isAvailable) {
+        requireKnown(driverId);
+        boolean previous = apply(driverId, isAvailable);
+        if (previous != isAvailable) {
+            dirty.set(driverId);
+        }
+        return previous;
+    }
+
+    /**
+     * Atomically flips a driver's availability.
+     *
+     * @param driverId the driver's ID
+     * @return the new availability
+     * @throws RuntimeException if the driver does not exist
+     */
+    public boolean toggle(int driverId) {
+        requireKnown(driverId);
+        boolean now = available.flip(driverId);
+        availableCount.addAndGet(now ? 1 : -1);
+        dirty.set(driverId);
+        return now;
+    }
+
+    /**
+     * Returns the IDs of all available drivers in ascending order.
+     *
+     * @return the available driver IDs
+     */
+    public int[] availableDrivers() {
+        return available.toArray(availableCount.get());
+    }
+
+    /**
+     * Returns the number of available drivers.
+     *
+     * @return the available driver count
+     */
+    public int availableCount() {
+        return availableCount.get();
+    }
+
+    /**
+     * Returns a future completed once every change made before this call
+     * has been written to the database.
+     *
+     * @return a future for the next flush
+     */
+    public CompletableFuture<Void> persisted() {
+        return nextFlush.get();
+    }
+
+    /**
+     * Writes pending changes back and stops the background flush.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Writes all dirty drivers' current availability to the database in one
+     * batched mutation.
+     */
+    private synchronized void flush() {
+        CompletableFuture<Void> done = nextFlush.getAndSet(new CompletableFuture<>());
+        int[] ids = dirty.drain();
+        if (ids.length == 0) {
+            done.complete(null);
+            return;
+        }
+
+        // Read the flags now; any later change re-marks the driver dirty.
+        boolean[] values = new boolean[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = available.get(ids[i]);
+        }
+
+        writer.<Void>submit(c -> {
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_SQL)) {
+                for (int i = 0; i < ids.length; i++) {
+                    ps.setInt(1, values[i] ? 1 : 0);
+                    ps.setInt(2, ids[i]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return null;
+        }).whenComplete((v, e) -> {
+            if (e != null) {
+                System.err.println("[AVAILABILITY] Flush failed, retrying: " + e.getMessage());
+                for (int id : ids) {
+                    dirty.set(id);
+                }
+                done.completeExceptionally(e);
+            } else {
+                done.complete(null);
+            }
+        });
+    }
+
+    /** Sets the availability bit and keeps the count in step. */
+    private boolean apply(int driverId, boolean isAvailable) {
+        boolean previous = isAvailable ? available.set(driverId) : available.clear(driverId);
+        if (previous != isAvailable) {
+            availableCount.addAndGet(isAvailable ? 1 : -1);
+        }
+        return previous;
+    }
+
+    private void requireKnown(int driverId) {
+        if (!known.get(driverId)) {
+            throw new RuntimeException("Driver not found");
+        }
+    }
+
+    /**
+     * Lock-free bitset over non-negative int keys. Storage is split into
+     * fixed-size chunks that are allocated on first use and never moved, so
+     * growing the set never blocks or loses concurrent updates.
+     */
+    public static final class ConcurrentBitSet {
+        private static final int CHUNK_BITS = 16;
+        private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / Long.SIZE;
+        private static final int CHUNKS = 1 << (Integer.SIZE - 1 - CHUNK_BITS);
+
+        private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(CHUNKS);
+
+        public boolean get(int bit) {
+            AtomicLongArray chunk = bit < 0 ? null : chunks.get(bit >>> CHUNK_BITS);
+            return chunk != null && (chunk.get(word(bit)) & mask(bit)) != 0;
+        }
+
+        /** Sets the bit and returns its previous value. */
+        public boolean set(int bit) {
+            AtomicLongArray chunk = chunkFor(bit);
+            long m = mask(bit);
+            return (chunk.getAndAccumulate(word(bit), m, (w, x) -> w | x) & m) != 0;
+        }
+
+        /** Clears the bit and returns its previous value. */
+        public boolean clear(int bit) {
+            AtomicLongArray chunk = bit < 0 ? null : chunks.get(bit >>> CHUNK_BITS);
+            if (chunk == null) {
+                return false;
+            }
+            long m = mask(bit);
+            return (chunk.getAndAccumulate(word(bit), m, (w, x) -> w & ~x) & m) != 0;
+        }
+
+        /** Flips the bit and returns its new value. */
+        public boolean flip(int bit) {
+            AtomicLongArray chunk = chunkFor(bit);
+            long m = mask(bit);
+            return (chunk.accumulateAndGet(word(bit), m, (w, x) -> w ^ x) & m) != 0;
+        }
+
+        /** Returns the set bits in ascending order. */
+        public int[] toArray(int sizeHint) {
+            int[] out = new int[Math.max(sizeHint, 16)];
+            int n = 0;
+            for (int c = 0; c < CHUNKS; c++) {
+                AtomicLongArray chunk = chunks.get(c);
+                if (chunk == null) {
+                    continue;
+                }
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    long word = chunk.get(w);
+                    while (word != 0) {
+                        if (n == out.length) {
+                            out = Arrays.copyOf(out, n * 2);
+                        }
+                        out[n++] = (c << CHUNK_BITS) + w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        /** Atomically clears every bit and returns the ones that were set. */
+        public int[] drain() {
+            int[] out = new int[16];
+            int n = 0;
+            for (int c = 0; c < CHUNKS; c++) {
+                AtomicLongArray chunk = chunks.get(c);
+                if (chunk == null) {
+                    continue;
+                }
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    if (chunk.get(w) == 0) {
+                        continue;
+                    }
+                    long word = chunk.getAndSet(w, 0);
+                    while (word != 0) {
+                        if (n == out.length) {
+                            out = Arrays.copyOf(out, n * 2);
+                        }
+                        out[n++] = (c << CHUNK_BITS) + w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        private AtomicLongArray chunkFor(int bit) {
+            if (bit < 0) {
+                throw new IllegalArgumentException("Negative ID: " + bit);
+            }
+            int index = bit >>> CHUNK_BITS;
+            AtomicLongArray chunk = chunks.get(index);
+            if (chunk == null) {
+                chunks.compareAndSet(index, null, new AtomicLongArray(WORDS_PER_CHUNK));
+                chunk = chunks.get(index);
+            }
+            return chunk;
+        }
+
+        private static int word(int bit) {
+            return (bit & ((1 << CHUNK_BITS) - 1)) >>> 6;
+        }
+
+        private static long mask(int bit) {
+            return 1L << bit;
+        }
+    }
+}
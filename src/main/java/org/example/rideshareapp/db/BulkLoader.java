@@ -0,0 +1,636 @@
+package org.example.rideshareapp.db;
+
+import org.example.rideshareapp.auth.PasswordHasher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Streams users and drivers between the database and CSV or NDJSON files.
+ *
+ * <p>Imports read the file one line at a time, so memory use does not depend
+ * on file size. Rows are inserted with batched prepared statements in
+ * chunks of {@code chunkSize} rows. Each chunk is one mutation on the
+ * {@link WriteQueue}, so imports go through the same single writer as
+ * regular writes and never compete with it for SQLite's write lock;
+ * regular writes get in between chunks. Rows that fail validation or collide with an existing username are
+ * rejected and reported, and do not stop the import.</p>
+ *
+ * <p>Both formats use the same fields: {@code username}, {@code password},
+ * {@code classification}, and for drivers {@code plateNumber} and optionally
+ * {@code available}. CSV files must start with a header row naming the
+ * columns. Passwords must already be BCrypt hashes and are stored as given,
+ * so an exported file can be imported again unchanged; rows with plaintext
+ * passwords are rejected. At the login cost a hash takes close to 100 ms of
+ * CPU, so hashing a million plaintext rows would take over a day of CPU
+ * time. To import plaintext anyway, set {@code rideshare.import.bcryptCost}:
+ * plaintext passwords are then hashed at that cost on every core before
+ * their chunk is written, and upgraded to the login cost when each user
+ * next logs in. The minimum cost of 4 hashes about 500 passwords a second
+ * per core.</p>
+ */
+public class BulkLoader {
+
+    /** File formats understood by the loader. */
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Picks a format from a file's extension, defaulting to CSV.
+         *
+         * @param file the file
+         * @return NDJSON for {@code .ndjson}, {@code .jsonl} or {@code .json}, otherwise CSV
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+        }
+    }
+
+    /** Receives progress updates after every committed chunk. */
+    @FunctionalInterface
+    public interface Progress {
+        /**
+         * Called after a chunk commits.
+         *
+         * @param accepted rows stored so far
+         * @param rejected rows rejected so far
+         */
+        void onProgress(long accepted, long rejected);
+    }
+
+    /**
+     * A row that was not imported.
+     *
+     * @param line   the 1-based line number in the file
+     * @param reason why it was rejected
+     */
+    public record Rejected(long line, String reason) {
+    }
+
+    /**
+     * Outcome of an import.
+     *
+     * @param accepted     rows stored
+     * @param rejected     rows rejected
+     * @param rejectedRows the first rejected rows, up to the loader's limit
+     * @param millis       time taken
+     */
+    public record Result(long accepted, long rejected, List<Rejected> rejectedRows, long millis) {
+    }
+
+    private static final String INSERT_USER =
+            "INSERT OR IGNORE INTO users (username, password_hash, classification) VALUES (?, ?, ?)";
+
+    private static final String INSERT_DRIVER =
+            "INSERT OR IGNORE INTO drivers (driverId, plateNumber, availabilityStatus) "
+                    + "SELECT id, ?, ? FROM users WHERE username = ? RETURNING driverId";
+
+    /** What one chunk stored: which rows were inserted, and the new drivers' IDs and availability. */
+    private record Stored(boolean[] inserted, List<int[]> drivers) {
+    }
+
+    /** Rows committed per transaction. */
+    private final int chunkSize;
+
+    /** Maximum rejected rows kept in the result. */
+    private final int maxReportedRejects;
+
+    /** Progress callback, may be null. */
+    private final Progress progress;
+
+    /**
+     * Creates a loader.
+     *
+     * @param chunkSize          rows per transaction
+     * @param maxReportedRejects maximum rejected rows kept in the result
+     * @param progress           progress callback, or null
+     */
+    public BulkLoader(int chunkSize, int maxReportedRejects, Progress progress) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxReportedRejects = maxReportedRejects;
+        this.progress = progress;
+    }
+
+    /**
+     * Imports users, and drivers for rows that have a plate number.
+     *
+     * @param file   the file to read
+     * @param format the file's format
+     * @return how many rows were stored and rejected
+     * @throws IOException  if the file cannot be read
+     * @throws SQLException if the database rejects a chunk as a whole
+     */
+    public Result importUsers(Path file, Format format) throws IOException, SQLException {
+        long start = System.nanoTime();
+        long accepted = 0;
+        long rejected = 0;
+        List<Rejected> rejects = new ArrayList<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        // Plaintext is only hashed when an import cost is set; see the class comment.
+        Integer importCost = Integer.getInteger("rideshare.import.bcryptCost");
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             PasswordHasher hasher = importCost == null ? null : new PasswordHasher(
+                     importCost,
+                     Runtime.getRuntime().availableProcessors(),
+                     chunkSize)) {
+
+            String[] header = null;
+            String line;
+            long lineNo = 0;
+
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && header == null) {
+                    header = splitCsv(line).toArray(new String[0]);
+                    continue;
+                }
+
+                Row row;
+                try {
+                    Map<String, String> fields = format == Format.CSV ? csvFields(header, line) : parseJson(line);
+                    row = Row.from(lineNo, fields);
+                    if (hasher == null && !PasswordHasher.isHash(row.password)) {
+                        throw new IllegalArgumentException("Password is not a BCrypt hash");
+                    }
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    report(rejects, new Rejected(lineNo, e.getMessage()));
+                    continue;
+                }
+
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    long stored = flush(hasher, chunk, rejects);
+                    accepted += stored;
+                    rejected += chunk.size() - stored;
+                    chunk.clear();
+                    if (progress != null) {
+                        progress.onProgress(accepted, rejected);
+                    }
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                long stored = flush(hasher, chunk, rejects);
+                accepted += stored;
+                rejected += chunk.size() - stored;
+                if (progress != null) {
+                    progress.onProgress(accepted, rejected);
+                }
+            }
+        }
+
+        return new Result(accepted, rejected, rejects, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes every user, with driver details where present, to a file.
+     *
+     * @param file   the file to write
+     * @param format the format to write
+     * @return the number of rows written
+     * @throws IOException  if the file cannot be written
+     * @throws SQLException if the users cannot be read
+     */
+    public long exportUsers(Path file, Format format) throws IOException, SQLException {
+        String sql = "SELECT u.username, u.password_hash, u.classification, d.plateNumber, d.availabilityStatus "
+                + "FROM users u LEFT JOIN drivers d ON d.driverId = u.id ORDER BY u.id";
+        long rows = 0;
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             Connection c = DB.read();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            ps.setFetchSize(chunkSize);
+            if (format == Format.CSV) {
+                out.write("username,password,classification,plateNumber,available");
+                out.newLine();
+            }
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String plate = rs.getString(4);
+                String available = plate == null ? null : String.valueOf(rs.getInt(5) == 1);
+                String[] values = {rs.getString(1), rs.getString(2), rs.getString(3), plate, available};
+                out.write(format == Format.CSV ? toCsv(values) : toJson(values));
+                out.newLine();
+                rows++;
+                if (progress != null && rows % chunkSize == 0) {
+                    progress.onProgress(rows, 0);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Hashes a chunk's plaintext passwords, if any, inserts it through the writer in
+     * a single transaction, then registers its drivers with the
+     * {@link AvailabilityStore}.
+     *
+     * @return the number of rows stored
+     */
+    private long flush(PasswordHasher hasher, List<Row> chunk, List<Rejected> rejects) throws SQLException {
+        List<Row> rows = hashPasswords(hasher, chunk);
+        Stored stored;
+        try {
+            stored = DB.writer().submit(c -> insert(c, rows)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sql) {
+                throw sql;
+            }
+            throw new SQLException("Import chunk failed", e.getCause());
+        }
+
+        long count = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (stored.inserted()[i]) {
+                count++;
+            } else {
+                report(rejects, new Rejected(rows.get(i).line, "Username already exists: " + rows.get(i).username));
+            }
+        }
+
+        // Only the rows just inserted are registered; reloading the whole table
+        // would clobber availability changes that have not been flushed yet.
+        AvailabilityStore store = DB.availability();
+        for (int[] d : stored.drivers()) {
+            store.register(d[0], d[1] == 1);
+        }
+        return count;
+    }
+
+    /**
+     * Replaces plaintext passwords with BCrypt hashes; values that are already
+     * hashes are kept. The hasher is null when every row is already hashed.
+     */
+    private static List<Row> hashPasswords(PasswordHasher hasher, List<Row> chunk) {
+        List<CompletableFuture<Row>> hashed = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            hashed.add(PasswordHasher.isHash(row.password)
+                    ? CompletableFuture.completedFuture(row)
+                    : hasher.hash(row.password).thenApply(row::withPassword));
+        }
+        List<Row> rows = new ArrayList<>(chunk.size());
+        for (CompletableFuture<Row> f : hashed) {
+            rows.add(f.join());
+        }
+        return rows;
+    }
+
+    /** Inserts one chunk on the writer's connection. */
+    private static Stored insert(Connection c, List<Row> chunk) throws SQLException {
+        boolean[] inserted = new boolean[chunk.size()];
+        List<int[]> newDrivers = new ArrayList<>();
+        try (PreparedStatement users = c.prepareStatement(INSERT_USER);
+             PreparedStatement drivers = c.prepareStatement(INSERT_DRIVER)) {
+
+            for (Row row : chunk) {
+                users.setString(1, row.username);
+                users.setString(2, row.password);
+                users.setString(3, row.classification);
+                users.addBatch();
+            }
+            int[] counts = users.executeBatch();
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Row row = chunk.get(i);
+                inserted[i] = counts[i] != 0;
+                if (!inserted[i] || row.plateNumber == null) {
+                    continue;
+                }
+                drivers.setString(1, row.plateNumber);
+                drivers.setInt(2, row.available ? 1 : 0);
+                drivers.setString(3, row.username);
+                try (ResultSet rs = drivers.executeQuery()) {
+                    if (rs.next()) {
+                        newDrivers.add(new int[]{rs.getInt(1), row.available ? 1 : 0});
+                    }
+                }
+            }
+        }
+        return new Stored(inserted, newDrivers);
+    }
+
+    private void report(List<Rejected> rejects, Rejected r) {
+        if (rejects.size() < maxReportedRejects) {
+            rejects.add(r);
+        }
+    }
+
+    /**
+     * A validated input row.
+     */
+    private record Row(long line, String username, String password, String classification,
+                       String plateNumber, boolean available) {
+
+        Row withPassword(String password) {
+            return new Row(line, username, password, classification, plateNumber, available);
+        }
+
+        static Row from(long line, Map<String, String> f) {
+            String username = trimToNull(f.get("username"));
+            String password = f.get("password");
+            String classification = trimToNull(f.get("classification"));
+            String plate = trimToNull(f.get("plateNumber"));
+
+            if (username == null) {
+                throw new IllegalArgumentException("Missing username");
+            }
+            if (password == null || password.isEmpty()) {
+                throw new IllegalArgumentException("Missing password");
+            }
+            if (!"Rider".equalsIgnoreCase(classification) && !"Driver".equalsIgnoreCase(classification)) {
+                throw new IllegalArgumentException("Classification must be Rider or Driver");
+            }
+            classification = "Driver".equalsIgnoreCase(classification) ? "Driver" : "Rider";
+            if (classification.equals("Driver") && plate == null) {
+                throw new IllegalArgumentException("Driver without plateNumber");
+            }
+            if (classification.equals("Rider")) {
+                plate = null;
+            }
+            boolean available = "true".equalsIgnoreCase(f.get("available")) || "1".equals(f.get("available"));
+            return new Row(line, username, password, classification, plate, available);
+        }
+
+        private static String trimToNull(String s) {
+            if (s == null) {
+                return null;
+            }
+            s = s.trim();
+            return s.isEmpty() ? null : s;
+        }
+    }
+
+    // --- CSV ---------------------------------------------------------------
+
+    private static Map<String, String> csvFields(String[] header, String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() > header.length) {
+            throw new IllegalArgumentException("Too many columns");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            fields.put(header[i].trim(), values.get(i));
+        }
+        return fields;
+    }
+
+    /** Splits one CSV line, honouring double-quoted fields. */
+    private static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        out.add(cur.toString());
+        return out;
+    }
+
+    private static String toCsv(String[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String v = values[i];
+            if (v == null) {
+                continue;
+            }
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0) {
+                sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(v);
+            }
+        }
+        return sb.toString();
+    }
+
+    // --- NDJSON ------------------------------------------------------------
+
+    private static final String[] JSON_KEYS = {"username", "password", "classification", "plateNumber", "available"};
+
+    private static String toJson(String[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append('"').append(JSON_KEYS[i]).append("\":");
+            if (i == 4) {
+                sb.append(values[i]);
+            } else {
+                appendJsonString(sb, values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Parses one flat JSON object whose values are strings, numbers,
+     * booleans or null. Nested objects and arrays are rejected.
+     */
+    static Map<String, String> parseJson(String line) {
+        Map<String, String> out = new HashMap<>();
+        int[] pos = {skipWs(line, 0)};
+        expect(line, pos, '{');
+        pos[0] = skipWs(line, pos[0]);
+        if (peek(line, pos) == '}') {
+            return out;
+        }
+        while (true) {
+            pos[0] = skipWs(line, pos[0]);
+            String key = readJsonString(line, pos);
+            pos[0] = skipWs(line, pos[0]);
+            expect(line, pos, ':');
+            pos[0] = skipWs(line, pos[0]);
+            char ch = peek(line, pos);
+            String value;
+            if (ch == '"') {
+                value = readJsonString(line, pos);
+            } else if (ch == '{' || ch == '[') {
+                throw new IllegalArgumentException("Nested values are not supported");
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) {
+                    pos[0]++;
+                }
+                value = line.substring(start, pos[0]);
+                if (value.equals("null")) {
+                    value = null;
+                }
+            }
+            out.put(key, value);
+            pos[0] = skipWs(line, pos[0]);
+            ch = peek(line, pos);
+            pos[0]++;
+            if (ch == '}') {
+                return out;
+            }
+            if (ch != ',') {
+                throw new IllegalArgumentException("Malformed JSON");
+            }
+        }
+    }
+
+    private static String readJsonString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < s.length()) {
+            char ch = s.charAt(pos[0]++);
+            if (ch == '"') {
+                return sb.toString();
+            }
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            if (pos[0] >= s.length()) {
+                break;
+            }
+            char esc = s.charAt(pos[0]++);
+            switch (esc) {
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (pos[0] + 4 > s.length()) {
+                        throw new IllegalArgumentException("Malformed JSON escape");
+                    }
+                    sb.append((char) Integer.parseInt(s.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                }
+                default -> sb.append(esc);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    private static char peek(String s, int[] pos) {
+        if (pos[0] >= s.length()) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        return s.charAt(pos[0]);
+    }
+
+    private static void expect(String s, int[] pos, char ch) {
+        if (peek(s, pos) != ch) {
+            throw new IllegalArgumentException("Malformed JSON: expected '" + ch + "'");
+        }
+        pos[0]++;
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Command-line entry point:
+     * {@code BulkLoader import|export <file> [chunkSize]}.
+     *
+     * @param args the command, the file and an optional chunk size
+     * @throws Exception if the import or export fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BulkLoader import|export <file.csv|file.ndjson> [chunkSize]");
+            return;
+        }
+        Path file = Path.of(args[1]);
+        int chunk = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        BulkLoader loader = new BulkLoader(chunk, 100,
+                (ok, bad) -> System.out.println("[BULK] " + ok + " rows, " + bad + " rejected"));
+
+        DB.startup().join();
+        try {
+            if (args[0].equals("import")) {
+                Result r = loader.importUsers(file, Format.of(file));
+                r.rejectedRows().forEach(x -> System.out.println("[BULK] line " + x.line() + ": " + x.reason()));
+                System.out.println("[BULK] Imported " + r.accepted() + " rows (" + r.rejected()
+                        + " rejected) in " + r.millis() + " ms");
+            } else {
+                long n = loader.exportUsers(file, Format.of(file));
+                System.out.println("[BULK] Exported " + n + " rows");
+            }
+        } finally {
+            DB.shutdown();
+        }
+    }
+}
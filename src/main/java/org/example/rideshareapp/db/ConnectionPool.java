@@ -0,0 +1,432 @@
+package org.example.rideshareapp.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of reusable JDBC connections to the SQLite database.
+ *
+ * <p>Each physical connection is opened once, configured with the pool's
+ * initialization statements (typically {@code PRAGMA} settings, which SQLite
+ * keeps per connection), and then handed out repeatedly. Callers receive a
+ * lightweight proxy whose {@code close()} returns the physical connection to
+ * the pool instead of closing it, so existing try-with-resources code keeps
+ * working unchanged.</p>
+ *
+ * <p>Connections that sat idle longer than the validation interval are checked
+ * with {@link Connection#isValid(int)} before reuse, and a background task
+ * closes connections that stay idle past the idle timeout while keeping at
+ * least {@code minIdle} of them open.</p>
+ *
+ * <p>Every physical connection also carries a {@link StatementCache}. Calls to
+ * {@link Connection#prepareStatement(String)} on a borrowed connection reuse
+ * an already compiled statement for the same SQL text, so repeated queries
+ * skip SQLite's parse and plan step.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Human-readable name used in log output and thread names. */
+    private final String name;
+
+    /** JDBC URL used to open physical connections. */
+    private final String url;
+
+    /** Driver properties passed to every physical connection. */
+    private final Properties properties;
+
+    /** Statements executed once on every newly opened physical connection. */
+    private final List<String> initSql;
+
+    /** Maximum number of physical connections (active plus idle). */
+    private final int maxSize;
+
+    /** Number of idle connections that eviction never closes. */
+    private final int minIdle;
+
+    /** Longest time a caller waits for a free connection. */
+    private final long borrowTimeoutNanos;
+
+    /** Idle time after which a connection may be evicted. */
+    private final long idleTimeoutNanos;
+
+    /** Idle time after which a connection is validated before reuse. */
+    private final long validationIntervalNanos;
+
+    /** Prepared statements cached per physical connection; 0 disables caching. */
+    private final int statementCacheSize;
+
+    /** Permits bounding the number of connections handed out at once. */
+    private final Semaphore permits;
+
+    /** Idle connections; the most recently returned one is at the head. */
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    /** Background task that closes long-idle connections. */
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+
+    /** Set once {@link #close()} has been called. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool. No connections are opened until the first borrow
+     * or an explicit {@link #warmUp()}.
+     *
+     * @param name                     name used for logging and the evictor thread
+     * @param url                      JDBC URL of the database
+     * @param properties               driver properties for each physical connection
+     * @param initSql                  statements run once per physical connection
+     * @param maxSize                  maximum number of physical connections
+     * @param minIdle                  idle connections kept open by eviction
+     * @param borrowTimeoutMillis      maximum wait for a free connection
+     * @param idleTimeoutMillis        idle time before a connection may be evicted
+     * @param validationIntervalMillis idle time before a connection is revalidated
+     * @param statementCacheSize       prepared statements cached per connection, 0 to disable
+     */
+    public ConnectionPool(String name, String url, Properties properties, List<String> initSql,
+                          int maxSize, int minIdle, long borrowTimeoutMillis,
+                          long idleTimeoutMillis, long validationIntervalMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.name = name;
+        this.url = url;
+        this.properties = properties;
+        this.initSql = List.copyOf(initSql);
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(Math.max(minIdle, 0), maxSize);
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.statementCacheSize = Math.max(statementCacheSize, 0);
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new physical connection
+     * if none is idle and the pool is below its maximum size. Closing the
+     * returned connection hands it back to the pool.
+     *
+     * @return a pooled connection
+     * @throws SQLException if no connection becomes available in time or one cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + name + "' is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out waiting for a connection from pool '" + name + "'");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pc = takeIdleOrOpen();
+            recordWait(System.nanoTime() - start);
+            active.incrementAndGet();
+            return wrap(pc);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens connections until {@code minIdle} of them are idle, so the first
+     * requests do not pay the cost of opening the database. Each connection
+     * is opened under a permit, like a borrow, so warming up never takes the
+     * pool past its maximum size; it stops early if every permit is in use.
+     *
+     * @throws SQLException if a connection cannot be opened
+     */
+    public void warmUp() throws SQLException {
+        while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                if (idle.size() < minIdle) {
+                    idle.offerLast(open());
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Returns a point-in-time snapshot of the pool's counters.
+     *
+     * @return the current pool statistics
+     */
+    public Stats stats() {
+        long count = borrows.sum();
+        return new Stats(
+                active.get(),
+                idle.size(),
+                total.get(),
+                maxSize,
+                count,
+                count == 0 ? 0 : borrowWaitNanos.sum() / count / 1_000,
+                maxBorrowWaitNanos.get() / 1_000,
+                timeouts.sum(),
+                created.sum(),
+                evicted.sum(),
+                validationFailures.sum(),
+                statementHits.sum(),
+                statementMisses.sum(),
+                statementEvictions.sum()
+        );
+    }
+
+    /**
+     * Closes all idle connections and stops the eviction task. Connections
+     * still borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection, validating it if it has
+     * been idle for a while, or opens a new one.
+     */
+    private PooledConnection takeIdleOrOpen() throws SQLException {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pc.lastUsedNanos < validationIntervalNanos || isValid(pc)) {
+                return pc;
+            }
+            validationFailures.increment();
+            discard(pc);
+        }
+        return open();
+    }
+
+    /** Opens and configures a new physical connection. */
+    private PooledConnection open() throws SQLException {
+        Connection c = DriverManager.getConnection(url, properties);
+        try (Statement s = c.createStatement()) {
+            for (String sql : initSql) {
+                s.execute(sql);
+            }
+        } catch (SQLException e) {
+            c.close();
+            throw e;
+        }
+        total.incrementAndGet();
+        created.increment();
+        StatementCache cache = statementCacheSize == 0 ? null
+                : new StatementCache(c, statementCacheSize, statementHits, statementMisses, statementEvictions);
+        return new PooledConnection(c, cache);
+    }
+
+    /** Checks that a physical connection still works. */
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Returns a connection to the pool after the caller closed its handle. */
+    private void release(PooledConnection pc) {
+        active.decrementAndGet();
+        try {
+            if (closed || pc.connection.isClosed()) {
+                discard(pc);
+                return;
+            }
+            if (pc.statements != null) {
+                pc.statements.reset();
+            }
+            if (!pc.connection.getAutoCommit()) {
+                pc.connection.rollback();
+                pc.connection.setAutoCommit(true);
+            }
+            pc.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(pc);
+        } catch (SQLException e) {
+            System.err.println("[DB POOL] Dropping broken connection: " + e.getMessage());
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Closes a physical connection and removes it from the pool's count. */
+    private void discard(PooledConnection pc) {
+        total.decrementAndGet();
+        try {
+            if (pc.statements != null) {
+                pc.statements.closeAll();
+            }
+            pc.connection.close();
+        } catch (SQLException e) {
+            System.err.println("[DB POOL] Error closing connection: " + e.getMessage());
+        }
+    }
+
+    /** Closes connections idle longer than the idle timeout, oldest first. */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        // total includes borrowed connections; only idle ones count towards minIdle
+        while (it.hasNext() && idle.size() > minIdle) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsedNanos >= idleTimeoutNanos && idle.remove(pc)) {
+                evicted.increment();
+                discard(pc);
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        borrows.increment();
+        borrowWaitNanos.add(nanos);
+        maxBorrowWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Wraps a pooled connection in a handle whose close() returns it to the pool. */
+    private Connection wrap(PooledConnection pc) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(pc));
+    }
+
+    /**
+     * A physical connection owned by the pool, along with its statement
+     * cache and the time it was last returned.
+     */
+    private static final class PooledConnection {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastUsedNanos = System.nanoTime();
+
+        PooledConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * Invocation handler behind each borrowed connection. It forwards calls
+     * to the physical connection until the caller closes it, after which the
+     * handle is dead and the physical connection is back in the pool.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean released;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pc.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + name + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (pc.statements != null && "prepareStatement".equals(method.getName())
+                            && args.length == 1) {
+                        return pc.statements.prepare((String) args[0], (Connection) proxy);
+                    }
+            }
+            try {
+                return method.invoke(pc.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool counters.
+     *
+     * @param active              connections currently borrowed
+     * @param idle                connections waiting in the pool
+     * @param total               physical connections currently open
+     * @param maxSize             configured maximum pool size
+     * @param borrows             total successful borrows
+     * @param avgBorrowWaitMicros average time spent waiting to borrow, in microseconds
+     * @param maxBorrowWaitMicros longest time spent waiting to borrow, in microseconds
+     * @param timeouts            borrows that gave up waiting
+     * @param created             physical connections opened so far
+     * @param evicted             connections closed for being idle too long
+     * @param validationFailures  idle connections found broken on reuse
+     * @param statementHits       prepared statements served from a connection's cache
+     * @param statementMisses     prepared statements that had to be compiled
+     * @param statementEvictions  cached statements closed to make room for others
+     */
+    public record Stats(int active, int idle, int total, int maxSize, long borrows,
+                        long avgBorrowWaitMicros, long maxBorrowWaitMicros, long timeouts,
+                        long created, long evicted, long validationFailures,
+                        long statementHits, long statementMisses, long statementEvictions) {
+    }
+}
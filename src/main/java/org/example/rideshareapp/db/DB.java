@@ -1,18 +1,48 @@
 package org.example.rideshareapp.db;
 
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Provides database initialization and access for the RideShare application.
- * This class creates the required SQLite tables on first use and exposes
+ * This class brings the SQLite schema up to date at startup and exposes
  * a method for retrieving active database connections.
  *
  * <p>The database uses a local SQLite file located in the application's
- * {@code data} directory. Tables are created automatically if they do not
- * already exist.</p>
+ * {@code data} directory. Tables and indexes are created and upgraded by
+ * {@link SchemaMigrator}.</p>
+ *
+ * <p>Initialization runs in the background: {@link #startup()} is called as
+ * the application starts, and {@link #get()} waits for it only if it has
+ * not finished yet.</p>
+ *
+ * <p>Connections are served from a bounded {@link ConnectionPool}. Its size
+ * and timeouts can be tuned with the {@code rideshare.db.poolSize},
+ * {@code rideshare.db.minIdle}, {@code rideshare.db.borrowTimeoutMs} and
+ * {@code rideshare.db.idleTimeoutMs} system properties, and the number of
+ * prepared statements kept compiled per connection with
+ * {@code rideshare.db.statementCacheSize}.</p>
+ *
+ * <p>Queries that only read should use {@link #read()}, which serves
+ * read-only connections from a separate pool sized by
+ * {@code rideshare.db.readPoolSize} (the number of cores by default).</p>
+ *
+ * <p>Writes that do not need an answer immediately can go through
+ * {@link #writer()}, which batches them into group-committed transactions.
+ * Its batch size and linger time are set with
+ * {@code rideshare.db.writeBatchSize} and {@code rideshare.db.writeLingerMicros}.</p>
+ *
+ * <p>Driver availability is served from an {@link AvailabilityStore} that is
+ * loaded here at startup and flushed back every
+ * {@code rideshare.availability.flushMs} milliseconds.</p>
  */
 public class DB {
 
@@ -20,50 +50,258 @@ public class DB {
     private static final String URL = "jdbc:sqlite:./data/app.db";
 
     /**
-     * Static initializer that prepares the database when the class is loaded.
-     * This includes enabling SQLite settings and creating the required tables.
-     * Any initialization failure results in a runtime exception.
+     * Per-connection settings. SQLite keeps these on the connection rather
+     * than in the database file, so the pool applies them to every physical
+     * connection it opens.
+     */
+    private static final List<String> CONNECTION_PRAGMAS = List.of(
+            "PRAGMA foreign_keys = ON",
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA busy_timeout = 5000"
+    );
+
+    /** Shared pool behind {@link #get()}. */
+    private static final ConnectionPool POOL = new ConnectionPool(
+            "main",
+            URL,
+            new Properties(),
+            CONNECTION_PRAGMAS,
+            Integer.getInteger("rideshare.db.poolSize", 4),
+            Integer.getInteger("rideshare.db.minIdle", 1),
+            Long.getLong("rideshare.db.borrowTimeoutMs", 5_000L),
+            Long.getLong("rideshare.db.idleTimeoutMs", 60_000L),
+            Long.getLong("rideshare.db.validationIntervalMs", 30_000L),
+            Integer.getInteger("rideshare.db.statementCacheSize", 32)
+    );
+
+    /**
+     * Settings for read-only connections. {@code query_only} makes SQLite
+     * reject any write on them, on top of the read-only open mode.
+     */
+    private static final List<String> READ_PRAGMAS = List.of(
+            "PRAGMA query_only = ON",
+            "PRAGMA busy_timeout = 5000"
+    );
+
+    /**
+     * Pool of read-only connections. In WAL mode each reader works from its
+     * own snapshot, so these never wait for the writer.
+     */
+    private static final ConnectionPool READ_POOL = new ConnectionPool(
+            "read",
+            URL,
+            readOnlyProperties(),
+            READ_PRAGMAS,
+            Integer.getInteger("rideshare.db.readPoolSize", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("rideshare.db.readMinIdle", 1),
+            Long.getLong("rideshare.db.borrowTimeoutMs", 5_000L),
+            Long.getLong("rideshare.db.idleTimeoutMs", 60_000L),
+            Long.getLong("rideshare.db.validationIntervalMs", 30_000L),
+            Integer.getInteger("rideshare.db.statementCacheSize", 32)
+    );
+
+    /**
+     * Single writer that group-commits queued mutations. Its thread waits
+     * for {@link #startup()} before the first batch, so nothing is written
+     * before the schema exists.
+     */
+    private static final WriteQueue WRITER = new WriteQueue(
+            POOL,
+            Integer.getInteger("rideshare.db.writeBatchSize", 512),
+            Long.getLong("rideshare.db.writeLingerMicros", 2_000L),
+            DB::awaitReady
+    );
+
+    /** In-memory driver availability, written back to {@code drivers}. */
+    private static final AvailabilityStore AVAILABILITY = new AvailabilityStore(
+            WRITER,
+            Long.getLong("rideshare.availability.flushMs", 250L)
+    );
+
+    /** Memory-mapped journal of ride events, projected into {@code rides}. */
+    private static final RideJournal JOURNAL = new RideJournal(
+            Path.of("data", "journal"),
+            Integer.getInteger("rideshare.journal.segmentBytes", 64 * 1024 * 1024),
+            WRITER
+    );
+
+    /** Completed once the database is migrated and the pool and caches are warm. */
+    private static volatile CompletableFuture<Void> ready;
+
+    /**
+     * Starts preparing the database on a background thread, if that has not
+     * already started. This enables SQLite settings, applies pending
+     * migrations, opens the pool's idle connections, loads the driver
+     * availability store and recovers the ride journal. Startup failures complete the returned future
+     * exceptionally.
+     *
+     * @return a future completed when the database is ready for use
+     */
+    public static synchronized CompletableFuture<Void> startup() {
+        if (ready == null) {
+            ExecutorService bootstrap = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "db-bootstrap");
+                t.setDaemon(true);
+                return t;
+            });
+            ready = CompletableFuture.runAsync(DB::initialize, bootstrap);
+            ready.whenComplete((v, e) -> bootstrap.shutdown());
+        }
+        return ready;
+    }
+
+    /**
+     * Returns whether {@link #startup()} has finished successfully.
+     *
+     * @return true if the database is ready
+     */
+    public static boolean isReady() {
+        CompletableFuture<Void> f = ready;
+        return f != null && f.isDone() && !f.isCompletedExceptionally();
+    }
+
+    /**
+     * Waits for {@link #startup()} to finish, starting it if necessary.
+     * Returns immediately once the database is ready.
+     *
+     * @throws RuntimeException if initialization failed
+     */
+    public static void awaitReady() {
+        CompletableFuture<Void> f = ready;
+        if (f == null) {
+            f = startup();
+        }
+        if (!f.isDone() || f.isCompletedExceptionally()) {
+            try {
+                f.join();
+            } catch (CompletionException e) {
+                throw new RuntimeException("Failed to initialize database!", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Driver properties that open the database file with
+     * {@code SQLITE_OPEN_READONLY}.
+     */
+    private static Properties readOnlyProperties() {
+        Properties p = new Properties();
+        p.setProperty("open_mode", "1");
+        return p;
+    }
+
+    /**
+     * Prepares the database. Runs on the bootstrap thread.
      */
-    static {
-        try (Connection c = DriverManager.getConnection(URL);
+    private static void initialize() {
+        long start = System.nanoTime();
+        try (Connection c = POOL.borrow();
              Statement s = c.createStatement()) {
 
-            s.execute("PRAGMA foreign_keys = ON");
             s.execute("PRAGMA journal_mode = WAL");
-            s.execute("PRAGMA synchronous = NORMAL");
-
-            s.execute("""
-                CREATE TABLE IF NOT EXISTS users (
-                  id INTEGER PRIMARY KEY AUTOINCREMENT,
-                  classification TEXT NOT NULL DEFAULT ' ',
-                  username TEXT NOT NULL UNIQUE,
-                  password_hash TEXT NOT NULL,
-                  created_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now'))
-                )
-            """);
-
-            s.execute("""
-                CREATE TABLE IF NOT EXISTS drivers (
-                  driverId INTEGER PRIMARY KEY,
-                  plateNumber TEXT NOT NULL,
-                  availabilityStatus INTEGER NOT NULL DEFAULT 0,
-                  created_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
-                  FOREIGN KEY (driverId) REFERENCES users(id)
-                )
-            """);
+
+            int version = SchemaMigrator.migrate(c);
+            System.out.println("[DB] Schema at version " + version);
+
+            AVAILABILITY.load(c);
+
+            JOURNAL.open(c);
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database!", e);
         }
+
+        try {
+            POOL.warmUp();
+            READ_POOL.warmUp();
+        } catch (SQLException e) {
+            System.err.println("[DB] Pool warm-up failed: " + e.getMessage());
+        }
+
+        System.out.println("[DB] Ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
     }
 
     /**
-     * Returns an active connection to the SQLite database.
+     * Returns a pooled connection to the SQLite database. Closing the
+     * connection returns it to the pool. Waits for {@link #startup()} to
+     * finish first if it is still running.
      *
-     * @return a new {@link Connection} instance linked to the database
-     * @throws SQLException if a connection cannot be established
+     * @return a {@link Connection} borrowed from the shared pool
+     * @throws SQLException if no connection could be obtained
      */
     public static Connection get() throws SQLException {
-        return DriverManager.getConnection(URL);
+        awaitReady();
+        return POOL.borrow();
+    }
+
+    /**
+     * Returns a pooled read-only connection. Queries on it run against a WAL
+     * snapshot, concurrently with each other and with the writer. Any attempt
+     * to write through it fails.
+     *
+     * @return a read-only {@link Connection} borrowed from the read pool
+     * @throws SQLException if no connection could be obtained
+     */
+    public static Connection read() throws SQLException {
+        awaitReady();
+        return READ_POOL.borrow();
+    }
+
+    /**
+     * Returns the shared group-commit writer. Mutations may be submitted
+     * before {@link #startup()} finishes; they run once it has.
+     *
+     * @return the application's {@link WriteQueue}
+     */
+    public static WriteQueue writer() {
+        return WRITER;
+    }
+
+    /**
+     * Returns the in-memory driver availability store.
+     *
+     * @return the application's {@link AvailabilityStore}
+     */
+    public static AvailabilityStore availability() {
+        return AVAILABILITY;
+    }
+
+    /**
+     * Returns the ride event journal.
+     *
+     * @return the application's {@link RideJournal}
+     */
+    public static RideJournal journal() {
+        return JOURNAL;
+    }
+
+    /**
+     * Returns the current statistics of the shared connection pool.
+     *
+     * @return a snapshot of the pool counters
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return POOL.stats();
+    }
+
+    /**
+     * Returns the current statistics of the read-only connection pool.
+     *
+     * @return a snapshot of the read pool counters
+     */
+    public static ConnectionPool.Stats readPoolStats() {
+        return READ_POOL.stats();
+    }
+
+    /**
+     * Commits any queued writes and closes all pooled connections. Called
+     * when the application exits.
+     */
+    public static void shutdown() {
+        AVAILABILITY.close();
+        JOURNAL.close();
+        WRITER.close();
+        READ_POOL.close();
+        POOL.close();
     }
 }
@@ -0,0 +1,42 @@
+package org.example.rideshareapp.db;
+
+/**
+ * A ride as stored in the {@code rides} table.
+ *
+ * <p>Timestamps are epoch milliseconds, with {@code 0} meaning the ride has
+ * not reached that stage. A {@code driverId} of {@code 0} means no driver
+ * has been assigned yet.</p>
+ *
+ * @param id          the ride ID, or {@code 0} if the database should assign one
+ * @param riderId     the user ID of the rider
+ * @param driverId    the user ID of the assigned driver, or {@code 0}
+ * @param origin      the pickup address
+ * @param destination the drop-off address
+ * @param distance    the ride distance in miles
+ * @param fare        the ride fare in USD
+ * @param status      the ride's current status
+ * @param requestedAt when the ride was requested
+ * @param acceptedAt  when a driver accepted the ride
+ * @param startedAt   when the rider was picked up
+ * @param completedAt when the ride completed or was cancelled
+ */
+public record Ride(long id, int riderId, int driverId, String origin, String destination,
+                   double distance, double fare, RideStatus status,
+                   long requestedAt, long acceptedAt, long startedAt, long completedAt) {
+
+    /**
+     * Creates a newly requested ride with no driver.
+     *
+     * @param riderId     the user ID of the rider
+     * @param origin      the pickup address
+     * @param destination the drop-off address
+     * @param distance    the ride distance in miles
+     * @param fare        the ride fare in USD
+     * @return a ride in the {@link RideStatus#REQUESTED} state
+     */
+    public static Ride requested(int riderId, String origin, String destination,
+                                 double distance, double fare) {
+        return new Ride(0, riderId, 0, origin, destination, distance, fare,
+                RideStatus.REQUESTED, System.currentTimeMillis(), 0, 0, 0);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.rideshareapp.db;
+
+/**
+ * A single change in a ride's lifecycle, as written to the {@link RideJournal}.
+ *
+ * <p>Only the fields that matter for a given type are filled in; the rest are
+ * zero or {@code null}. The journal stores addresses in full, up to
+ * {@value RideJournal#MAX_TEXT_BYTES} bytes of UTF-8 each; longer ones are
+ * rejected when the event is appended.</p>
+ *
+ * @param type        what happened
+ * @param sequence    position in the journal, assigned on append
+ * @param rideId      the ride the event belongs to
+ * @param timestamp   when it happened, in epoch milliseconds
+ * @param riderId     the rider's user ID ({@link Type#REQUESTED} only)
+ * @param driverId    the driver's user ID, or 0
+ * @param distance    the ride distance in miles ({@link Type#REQUESTED} only)
+ * @param fare        the fare in USD ({@link Type#REQUESTED} only)
+ * @param origin      the pickup address ({@link Type#REQUESTED} only)
+ * @param destination the drop-off address ({@link Type#REQUESTED} only)
+ */
+public record RideEvent(Type type, long sequence, long rideId, long timestamp,
+                        int riderId, int driverId, double distance, double fare,
+                        String origin, String destination) {
+
+    /**
+     * Kinds of ride events. The journal stores the ordinal, so new kinds go
+     * at the end.
+     */
+    public enum Type {
+        REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED,
+        /** Dispatch offered the ride to {@code driverId}. */
+        MATCHED,
+        /** {@code driverId} turned the offer down; the ride is waiting for a driver again. */
+        DECLINED
+    }
+
+    /**
+     * Creates an event for a newly requested ride.
+     *
+     * @param rideId      the new ride's ID
+     * @param riderId     the rider's user ID
+     * @param origin      the pickup address
+     * @param destination the drop-off address
+     * @param distance    the ride distance in miles
+     * @param fare        the fare in USD
+     * @return the event
+     */
+    public static RideEvent requested(long rideId, int riderId, String origin, String destination,
+                                      double distance, double fare) {
+        return new RideEvent(Type.REQUESTED, 0, rideId, System.currentTimeMillis(),
+                riderId, 0, distance, fare, origin, destination);
+    }
+
+    /**
+     * Creates an event for a change that only involves the ride and,
+     * optionally, its driver.
+     *
+     * @param type     the kind of change
+     * @param rideId   the ride's ID
+     * @param driverId the driver's user ID, or 0
+     * @return the event
+     */
+    public static RideEvent of(Type type, long rideId, int driverId) {
+        return new RideEvent(type, 0, rideId, System.currentTimeMillis(),
+                0, driverId, 0, 0, null, null);
+    }
+
+    /** Returns a copy of this event with its journal sequence set. */
+    RideEvent withSequence(long seq) {
+        return new RideEvent(type, seq, rideId, timestamp, riderId, driverId,
+                distance, fare, origin, destination);
+    }
+}
@@ -0,0 +1,537 @@
+package org.example.rideshareapp.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of ride lifecycle events.
+ *
+ * <p>Appending an event copies one binary record into a
+ * {@link MappedByteBuffer}, so the request path never waits on a SQLite
+ * transaction. A projector thread then applies journaled events to the
+ * {@code rides} table in batches through the {@link WriteQueue}, and records
+ * the last projected sequence in {@code journal_checkpoint} in the same
+ * transaction.</p>
+ *
+ * <p>The journal is split into segment files of a fixed size. When the next
+ * record does not fit in the current one, a new segment is started; segments whose events have all been
+ * projected are deleted. On startup, {@link #open(Connection)} scans the segments,
+ * stops at the first record whose CRC does not match (a torn write), and
+ * queues every event newer than the checkpoint for projection again.</p>
+ *
+ * <p>Records vary in size with the length of their addresses, which are
+ * stored in full. Record layout, big-endian:</p>
+ * <pre>
+ *   0  int    magic
+ *   4  int    record length n, including the CRC
+ *   8  long   sequence
+ *  16  long   ride ID
+ *  24  long   timestamp (epoch ms)
+ *  32  int    rider ID
+ *  36  int    driver ID
+ *  40  double distance
+ *  48  double fare
+ *  56  byte   event type
+ *  57  short  origin length in bytes, or -1 for none
+ *  59  ...    origin (UTF-8)
+ *      short  destination length in bytes, or -1 for none
+ *      ...    destination (UTF-8)
+ * n-4  int    CRC32 of bytes 0..n-5
+ * </pre>
+ */
+public class RideJournal implements AutoCloseable {
+
+    /** Longest address the journal stores, in bytes of UTF-8. */
+    public static final int MAX_TEXT_BYTES = 8 * 1024;
+
+    private static final int MAGIC = 0x52494445; // "RIDE"
+    /** Size of a record's fixed fields, up to the origin's length. */
+    private static final int HEADER_SIZE = 57;
+    /** Size of the largest possible record. */
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 2 * (2 + MAX_TEXT_BYTES) + 4;
+
+    private static final String SEGMENT_PREFIX = "rides-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int PROJECTION_BATCH = 1_000;
+
+    /** Directory holding the segment files. */
+    private final Path directory;
+
+    /** Size of each segment file, at least the largest record. */
+    private final int segmentSize;
+
+    /** Writer used to project events into SQLite. */
+    private final WriteQueue writer;
+
+    /** Events appended or recovered but not yet projected. */
+    private final BlockingQueue<RideEvent> unprojected = new LinkedBlockingQueue<>();
+
+    /** Next sequence number to assign. */
+    private final AtomicLong nextSequence = new AtomicLong(1);
+
+    /** Next ride ID to hand out. */
+    private final AtomicLong nextRideId = new AtomicLong(1);
+
+    /** Highest sequence committed to SQLite. */
+    private final AtomicLong projectedSequence = new AtomicLong();
+
+    /** Segment currently being appended to. */
+    private Segment current;
+
+    /** Thread applying journaled events to SQLite. */
+    private Thread projector;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a journal. Nothing is read or written until {@link #open(Connection)}.
+     *
+     * @param directory    directory for segment files
+     * @param segmentBytes size of each segment file
+     * @param writer       writer used to project events into SQLite
+     */
+    public RideJournal(Path directory, int segmentBytes, WriteQueue writer) {
+        this.directory = directory;
+        this.segmentSize = Math.max(MAX_RECORD_SIZE, segmentBytes);
+        this.writer = writer;
+    }
+
+    /**
+     * Recovers existing segments, queues unprojected events and starts the
+     * projector. Must be called after the schema has been migrated.
+     *
+     * @param c connection used to read the checkpoint and the highest ride ID
+     * @throws SQLException if the checkpoint or ride IDs cannot be read
+     */
+    public synchronized void open(Connection c) throws SQLException {
+        long checkpoint;
+        long maxRideId;
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT COALESCE(MAX(sequence), 0) FROM journal_checkpoint")) {
+            ResultSet rs = ps.executeQuery();
+            checkpoint = rs.next() ? rs.getLong(1) : 0;
+        }
+        try (PreparedStatement ps = c.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM rides")) {
+            ResultSet rs = ps.executeQuery();
+            maxRideId = rs.next() ? rs.getLong(1) : 0;
+        }
+        projectedSequence.set(checkpoint);
+
+        try {
+            Files.createDirectories(directory);
+            long recovered = recover(checkpoint);
+            maxRideId = Math.max(maxRideId, unprojected.stream().mapToLong(RideEvent::rideId).max().orElse(0));
+            nextRideId.set(maxRideId + 1);
+            if (recovered > 0) {
+                System.out.println("[JOURNAL] Recovered " + recovered + " unprojected ride events");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open ride journal", e);
+        }
+
+        projector = new Thread(this::project, "ride-journal-projector");
+        projector.setDaemon(true);
+        projector.start();
+    }
+
+    /**
+     * Returns a new, unused ride ID.
+     *
+     * @return the ride ID
+     */
+    public long nextRideId() {
+        return nextRideId.getAndIncrement();
+    }
+
+    /**
+     * Appends an event to the journal. The event is durable against a
+     * process crash as soon as this returns, and is projected into SQLite
+     * shortly after.
+     *
+     * @param event the event to append
+     * @return the sequence number assigned to the event
+     * @throws IllegalArgumentException if an address is longer than {@value #MAX_TEXT_BYTES} bytes
+     */
+    public synchronized long append(RideEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Ride journal is closed");
+        }
+        byte[] origin = encode("origin", event.origin());
+        byte[] destination = encode("destination", event.destination());
+        int size = HEADER_SIZE + textSize(origin) + textSize(destination) + 4;
+        long seq = nextSequence.getAndIncrement();
+        RideEvent stamped = event.withSequence(seq);
+        try {
+            if (current == null || !current.hasRoom(size)) {
+                rollOver(seq);
+            }
+            current.write(stamped, origin, destination, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append ride event", e);
+        }
+        unprojected.add(stamped);
+        return seq;
+    }
+
+    /**
+     * Returns the number of events appended but not yet committed to SQLite.
+     *
+     * @return the projection lag, in events
+     */
+    public long lag() {
+        return nextSequence.get() - 1 - projectedSequence.get();
+    }
+
+    /**
+     * Flushes the current segment to disk and stops the projector after it
+     * has applied every queued event.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                current.buffer.force();
+            }
+        }
+        if (projector != null) {
+            projector.interrupt();
+            try {
+                projector.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Scans every segment in order, queueing events newer than the
+     * checkpoint, and positions the journal to append after the last valid
+     * record.
+     */
+    private long recover(long checkpoint) throws IOException {
+        List<Path> segments = listSegments();
+        long recovered = 0;
+        long lastSeq = checkpoint;
+
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = Segment.map(segments.get(i), segmentSize);
+            for (RideEvent event; (event = segment.readNext()) != null; ) {
+                lastSeq = Math.max(lastSeq, event.sequence());
+                if (event.sequence() > checkpoint) {
+                    unprojected.add(event);
+                    recovered++;
+                }
+            }
+            if (i == segments.size() - 1) {
+                current = segment;
+            }
+        }
+
+        nextSequence.set(lastSeq + 1);
+        return recovered;
+    }
+
+    /** Seals the current segment and starts a new one. */
+    private void rollOver(long firstSequence) throws IOException {
+        if (current != null) {
+            current.buffer.force();
+        }
+        Path file = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        current = Segment.map(file, segmentSize);
+        deleteProjectedSegments();
+    }
+
+    /** UTF-8 bytes of an address, or null for none. */
+    private static byte[] encode(String field, String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_TEXT_BYTES) {
+            // Refuse rather than cut it: the projector would write the cut text into rides for good.
+            throw new IllegalArgumentException("Ride " + field + " is longer than " + MAX_TEXT_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int textSize(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    /** Deletes sealed segments whose events are all projected. */
+    private void deleteProjectedSegments() throws IOException {
+        List<Path> segments = listSegments();
+        long projected = projectedSequence.get();
+        // A segment is fully projected if the next segment starts at or below the checkpoint + 1.
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1)) - 1 <= projected && !segments.get(i).equals(current.file)) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Main loop of the projector thread. */
+    private void project() {
+        List<RideEvent> batch = new ArrayList<>(PROJECTION_BATCH);
+        while (true) {
+            try {
+                // A batch that failed is retried at once, without waiting for new events.
+                if (batch.isEmpty()) {
+                    RideEvent first = unprojected.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (closed) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                unprojected.drainTo(batch, PROJECTION_BATCH - batch.size());
+            } catch (InterruptedException e) {
+                if (unprojected.isEmpty()) {
+                    return;
+                }
+                unprojected.drainTo(batch, PROJECTION_BATCH - batch.size());
+            }
+
+            try {
+                apply(List.copyOf(batch)).join();
+                projectedSequence.set(batch.get(batch.size() - 1).sequence());
+                batch.clear();
+            } catch (RuntimeException e) {
+                System.err.println("[JOURNAL] Projection failed, retrying: " + e.getMessage());
+                if (closed) {
+                    return;
+                }
+                sleepQuietly();
+            }
+        }
+    }
+
+    /** Applies a batch of events and advances the checkpoint in one transaction. */
+    private CompletableFuture<Void> apply(List<RideEvent> events) {
+        return writer.submit(c -> {
+            for (RideEvent e : events) {
+                try {
+                    applyOne(c, e);
+                } catch (SQLException ex) {
+                    // A bad event must not block the ones behind it.
+                    System.err.println("[JOURNAL] Skipping event " + e.sequence() + ": " + ex.getMessage());
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT OR REPLACE INTO journal_checkpoint (id, sequence) VALUES (1, ?)")) {
+                ps.setLong(1, events.get(events.size() - 1).sequence());
+                ps.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    private static void applyOne(Connection c, RideEvent e) throws SQLException {
+        switch (e.type()) {
+            case REQUESTED -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT OR IGNORE INTO rides (id, rider_id, origin, destination, distance, fare, status, requested_at) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, 'REQUESTED', ?)")) {
+                    ps.setLong(1, e.rideId());
+                    ps.setInt(2, e.riderId());
+                    ps.setString(3, e.origin());
+                    ps.setString(4, e.destination());
+                    ps.setDouble(5, e.distance());
+                    ps.setDouble(6, e.fare());
+                    ps.setLong(7, e.timestamp());
+                    ps.executeUpdate();
+                }
+            }
+            case ACCEPTED -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE rides SET driver_id = ?, status = 'ACCEPTED', accepted_at = ? WHERE id = ?")) {
+                    ps.setInt(1, e.driverId());
+                    ps.setLong(2, e.timestamp());
+                    ps.setLong(3, e.rideId());
+                    ps.executeUpdate();
+                }
+            }
+            case MATCHED -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE rides SET driver_id = ?, status = 'MATCHED' WHERE id = ?")) {
+                    ps.setInt(1, e.driverId());
+                    ps.setLong(2, e.rideId());
+                    ps.executeUpdate();
+                }
+            }
+            case DECLINED -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE rides SET driver_id = NULL, status = 'REQUESTED' WHERE id = ?")) {
+                    ps.setLong(1, e.rideId());
+                    ps.executeUpdate();
+                }
+            }
+            case STARTED -> updateStatus(c, "IN_PROGRESS", "started_at", e);
+            case COMPLETED -> updateStatus(c, "COMPLETED", "completed_at", e);
+            case CANCELLED -> updateStatus(c, "CANCELLED", "completed_at", e);
+        }
+    }
+
+    private static void updateStatus(Connection c, String status, String column, RideEvent e)
+            throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE rides SET status = ?, " + column + " = ? WHERE id = ?")) {
+            ps.setString(1, status);
+            ps.setLong(2, e.timestamp());
+            ps.setLong(3, e.rideId());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One memory-mapped segment file and the position of the next record.
+     */
+    private static final class Segment {
+        final Path file;
+        final MappedByteBuffer buffer;
+        int position;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path file, int size) throws IOException {
+            try (FileChannel ch = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(file, ch.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        boolean hasRoom(int size) {
+            return position + size <= buffer.capacity();
+        }
+
+        void write(RideEvent e, byte[] origin, byte[] destination, int size) {
+            int p = position;
+            buffer.putInt(p, MAGIC);
+            buffer.putInt(p + 4, size);
+            buffer.putLong(p + 8, e.sequence());
+            buffer.putLong(p + 16, e.rideId());
+            buffer.putLong(p + 24, e.timestamp());
+            buffer.putInt(p + 32, e.riderId());
+            buffer.putInt(p + 36, e.driverId());
+            buffer.putDouble(p + 40, e.distance());
+            buffer.putDouble(p + 48, e.fare());
+            buffer.put(p + 56, (byte) e.type().ordinal());
+            int q = putText(p + HEADER_SIZE, origin);
+            putText(q, destination);
+            buffer.putInt(p + size - 4, crc(p, size - 4));
+            position = p + size;
+        }
+
+        /** Reads the record at the current position, or returns null at the end of valid data. */
+        RideEvent readNext() {
+            int p = position;
+            if (p + 8 > buffer.capacity()) {
+                return null;
+            }
+            int size = buffer.getInt(p + 4);
+            if (buffer.getInt(p) != MAGIC || size < HEADER_SIZE + 8 || size > MAX_RECORD_SIZE
+                    || p + size > buffer.capacity() || buffer.getInt(p + size - 4) != crc(p, size - 4)) {
+                return null;
+            }
+            int type = buffer.get(p + 56);
+            if (type < 0 || type >= RideEvent.Type.values().length) {
+                return null;
+            }
+            int q = p + HEADER_SIZE;
+            String origin = getText(q);
+            q += 2 + Math.max(buffer.getShort(q), 0);
+            String destination = getText(q);
+            position = p + size;
+            return new RideEvent(
+                    RideEvent.Type.values()[type],
+                    buffer.getLong(p + 8),
+                    buffer.getLong(p + 16),
+                    buffer.getLong(p + 24),
+                    buffer.getInt(p + 32),
+                    buffer.getInt(p + 36),
+                    buffer.getDouble(p + 40),
+                    buffer.getDouble(p + 48),
+                    origin,
+                    destination);
+        }
+
+        private int crc(int p, int length) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(p, length));
+            return (int) crc.getValue();
+        }
+
+        /** Writes a length-prefixed address and returns the offset after it. */
+        private int putText(int offset, byte[] bytes) {
+            if (bytes == null) {
+                buffer.putShort(offset, (short) -1);
+                return offset + 2;
+            }
+            buffer.putShort(offset, (short) bytes.length);
+            buffer.put(offset + 2, bytes);
+            return offset + 2 + bytes.length;
+        }
+
+        private String getText(int offset) {
+            int len = buffer.getShort(offset);
+            if (len < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[len];
+            buffer.get(offset + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
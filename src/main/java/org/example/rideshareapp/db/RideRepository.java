@@ -0,0 +1,281 @@
+package org.example.rideshareapp.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores and queries rides in the {@code rides} table.
+ *
+ * <p>Writes go through the shared {@link WriteQueue}, so inserts and status
+ * changes from many callers are group-committed, and {@link #insertAll}
+ * additionally sends its rows as a single JDBC batch. Reads use the
+ * read-only pool.</p>
+ *
+ * <p>List queries are paginated with keyset cursors rather than
+ * {@code OFFSET}: pass the last ride ID of the previous page as the cursor
+ * to get the next one. Each page is a single index range scan, so paging
+ * stays fast no matter how deep into the table it goes.</p>
+ *
+ * <p>Ride lifecycle changes from the services are written through the
+ * {@link RideJournal}, which hands out ride IDs and projects events into this
+ * table. Direct inserts here should use IDs from
+ * {@link RideJournal#nextRideId()} so the two never collide.</p>
+ */
+public class RideRepository {
+
+    private static final String COLUMNS =
+            "id, rider_id, driver_id, origin, destination, distance, fare, status, "
+                    + "requested_at, accepted_at, started_at, completed_at";
+
+    private static final String INSERT_SQL =
+            "INSERT OR IGNORE INTO rides (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Inserts a ride. If the ride's ID is {@code 0} the database assigns
+     * one; otherwise the given ID is used and an existing row with that ID
+     * is left untouched.
+     *
+     * @param ride the ride to insert
+     * @return a future completed with the ride's ID once the insert commits
+     */
+    public CompletableFuture<Long> insert(Ride ride) {
+        return DB.writer().submit(c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SQL)) {
+                bind(ps, ride);
+                ps.executeUpdate();
+            }
+            if (ride.id() != 0) {
+                return ride.id();
+            }
+            try (Statement s = c.createStatement();
+                 ResultSet rs = s.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    /**
+     * Inserts many rides in one JDBC batch inside one transaction. Rides
+     * with an ID that already exists are skipped.
+     *
+     * @param rides the rides to insert
+     * @return a future completed with the number of rows inserted
+     */
+    public CompletableFuture<Integer> insertAll(List<Ride> rides) {
+        if (rides.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        List<Ride> copy = List.copyOf(rides);
+        return DB.writer().submit(c -> {
+            int inserted = 0;
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SQL)) {
+                for (Ride ride : copy) {
+                    bind(ps, ride);
+                    ps.addBatch();
+                }
+                for (int n : ps.executeBatch()) {
+                    inserted += Math.max(n, 0);
+                }
+            }
+            return inserted;
+        });
+    }
+
+    /**
+     * Records that a driver has taken a ride.
+     *
+     * @param rideId   the ride ID
+     * @param driverId the driver's user ID
+     * @param status   the new status, usually {@link RideStatus#MATCHED} or {@link RideStatus#ACCEPTED}
+     * @param atMillis when it happened
+     * @return a future completed with true if the ride exists
+     */
+    public CompletableFuture<Boolean> assignDriver(long rideId, int driverId, RideStatus status, long atMillis) {
+        String sql = status == RideStatus.ACCEPTED
+                ? "UPDATE rides SET driver_id = ?, status = ?, accepted_at = ? WHERE id = ?"
+                : "UPDATE rides SET driver_id = ?, status = ? WHERE id = ?";
+        return DB.writer().submit(c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int i = 1;
+                ps.setInt(i++, driverId);
+                ps.setString(i++, status.name());
+                if (status == RideStatus.ACCEPTED) {
+                    ps.setLong(i++, atMillis);
+                }
+                ps.setLong(i, rideId);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Changes a ride's status and stamps the matching timestamp column.
+     *
+     * @param rideId   the ride ID
+     * @param status   the new status
+     * @param atMillis when the change happened
+     * @return a future completed with true if the ride exists
+     */
+    public CompletableFuture<Boolean> updateStatus(long rideId, RideStatus status, long atMillis) {
+        String column = switch (status) {
+            case ACCEPTED -> "accepted_at";
+            case IN_PROGRESS -> "started_at";
+            case COMPLETED, CANCELLED -> "completed_at";
+            default -> null;
+        };
+        String sql = column == null
+                ? "UPDATE rides SET status = ? WHERE id = ?"
+                : "UPDATE rides SET status = ?, " + column + " = ? WHERE id = ?";
+        return DB.writer().submit(c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int i = 1;
+                ps.setString(i++, status.name());
+                if (column != null) {
+                    ps.setLong(i++, atMillis);
+                }
+                ps.setLong(i, rideId);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Looks up a ride by ID.
+     *
+     * @param rideId the ride ID
+     * @return the ride, if it exists
+     */
+    public Optional<Ride> findById(long rideId) {
+        List<Ride> rides = query("SELECT " + COLUMNS + " FROM rides WHERE id = ?", rideId);
+        return rides.isEmpty() ? Optional.empty() : Optional.of(rides.get(0));
+    }
+
+    /**
+     * Returns a page of a rider's rides, newest first.
+     *
+     * @param riderId  the rider's user ID
+     * @param beforeId cursor: only rides with a smaller ID are returned; use {@link Long#MAX_VALUE} for the first page
+     * @param limit    maximum rides to return
+     * @return the rides on this page
+     */
+    public List<Ride> findByRider(int riderId, long beforeId, int limit) {
+        return query("SELECT " + COLUMNS + " FROM rides WHERE rider_id = ? AND id < ? ORDER BY id DESC LIMIT ?",
+                riderId, beforeId, limit);
+    }
+
+    /**
+     * Returns a page of a driver's rides, newest first.
+     *
+     * @param driverId the driver's user ID
+     * @param beforeId cursor: only rides with a smaller ID are returned; use {@link Long#MAX_VALUE} for the first page
+     * @param limit    maximum rides to return
+     * @return the rides on this page
+     */
+    public List<Ride> findByDriver(int driverId, long beforeId, int limit) {
+        return query("SELECT " + COLUMNS + " FROM rides WHERE driver_id = ? AND id < ? ORDER BY id DESC LIMIT ?",
+                driverId, beforeId, limit);
+    }
+
+    /**
+     * Returns a page of rides in a given status, oldest first. This is the
+     * dispatch queue when called with {@link RideStatus#REQUESTED}.
+     *
+     * @param status  the status to filter on
+     * @param afterId cursor: only rides with a larger ID are returned; use {@code 0} for the first page
+     * @param limit   maximum rides to return
+     * @return the rides on this page
+     */
+    public List<Ride> findByStatus(RideStatus status, long afterId, int limit) {
+        return query("SELECT " + COLUMNS + " FROM rides WHERE status = ? AND id > ? ORDER BY id LIMIT ?",
+                status.name(), afterId, limit);
+    }
+
+    /**
+     * Returns the largest ride ID stored so far.
+     *
+     * @return the highest ride ID, or 0 if there are no rides
+     */
+    public long maxId() {
+        try (Connection c = DB.read();
+             PreparedStatement ps = c.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM rides")) {
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Runs a ride query on a read-only connection. */
+    private List<Ride> query(String sql, Object... args) {
+        try (Connection c = DB.read(); PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            List<Ride> rides = new ArrayList<>();
+            while (rs.next()) {
+                rides.add(read(rs));
+            }
+            return rides;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Ride ride) throws SQLException {
+        if (ride.id() != 0) {
+            ps.setLong(1, ride.id());
+        } else {
+            ps.setNull(1, Types.INTEGER);
+        }
+        ps.setInt(2, ride.riderId());
+        if (ride.driverId() != 0) {
+            ps.setInt(3, ride.driverId());
+        } else {
+            ps.setNull(3, Types.INTEGER);
+        }
+        ps.setString(4, ride.origin());
+        ps.setString(5, ride.destination());
+        ps.setDouble(6, ride.distance());
+        ps.setDouble(7, ride.fare());
+        ps.setString(8, ride.status().name());
+        ps.setLong(9, ride.requestedAt());
+        setTime(ps, 10, ride.acceptedAt());
+        setTime(ps, 11, ride.startedAt());
+        setTime(ps, 12, ride.completedAt());
+    }
+
+    private static void setTime(PreparedStatement ps, int index, long millis) throws SQLException {
+        if (millis != 0) {
+            ps.setLong(index, millis);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    private static Ride read(ResultSet rs) throws SQLException {
+        return new Ride(
+                rs.getLong("id"),
+                rs.getInt("rider_id"),
+                rs.getInt("driver_id"),
+                rs.getString("origin"),
+                rs.getString("destination"),
+                rs.getDouble("distance"),
+                rs.getDouble("fare"),
+                RideStatus.valueOf(rs.getString("status")),
+                rs.getLong("requested_at"),
+                rs.getLong("accepted_at"),
+                rs.getLong("started_at"),
+                rs.getLong("completed_at")
+        );
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.rideshareapp.db;
+
+/**
+ * Lifecycle states of a ride, as stored in the {@code status} column of the
+ * {@code rides} table.
+ */
+public enum RideStatus {
+    /** A rider asked for a ride and is waiting for a driver. */
+    REQUESTED,
+    /** Dispatch picked a driver, who has not confirmed yet. */
+    MATCHED,
+    /** The driver accepted and is on the way to the pickup. */
+    ACCEPTED,
+    /** The rider has been picked up. */
+    IN_PROGRESS,
+    /** The ride finished at its destination. */
+    COMPLETED,
+    /** The ride was cancelled before it finished. */
+    CANCELLED
+}
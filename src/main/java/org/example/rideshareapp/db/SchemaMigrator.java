@@ -0,0 +1,203 @@
+package org.example.rideshareapp.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Applies versioned schema changes to the database at startup.
+ *
+ * <p>The current schema version is stored in the {@code schema_version}
+ * table, one row per applied migration along with when it ran and how long
+ * it took. On startup every migration newer than the stored version is
+ * applied in order, each in its own transaction, so a failed migration
+ * leaves the database at the last good version.</p>
+ *
+ * <p>To change the schema, append a new {@link Migration} to
+ * {@link #MIGRATIONS} with the next version number. Existing migrations must
+ * never be edited once released.</p>
+ */
+public final class SchemaMigrator {
+
+    /**
+     * A single schema change.
+     *
+     * @param version     the version the schema is at after this migration
+     * @param description a short description recorded with the migration
+     * @param statements  the SQL statements to run, in order
+     */
+    public record Migration(int version, String description, List<String> statements) {
+    }
+
+    /** All migrations, in version order. */
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create users and drivers tables", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS users (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      classification TEXT NOT NULL DEFAULT ' ',
+                      username TEXT NOT NULL UNIQUE,
+                      password_hash TEXT NOT NULL,
+                      created_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now'))
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS drivers (
+                      driverId INTEGER PRIMARY KEY,
+                      plateNumber TEXT NOT NULL,
+                      availabilityStatus INTEGER NOT NULL DEFAULT 0,
+                      created_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+                      FOREIGN KEY (driverId) REFERENCES users(id)
+                    )
+                    """
+            )),
+            new Migration(2, "Add login and available-driver indexes", List.of(
+                    // Covers the whole login lookup, so it never touches the table itself.
+                    """
+                    CREATE INDEX IF NOT EXISTS idx_users_login
+                      ON users(username, password_hash, classification, id)
+                    """,
+                    // Only available drivers are indexed, which keeps the index small.
+                    """
+                    CREATE INDEX IF NOT EXISTS idx_drivers_available
+                      ON drivers(driverId) WHERE availabilityStatus = 1
+                    """
+            )),
+            new Migration(3, "Create rides table", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS rides (
+                      id INTEGER PRIMARY KEY,
+                      rider_id INTEGER NOT NULL,
+                      driver_id INTEGER,
+                      origin TEXT,
+                      destination TEXT NOT NULL,
+                      distance REAL NOT NULL,
+                      fare REAL NOT NULL,
+                      status TEXT NOT NULL,
+                      requested_at INTEGER NOT NULL,
+                      accepted_at INTEGER,
+                      started_at INTEGER,
+                      completed_at INTEGER,
+                      FOREIGN KEY (rider_id) REFERENCES users(id),
+                      FOREIGN KEY (driver_id) REFERENCES users(id)
+                    )
+                    """,
+                    // Dispatch queue: oldest rides in a given status first.
+                    "CREATE INDEX IF NOT EXISTS idx_rides_status ON rides(status, id)",
+                    // Ride history pages, newest first.
+                    "CREATE INDEX IF NOT EXISTS idx_rides_rider ON rides(rider_id, id)",
+                    """
+                    CREATE INDEX IF NOT EXISTS idx_rides_driver
+                      ON rides(driver_id, id) WHERE driver_id IS NOT NULL
+                    """
+            )),
+            new Migration(4, "Create ride journal checkpoint", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS journal_checkpoint (
+                      id INTEGER PRIMARY KEY CHECK (id = 1),
+                      sequence INTEGER NOT NULL
+                    )
+                    """
+            )),
+            // Logins now look users up by username (already UNIQUE) and check the
+            // BCrypt hash in Java, so this index only duplicated password values.
+            new Migration(5, "Drop password-covering login index", List.of(
+                    "DROP INDEX IF EXISTS idx_users_login"
+            )),
+            // The UNIQUE constraint doubles as the per-user lookup index.
+            new Migration(6, "Create saved locations table", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS saved_locations (
+                      id INTEGER PRIMARY KEY,
+                      user_id INTEGER NOT NULL,
+                      label TEXT NOT NULL,
+                      address TEXT NOT NULL,
+                      latitude REAL,
+                      longitude REAL,
+                      created_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+                      UNIQUE (user_id, label),
+                      FOREIGN KEY (user_id) REFERENCES users(id)
+                    )
+                    """
+            ))
+    );
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Brings the database schema up to date.
+     *
+     * @param c the connection to migrate
+     * @return the schema version after migrating
+     * @throws SQLException if a migration fails
+     */
+    public static int migrate(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                  version INTEGER PRIMARY KEY,
+                  description TEXT NOT NULL,
+                  applied_at TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+                  duration_ms INTEGER NOT NULL
+                )
+            """);
+        }
+
+        int current = currentVersion(c);
+        for (Migration m : MIGRATIONS) {
+            if (m.version() > current) {
+                apply(c, m);
+                current = m.version();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the highest migration version applied to the database.
+     *
+     * @param c the connection to query
+     * @return the current schema version, or 0 if none has been applied
+     * @throws SQLException if the version cannot be read
+     */
+    public static int currentVersion(Connection c) throws SQLException {
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Runs one migration and records it, all in a single transaction. */
+    private static void apply(Connection c, Migration m) throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (Statement s = c.createStatement()) {
+            for (String sql : m.statements()) {
+                s.execute(sql);
+            }
+
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO schema_version (version, description, duration_ms) VALUES (?, ?, ?)")) {
+                ps.setInt(1, m.version());
+                ps.setString(2, m.description());
+                ps.setLong(3, durationMs);
+                ps.executeUpdate();
+            }
+            c.commit();
+
+            System.out.println("[DB] Applied migration " + m.version() + " (" + m.description()
+                    + ") in " + durationMs + " ms");
+        } catch (SQLException e) {
+            c.rollback();
+            throw new SQLException("Migration " + m.version() + " failed: " + e.getMessage(), e);
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.rideshareapp.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least-recently-used cache of prepared statements for a single physical
+ * connection, keyed by SQL text.
+ *
+ * <p>A pooled connection is only ever used by one thread at a time, so the
+ * cache is not synchronized. Statements handed out by {@link #prepare} are
+ * proxies: closing one clears its parameters and open result set and leaves
+ * the compiled statement in the cache for the next caller. If the cached
+ * statement for a query is still in use (for example, the same query is
+ * prepared twice on one connection), an ordinary uncached statement is
+ * returned instead. A statement that cannot be reset when it is closed,
+ * which some drivers refuse after a failed execution, is closed and
+ * compiled again on next use.</p>
+ */
+final class StatementCache {
+
+    /** The physical connection that owns the cached statements. */
+    private final Connection connection;
+
+    /** Maximum number of statements kept compiled. */
+    private final int capacity;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /** Cached statements in access order, least recently used first. */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Creates a cache for the given connection.
+     *
+     * @param connection the physical connection
+     * @param capacity   maximum number of cached statements
+     * @param hits       counter incremented when a cached statement is reused
+     * @param misses     counter incremented when a statement has to be compiled
+     * @param evictions  counter incremented when a statement is evicted
+     */
+    StatementCache(Connection connection, int capacity,
+                   LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                StatementCache.this.evictions.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a compiled one
+     * when possible.
+     *
+     * @param sql   the SQL text
+     * @param owner the connection handle the statement should report as its connection
+     * @return a prepared statement whose {@code close()} returns it to the cache
+     * @throws SQLException if the statement cannot be compiled
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && entry.evicted && !entry.inUse) {
+            // Broken when it was last released; compile it again.
+            entries.remove(sql);
+            entry = null;
+        }
+        if (entry != null) {
+            if (entry.inUse) {
+                misses.increment();
+                return connection.prepareStatement(sql);
+            }
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = new Entry(connection.prepareStatement(sql));
+            entries.put(sql, entry);
+        }
+        entry.inUse = true;
+        return entry.handle(owner);
+    }
+
+    /**
+     * Releases statements that a caller forgot to close. Called when the
+     * owning connection goes back to the pool.
+     */
+    void reset() {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                entry.release();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection
+     * is closed.
+     */
+    void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.evict();
+        }
+        entries.clear();
+    }
+
+    /**
+     * A compiled statement held by the cache.
+     */
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+        ResultSet openResult;
+        Handle current;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement handle(Connection owner) {
+            current = new Handle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    current);
+        }
+
+        /** Resets the statement so the next caller starts clean. */
+        void release() {
+            if (current != null) {
+                current.released = true;
+                current = null;
+            }
+            inUse = false;
+            try {
+                if (openResult != null) {
+                    openResult.close();
+                    openResult = null;
+                }
+                if (evicted) {
+                    statement.close();
+                } else {
+                    // a batch added but never executed must not reach the next borrower
+                    statement.clearBatch();
+                    statement.clearParameters();
+                }
+            } catch (SQLException e) {
+                // A statement that cannot be reset, e.g. after a failed execution, is not reused.
+                System.err.println("[STATEMENT CACHE] Error releasing statement: " + e.getMessage());
+                if (!evicted) {
+                    evicted = true;
+                    try {
+                        statement.close();
+                    } catch (SQLException ignored) {
+                        // already reported above
+                    }
+                }
+            }
+        }
+
+        /** Removes the statement from service, closing it now or when it is released. */
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    System.err.println("[STATEMENT CACHE] Error closing statement: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Invocation handler behind each statement handed to a caller.
+     */
+    private static final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection owner;
+        boolean released;
+
+        Handle(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        entry.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return released || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+            }
+            try {
+                Object result = method.invoke(entry.statement, args);
+                if (result instanceof ResultSet rs) {
+                    entry.openResult = rs;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.example.rideshareapp.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-writer queue that applies database mutations in group-committed
+ * batches.
+ *
+ * <p>SQLite allows only one writer at a time, so running every update in its
+ * own auto-commit transaction makes concurrent callers wait on the WAL lock
+ * and pay one sync each. Instead, callers {@link #submit} a {@link Mutation}
+ * and get a {@link CompletableFuture} back. A dedicated writer thread takes
+ * the first queued mutation, keeps collecting more until the batch is full or
+ * the linger time has passed, and runs the whole batch in one transaction.</p>
+ *
+ * <p>Each mutation runs inside its own savepoint, so a mutation that fails
+ * only rolls back its own changes and fails its own future; the rest of the
+ * batch still commits. Futures are completed after the commit, on the writer
+ * thread, so dependent work should be kept short or moved to another
+ * executor.</p>
+ */
+public class WriteQueue implements AutoCloseable {
+
+    /**
+     * A unit of work executed on the writer's connection inside a batch
+     * transaction.
+     *
+     * @param <T> the type of the mutation's result
+     */
+    @FunctionalInterface
+    public interface Mutation<T> {
+        /**
+         * Applies the mutation.
+         *
+         * @param connection the writer connection, with auto-commit disabled
+         * @return the mutation's result
+         * @throws SQLException if the mutation fails
+         */
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /** Marker task that tells the writer thread to stop. */
+    private static final Task<Void> STOP = new Task<>(c -> null);
+
+    /** Pool the writer borrows its connection from. */
+    private final ConnectionPool pool;
+
+    /** Largest number of mutations committed in one transaction. */
+    private final int maxBatchSize;
+
+    /** Longest time the writer waits for a batch to fill up. */
+    private final long maxLingerNanos;
+
+    /** Pending mutations, in submission order. */
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+
+    /** Run on the writer thread before its first batch, e.g. to wait for the schema. */
+    private final Runnable beforeFirstBatch;
+
+    /** The dedicated writer thread. */
+    private final Thread writer;
+
+    /** Whether {@link #beforeFirstBatch} has completed; only touched by the writer thread. */
+    private boolean started;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /** Set once {@link #close()} has been called. */
+    private volatile boolean closed;
+
+    /**
+     * Creates the queue and starts its writer thread.
+     *
+     * @param pool           pool supplying the writer's connection
+     * @param maxBatchSize   maximum mutations per transaction
+     * @param maxLingerMicros maximum time to wait for more mutations before committing
+     */
+    public WriteQueue(ConnectionPool pool, int maxBatchSize, long maxLingerMicros) {
+        this(pool, maxBatchSize, maxLingerMicros, () -> { });
+    }
+
+    /**
+     * Creates the queue and starts its writer thread. The writer runs
+     * {@code beforeFirstBatch} before it first borrows a connection; if that
+     * throws, the batch fails and the next batch runs it again.
+     *
+     * @param pool             pool supplying the writer's connection
+     * @param maxBatchSize     maximum mutations per transaction
+     * @param maxLingerMicros  maximum time to wait for more mutations before committing
+     * @param beforeFirstBatch work that must finish before any mutation runs
+     */
+    public WriteQueue(ConnectionPool pool, int maxBatchSize, long maxLingerMicros, Runnable beforeFirstBatch) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MICROSECONDS.toNanos(maxLingerMicros);
+        this.beforeFirstBatch = beforeFirstBatch;
+        this.writer = new Thread(this::run, "db-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a mutation for the writer thread.
+     *
+     * @param mutation the work to run inside a batch transaction
+     * @param <T>      the type of the mutation's result
+     * @return a future completed with the mutation's result once its batch commits,
+     *         or exceptionally if the mutation or the commit fails
+     */
+    public <T> CompletableFuture<T> submit(Mutation<T> mutation) {
+        Task<T> task = new Task<>(mutation);
+        if (closed) {
+            task.future.completeExceptionally(new SQLException("Write queue is closed"));
+            return task.future;
+        }
+        queue.add(task);
+        // close() may have run between the check and the add, after the writer drained
+        // its leftovers; whoever removes the task from the queue first completes it
+        if (closed && queue.remove(task)) {
+            task.future.completeExceptionally(new SQLException("Write queue is closed"));
+        }
+        return task.future;
+    }
+
+    /**
+     * Returns the number of mutations waiting for the writer.
+     *
+     * @return the current queue depth
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Returns a point-in-time snapshot of the writer's counters.
+     *
+     * @return the current writer statistics
+     */
+    public Stats stats() {
+        return new Stats(batches.sum(), mutations.sum(), failures.sum(), queue.size());
+    }
+
+    /**
+     * Stops accepting new mutations, commits everything already queued and
+     * waits for the writer thread to finish.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Main loop of the writer thread. */
+    private void run() {
+        List<Task<?>> batch = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+
+        while (!stopping) {
+            try {
+                Task<?> first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Task<?> next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+
+        // Anything queued after the stop marker never ran.
+        Task<?> leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.future.completeExceptionally(new SQLException("Write queue is closed"));
+        }
+    }
+
+    /** Runs one batch in a single transaction and completes its futures. */
+    private void commit(List<Task<?>> batch) {
+        if (!started) {
+            try {
+                beforeFirstBatch.run();
+                started = true;
+            } catch (Throwable e) {
+                System.err.println("[DB WRITER] Not ready, failing batch of " + batch.size() + ": " + e.getMessage());
+                for (Task<?> task : batch) {
+                    task.error = e;
+                }
+                finish(batch);
+                return;
+            }
+        }
+        try (Connection c = pool.borrow()) {
+            c.setAutoCommit(false);
+            for (Task<?> task : batch) {
+                task.run(c);
+            }
+            c.commit();
+        } catch (Throwable e) {
+            // anything escaping here would kill the only writer thread and strand every later future
+            System.err.println("[DB WRITER] Batch of " + batch.size() + " failed: " + e.getMessage());
+            for (Task<?> task : batch) {
+                task.error = e;
+            }
+        }
+        finish(batch);
+    }
+
+    /** Counts a batch and completes its futures. */
+    private void finish(List<Task<?>> batch) {
+        batches.increment();
+        mutations.add(batch.size());
+        for (Task<?> task : batch) {
+            if (task.error != null) {
+                failures.increment();
+            }
+            task.complete();
+        }
+    }
+
+    /**
+     * A queued mutation together with its future and outcome.
+     */
+    private static final class Task<T> {
+        final Mutation<T> mutation;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable error;
+
+        Task(Mutation<T> mutation) {
+            this.mutation = mutation;
+        }
+
+        /** Runs the mutation inside its own savepoint. */
+        void run(Connection c) throws SQLException {
+            Savepoint sp = c.setSavepoint();
+            try {
+                result = mutation.apply(c);
+                c.releaseSavepoint(sp);
+            } catch (Throwable e) {
+                c.rollback(sp);
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of writer counters.
+     *
+     * @param batches   transactions committed (or attempted)
+     * @param mutations mutations processed
+     * @param failures  mutations that completed exceptionally
+     * @param pending   mutations still waiting in the queue
+     */
+    public record Stats(long batches, long mutations, long failures, int pending) {
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.rideshareapp.geo;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many-to-many great-circle distances.
+ *
+ * <p>Given {@code m} origins and {@code n} destinations as coordinate
+ * arrays, fills a flat row-major {@code double[m * n]} with the distance in
+ * miles from origin {@code i} to destination {@code j} at
+ * {@code out[i * n + j]}. One origin and many destinations (a ride request
+ * against candidate drivers) is just {@code m = 1}.</p>
+ *
+ * <p>The latitudes and cosines of the destinations are converted once, not
+ * once per origin, and each origin's are converted once per row, so the
+ * inner loop is one haversine on precomputed terms. Large matrices are split
+ * recursively into blocks of rows (or, for a single row, of columns) and
+ * computed on a {@link ForkJoinPool}; anything below {@link #THRESHOLD}
+ * pairs runs on the calling thread, where forking would cost more than it
+ * saves.</p>
+ */
+public final class DistanceMatrix {
+
+    /** Pairs below which a block is computed without forking. */
+    public static final int THRESHOLD = 8192;
+
+    private DistanceMatrix() {
+    }
+
+    /**
+     * Computes the matrix on the common fork-join pool.
+     *
+     * @param fromLat origin latitudes
+     * @param fromLon origin longitudes
+     * @param toLat   destination latitudes
+     * @param toLon   destination longitudes
+     * @param out     receives {@code fromLat.length * toLat.length} distances, row-major
+     */
+    public static void miles(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon, double[] out) {
+        miles(fromLat, fromLon, toLat, toLon, out, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the matrix on the given pool, or on the calling thread if
+     * {@code pool} is null.
+     *
+     * @param fromLat origin latitudes
+     * @param fromLon origin longitudes
+     * @param toLat   destination latitudes
+     * @param toLon   destination longitudes
+     * @param out     receives {@code fromLat.length * toLat.length} distances, row-major
+     * @param pool    the pool to run on, or null to stay on this thread
+     */
+    public static void miles(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon,
+                             double[] out, ForkJoinPool pool) {
+        int m = fromLat.length;
+        int n = toLat.length;
+        if (fromLon.length != m || toLon.length != n) {
+            throw new IllegalArgumentException("Latitude and longitude arrays differ in length");
+        }
+        if (out.length < (long) m * n) {
+            throw new IllegalArgumentException("Output holds " + out.length + " values, need " + (long) m * n);
+        }
+
+        double[] phi = new double[n];
+        double[] cos = new double[n];
+        double[] lambda = new double[n];
+        for (int j = 0; j < n; j++) {
+            phi[j] = Math.toRadians(toLat[j]);
+            cos[j] = Math.cos(phi[j]);
+            lambda[j] = Math.toRadians(toLon[j]);
+        }
+        Block all = new Block(fromLat, fromLon, phi, cos, lambda, out, 0, m, 0, n);
+        if (pool == null || (long) m * n <= THRESHOLD) {
+            all.compute();
+        } else {
+            pool.invoke(all);
+        }
+    }
+
+    /** Rows {@code [row0, row1)} by columns {@code [col0, col1)} of the matrix. */
+    private static final class Block extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] fromLat;
+        private final double[] fromLon;
+        private final double[] phi;
+        private final double[] cos;
+        private final double[] lambda;
+        private final double[] out;
+        private final int row0;
+        private final int row1;
+        private final int col0;
+        private final int col1;
+
+        Block(double[] fromLat, double[] fromLon, double[] phi, double[] cos, double[] lambda,
+              double[] out, int row0, int row1, int col0, int col1) {
+            this.fromLat = fromLat;
+            this.fromLon = fromLon;
+            this.phi = phi;
+            this.cos = cos;
+            this.lambda = lambda;
+            this.out = out;
+            this.row0 = row0;
+            this.row1 = row1;
+            this.col0 = col0;
+            this.col1 = col1;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = row1 - row0;
+            int cols = col1 - col0;
+            if ((long) rows * cols <= THRESHOLD) {
+                fill();
+            } else if (rows > 1) {
+                int mid = (row0 + row1) >>> 1;
+                invokeAll(new Block(fromLat, fromLon, phi, cos, lambda, out, row0, mid, col0, col1),
+                        new Block(fromLat, fromLon, phi, cos, lambda, out, mid, row1, col0, col1));
+            } else {
+                int mid = (col0 + col1) >>> 1;
+                invokeAll(new Block(fromLat, fromLon, phi, cos, lambda, out, row0, row1, col0, mid),
+                        new Block(fromLat, fromLon, phi, cos, lambda, out, row0, row1, mid, col1));
+            }
+        }
+
+        private void fill() {
+            int n = phi.length;
+            for (int i = row0; i < row1; i++) {
+                double phi1 = Math.toRadians(fromLat[i]);
+                double cos1 = Math.cos(phi1);
+                double lambda1 = Math.toRadians(fromLon[i]);
+                int base = i * n;
+                for (int j = col0; j < col1; j++) {
+                    out[base + j] = GeoDistance.haversine(phi1, cos1, phi[j], cos[j], lambda[j] - lambda1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package org.example.rideshareapp.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory index of where available drivers are, for nearest-driver and
+ * radius queries.
+ *
+ * <p>The index is a uniform grid. Each cell covers {@code cellMeters} of
+ * latitude and the same number of degrees of longitude, and holds the IDs
+ * and positions of the available drivers inside it in primitive arrays
+ * behind the cell's own lock. Cells are found through a
+ * {@link ConcurrentHashMap} keyed by row and column, so moving a driver only
+ * locks the two cells involved and queries never block each other.</p>
+ *
+ * <p>A query walks square rings of cells outward from the query point.
+ * Every driver in ring {@code r + 1} is at least {@code r} cell widths
+ * away, so a k-nearest search stops as soon as its k-th best distance is
+ * within that bound. With drivers spread at a few per cell that is a handful
+ * of cells, independent of the total number of drivers.</p>
+ *
+ * <p>The index tracks each driver's last reported position and availability;
+ * only drivers that have both a position and are available are in the grid.
+ * Updates for one driver are serialized. Longitudes are not wrapped across
+ * the antimeridian.</p>
+ *
+ * <p>The shared index's cell size comes from {@code rideshare.spatial.cellMeters}
+ * (default 1000).</p>
+ */
+public class DriverSpatialIndex {
+
+    /**
+     * A driver returned by a query.
+     *
+     * @param driverId the driver's ID
+     * @param miles    distance from the query point
+     */
+    public record Nearby(int driverId, double miles) {
+    }
+
+    private static final class Holder {
+        static final DriverSpatialIndex INSTANCE =
+                new DriverSpatialIndex(Integer.getInteger("rideshare.spatial.cellMeters", 1000));
+    }
+
+    private static final double METERS_PER_DEGREE = 111_320;
+    private static final double MILES_PER_DEGREE = METERS_PER_DEGREE / 1609.344;
+
+    /**
+     * Last known state of a driver.
+     *
+     * @param lat       latitude, or {@code NaN} if no position has been reported
+     * @param lon       longitude, or {@code NaN} if no position has been reported
+     * @param available whether the driver is available
+     */
+    public record Position(double lat, double lon, boolean available) {
+        private boolean indexed() {
+            return available && !Double.isNaN(lat);
+        }
+    }
+
+    private final double cellDegrees;
+    private final ConcurrentHashMap<Integer, Position> positions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final AtomicInteger indexed = new AtomicInteger();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param cellMeters side of a grid cell, north to south
+     */
+    public DriverSpatialIndex(int cellMeters) {
+        if (cellMeters <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellMeters);
+        }
+        this.cellDegrees = cellMeters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Returns the process-wide index.
+     *
+     * @return the shared index
+     */
+    public static DriverSpatialIndex shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Records a driver's position. If the driver is not yet known, they are
+     * recorded with {@code availableIfNew} as their availability.
+     *
+     * @param driverId       the driver
+     * @param lat            latitude in decimal degrees
+     * @param lon            longitude in decimal degrees
+     * @param availableIfNew availability to assume for a driver seen for the first time
+     */
+    public void updatePosition(int driverId, double lat, double lon, boolean availableIfNew) {
+        if (!GeoDistance.isValid(lat, lon)) {
+            throw new IllegalArgumentException("Invalid position: " + lat + ", " + lon);
+        }
+        positions.compute(driverId, (id, old) -> {
+            Position next = new Position(lat, lon, old == null ? availableIfNew : old.available());
+            move(id, old, next);
+            return next;
+        });
+    }
+
+    /**
+     * Records whether a driver is available. Unavailable drivers are kept
+     * out of query results until they become available again.
+     *
+     * @param driverId  the driver
+     * @param available the new availability
+     */
+    public void setAvailable(int driverId, boolean available) {
+        positions.compute(driverId, (id, old) -> {
+            Position next = old == null
+                    ? new Position(Double.NaN, Double.NaN, available)
+                    : new Position(old.lat(), old.lon(), available);
+            move(id, old, next);
+            return next;
+        });
+    }
+
+    /**
+     * Forgets a driver entirely.
+     *
+     * @param driverId the driver
+     */
+    public void remove(int driverId) {
+        positions.computeIfPresent(driverId, (id, old) -> {
+            move(id, old, null);
+            return null;
+        });
+    }
+
+    /**
+     * Returns up to {@code k} available drivers nearest a point, closest first.
+     *
+     * @param lat      latitude of the point
+     * @param lon      longitude of the point
+     * @param k        maximum number of drivers
+     * @param maxMiles ignore drivers further away than this
+     * @return the drivers, sorted by distance
+     */
+    public List<Nearby> nearest(double lat, double lon, int k, double maxMiles) {
+        if (k <= 0 || !GeoDistance.isValid(lat, lon)) {
+            return List.of();
+        }
+        Collector c = new Collector(k, maxMiles);
+        search(lat, lon, maxMiles, c);
+        return c.result();
+    }
+
+    /**
+     * Returns every available driver within a distance of a point, closest first.
+     *
+     * @param lat    latitude of the point
+     * @param lon    longitude of the point
+     * @param radius distance in miles
+     * @return the drivers, sorted by distance
+     */
+    public List<Nearby> within(double lat, double lon, double radius) {
+        if (!GeoDistance.isValid(lat, lon)) {
+            return List.of();
+        }
+        Collector c = new Collector(Integer.MAX_VALUE, radius);
+        search(lat, lon, radius, c);
+        return c.result();
+    }
+
+    /**
+     * Returns a driver's last reported position and availability.
+     *
+     * @param driverId the driver
+     * @return the position, or empty if the driver has never been seen
+     */
+    public Optional<Position> position(int driverId) {
+        return Optional.ofNullable(positions.get(driverId));
+    }
+
+    /**
+     * Returns whether a driver is currently in the grid, that is, available
+     * with a known position.
+     *
+     * @param driverId the driver
+     * @return true if queries can return the driver
+     */
+    public boolean contains(int driverId) {
+        Position p = positions.get(driverId);
+        return p != null && p.indexed();
+    }
+
+    /**
+     * Returns the number of drivers in the grid.
+     *
+     * @return the count of available drivers with a known position
+     */
+    public int size() {
+        return indexed.get();
+    }
+
+    /** Moves a driver between cells. Runs inside {@code positions.compute} for that driver. */
+    private void move(int driverId, Position old, Position next) {
+        boolean was = old != null && old.indexed();
+        boolean now = next != null && next.indexed();
+        long oldKey = was ? key(row(old.lat()), col(old.lon())) : 0;
+        long newKey = now ? key(row(next.lat()), col(next.lon())) : 0;
+        if (was && now && oldKey == newKey) {
+            cells.get(oldKey).update(driverId, next.lat(), next.lon());
+            return;
+        }
+        if (was) {
+            cells.get(oldKey).remove(driverId);
+            indexed.decrementAndGet();
+        }
+        if (now) {
+            cells.computeIfAbsent(newKey, k -> new Cell()).add(driverId, next.lat(), next.lon());
+            indexed.incrementAndGet();
+        }
+    }
+
+    private void search(double lat, double lon, double maxMiles, Collector c) {
+        int row0 = row(lat);
+        int col0 = col(lon);
+        for (int r = 0; ; r++) {
+            for (int row = row0 - r; row <= row0 + r; row++) {
+                boolean edgeRow = row == row0 - r || row == row0 + r;
+                int step = edgeRow ? 1 : 2 * r;
+                for (int col = col0 - r; col <= col0 + r; col += Math.max(1, step)) {
+                    Cell cell = cells.get(key(row, col));
+                    if (cell != null) {
+                        cell.collect(lat, lon, c);
+                    }
+                }
+            }
+            // Every point outside rings 0..r is at least this far from the query.
+            double poleward = Math.min(90, Math.abs(lat) + (r + 1) * cellDegrees);
+            double cellMiles = cellDegrees * MILES_PER_DEGREE * Math.cos(Math.toRadians(poleward));
+            double bound = r * cellMiles;
+            if (bound > maxMiles || bound >= c.worst() || cellMiles <= 0 || r > 1 + 180 / cellDegrees) {
+                return;
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    /** The drivers in one grid cell. */
+    private static final class Cell {
+        private int[] ids = new int[4];
+        private double[] lats = new double[4];
+        private double[] lons = new double[4];
+        private int count;
+
+        synchronized void add(int id, double lat, double lon) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                lats = Arrays.copyOf(lats, count * 2);
+                lons = Arrays.copyOf(lons, count * 2);
+            }
+            ids[count] = id;
+            lats[count] = lat;
+            lons[count] = lon;
+            count++;
+        }
+
+        synchronized void update(int id, double lat, double lon) {
+            int i = indexOf(id);
+            if (i >= 0) {
+                lats[i] = lat;
+                lons[i] = lon;
+            }
+        }
+
+        synchronized void remove(int id) {
+            int i = indexOf(id);
+            if (i >= 0) {
+                count--;
+                ids[i] = ids[count];
+                lats[i] = lats[count];
+                lons[i] = lons[count];
+            }
+        }
+
+        synchronized void collect(double lat, double lon, Collector c) {
+            for (int i = 0; i < count; i++) {
+                c.offer(ids[i], GeoDistance.miles(lat, lon, lats[i], lons[i]));
+            }
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Keeps the {@code k} closest drivers offered so far in a max-heap on
+     * distance, held in primitive arrays.
+     */
+    private static final class Collector {
+        private final int k;
+        private final double limit;
+        private int[] ids = new int[8];
+        private double[] dist = new double[8];
+        private int size;
+
+        Collector(int k, double limit) {
+            this.k = k;
+            this.limit = limit;
+        }
+
+        /** Distance a new driver has to beat, or infinity while there is room. */
+        double worst() {
+            return size < k ? Double.POSITIVE_INFINITY : dist[0];
+        }
+
+        void offer(int id, double d) {
+            if (d > limit) {
+                return;
+            }
+            if (size < k) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    dist = Arrays.copyOf(dist, size * 2);
+                }
+                int i = size++;
+                // sift up
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (dist[parent] >= d) {
+                        break;
+                    }
+                    ids[i] = ids[parent];
+                    dist[i] = dist[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            } else if (d < dist[0]) {
+                // replace the root and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && dist[child + 1] > dist[child]) {
+                        child++;
+                    }
+                    if (dist[child] <= d) {
+                        break;
+                    }
+                    ids[i] = ids[child];
+                    dist[i] = dist[child];
+                    i = child;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            }
+        }
+
+        List<Nearby> result() {
+            List<Nearby> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(new Nearby(ids[i], dist[i]));
+            }
+            out.sort((a, b) -> Double.compare(a.miles(), b.miles()));
+            return out;
+        }
+    }
+}
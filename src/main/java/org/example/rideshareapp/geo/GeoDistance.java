@@ -0,0 +1,106 @@
+package org.example.rideshareapp.geo;
+
+/**
+ * Great-circle distances on a spherical Earth, using the haversine formula.
+ *
+ * <p>Coordinates are in decimal degrees and distances in miles. The
+ * spherical model is within about 0.5% of the ellipsoidal (Vincenty)
+ * distance, which is far below the difference between straight-line and
+ * road distance, and it costs a handful of trigonometric calls instead of
+ * an iteration.</p>
+ *
+ * <p>The batch methods work on primitive coordinate arrays and write into
+ * a caller-supplied output array, so they allocate nothing and can be called
+ * in tight loops, for example when dispatch scores many drivers against one
+ * request. If any coordinate of a pair is {@code NaN}, the result for that
+ * pair is {@code NaN}.</p>
+ */
+public final class GeoDistance {
+
+    /** Mean Earth radius in miles (IUGG). */
+    public static final double EARTH_RADIUS_MILES = 3958.7613;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * Returns the great-circle distance between two points.
+     *
+     * @param lat1 latitude of the first point
+     * @param lon1 longitude of the first point
+     * @param lat2 latitude of the second point
+     * @param lon2 longitude of the second point
+     * @return the distance in miles
+     */
+    public static double miles(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        return haversine(phi1, Math.cos(phi1), phi2, Math.cos(phi2), Math.toRadians(lon2 - lon1));
+    }
+
+    /**
+     * Computes the distance for each pair {@code (lat1[i], lon1[i])} to
+     * {@code (lat2[i], lon2[i])}, for {@code i} in {@code [0, n)}.
+     *
+     * @param lat1 latitudes of the first points
+     * @param lon1 longitudes of the first points
+     * @param lat2 latitudes of the second points
+     * @param lon2 longitudes of the second points
+     * @param out  receives the distances in miles
+     * @param n    number of pairs
+     */
+    public static void miles(double[] lat1, double[] lon1, double[] lat2, double[] lon2, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            double phi1 = Math.toRadians(lat1[i]);
+            double phi2 = Math.toRadians(lat2[i]);
+            out[i] = haversine(phi1, Math.cos(phi1), phi2, Math.cos(phi2), Math.toRadians(lon2[i] - lon1[i]));
+        }
+    }
+
+    /**
+     * Computes the distance from one point to each of
+     * {@code (lats[i], lons[i])} for {@code i} in {@code [from, to)}, writing
+     * the result to {@code out[i]}. The origin's trigonometry is computed
+     * once for the whole range.
+     *
+     * @param lat  latitude of the origin
+     * @param lon  longitude of the origin
+     * @param lats latitudes of the targets
+     * @param lons longitudes of the targets
+     * @param out  receives the distances in miles
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     */
+    public static void milesFrom(double lat, double lon, double[] lats, double[] lons,
+                                 double[] out, int from, int to) {
+        double phi1 = Math.toRadians(lat);
+        double cos1 = Math.cos(phi1);
+        for (int i = from; i < to; i++) {
+            double phi2 = Math.toRadians(lats[i]);
+            out[i] = haversine(phi1, cos1, phi2, Math.cos(phi2), Math.toRadians(lons[i] - lon));
+        }
+    }
+
+    /**
+     * Returns whether a coordinate pair is usable: both finite and within range.
+     *
+     * @param lat the latitude
+     * @param lon the longitude
+     * @return true if the pair is a valid position
+     */
+    public static boolean isValid(double lat, double lon) {
+        return lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180;
+    }
+
+    /**
+     * Haversine on precomputed terms: latitudes in radians with their
+     * cosines, and the longitude difference in radians.
+     */
+    static double haversine(double phi1, double cos1, double phi2, double cos2, double dLambda) {
+        double sinPhi = Math.sin((phi2 - phi1) * 0.5);
+        double sinLambda = Math.sin(dLambda * 0.5);
+        double a = sinPhi * sinPhi + cos1 * cos2 * sinLambda * sinLambda;
+        // min() guards against a > 1 from rounding for antipodal points.
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+}
@@ -0,0 +1,337 @@
+package org.example.rideshareapp.geo;
+
+import org.example.rideshareapp.util.LruCache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Offline geocoder backed by a local gazetteer file.
+ *
+ * <p>The gazetteer is a tab-separated file with one address per line:
+ * {@code address<TAB>latitude<TAB>longitude}. Blank lines and lines starting
+ * with {@code #} are ignored, as are lines whose coordinates do not parse.
+ * A city-sized OpenAddresses or OpenStreetMap extract reduced to those three
+ * columns works as-is.</p>
+ *
+ * <p>The file is memory-mapped and read once. Addresses are
+ * {@linkplain #normalize normalized} and packed, sorted, into a single byte
+ * array with an offset table, next to parallel arrays of coordinates. There
+ * is no object per address, and a lookup is a binary search over the packed
+ * keys. If there is no exact match, the first address that starts with the
+ * query's complete tokens is used, so "22 main st" finds
+ * "22 main st springfield".</p>
+ *
+ * <p>Results, including misses, are kept in an {@link LruCache} keyed by the
+ * address as typed, since the index never changes once loaded. The shared
+ * instance reads {@code rideshare.gazetteer} (default
+ * {@code ./data/gazetteer.tsv}) and {@code rideshare.geocoder.cache}
+ * (default 4096 entries). A missing gazetteer gives an empty geocoder that
+ * resolves nothing.</p>
+ */
+public final class Geocoder {
+
+    /**
+     * A resolved address.
+     *
+     * @param latitude  latitude in decimal degrees
+     * @param longitude longitude in decimal degrees
+     * @param exact     false if the address was matched by prefix
+     */
+    public record Match(double latitude, double longitude, boolean exact) {
+    }
+
+    private static final class Holder {
+        static final Geocoder INSTANCE = loadShared();
+    }
+
+    /** Cached in place of a miss, since the cache treats null as absent. */
+    private static final Match NONE = new Match(Double.NaN, Double.NaN, false);
+
+    /** Common street words and the abbreviation they are indexed under. */
+    private static final Map<String, String> ABBREVIATIONS = Map.ofEntries(
+            Map.entry("street", "st"), Map.entry("avenue", "ave"), Map.entry("av", "ave"),
+            Map.entry("road", "rd"), Map.entry("boulevard", "blvd"), Map.entry("drive", "dr"),
+            Map.entry("lane", "ln"), Map.entry("court", "ct"), Map.entry("place", "pl"),
+            Map.entry("square", "sq"), Map.entry("terrace", "ter"), Map.entry("highway", "hwy"),
+            Map.entry("parkway", "pkwy"), Map.entry("north", "n"), Map.entry("south", "s"),
+            Map.entry("east", "e"), Map.entry("west", "w"), Map.entry("apartment", "apt"),
+            Map.entry("suite", "ste"));
+
+    /** Normalized keys, concatenated in sorted order. */
+    private final byte[] keys;
+    /** Start of key {@code i} in {@link #keys}; entry {@code size} is the end of the last key. */
+    private final int[] offsets;
+    private final double[] lats;
+    private final double[] lons;
+    private final int size;
+    private final LruCache<String, Match> cache;
+
+    private Geocoder(byte[] keys, int[] offsets, double[] lats, double[] lons, int size, int cacheSize) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.lats = lats;
+        this.lons = lons;
+        this.size = size;
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Returns the process-wide geocoder, loading the gazetteer on first use.
+     *
+     * @return the shared geocoder
+     */
+    public static Geocoder shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns a geocoder that resolves nothing.
+     *
+     * @param cacheSize result cache capacity
+     * @return an empty geocoder
+     */
+    public static Geocoder empty(int cacheSize) {
+        return new Geocoder(new byte[0], new int[1], new double[0], new double[0], 0, cacheSize);
+    }
+
+    /**
+     * Loads a gazetteer file.
+     *
+     * @param file      the tab-separated gazetteer
+     * @param cacheSize result cache capacity
+     * @return the geocoder
+     * @throws IOException if the file cannot be read
+     */
+    public static Geocoder load(Path file, int cacheSize) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Gazetteer too large to map: " + file + " (" + length + " bytes)");
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            byte[] line = new byte[256];
+            int len = 0;
+            while (true) {
+                boolean end = !buf.hasRemaining();
+                byte b = end ? (byte) '\n' : buf.get();
+                if (b == '\n') {
+                    parseLine(line, len, rows);
+                    len = 0;
+                    if (end) {
+                        break;
+                    }
+                } else {
+                    if (len == line.length) {
+                        line = Arrays.copyOf(line, len * 2);
+                    }
+                    line[len++] = b;
+                }
+            }
+        }
+
+        rows.sort((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+
+        int total = 0;
+        for (Row r : rows) {
+            total += r.key.length;
+        }
+        byte[] keys = new byte[total];
+        int[] offsets = new int[rows.size() + 1];
+        double[] lats = new double[rows.size()];
+        double[] lons = new double[rows.size()];
+        int n = 0;
+        int pos = 0;
+        byte[] previous = null;
+        for (Row r : rows) {
+            if (previous != null && Arrays.equals(previous, r.key)) {
+                continue; // duplicate address, first row wins
+            }
+            offsets[n] = pos;
+            System.arraycopy(r.key, 0, keys, pos, r.key.length);
+            pos += r.key.length;
+            lats[n] = r.lat;
+            lons[n] = r.lon;
+            previous = r.key;
+            n++;
+        }
+        offsets[n] = pos;
+        return new Geocoder(keys, offsets, lats, lons, n, cacheSize);
+    }
+
+    /**
+     * Resolves an address to coordinates.
+     *
+     * @param address the address as typed
+     * @return the match, or empty if the gazetteer has no such address
+     */
+    public Optional<Match> geocode(String address) {
+        if (address == null || address.isBlank()) {
+            return Optional.empty();
+        }
+        Match m = cache.get(address);
+        if (m == null) {
+            m = resolve(normalize(address).getBytes(StandardCharsets.UTF_8));
+            cache.put(address, m);
+        }
+        return m == NONE ? Optional.empty() : Optional.of(m);
+    }
+
+    /**
+     * Returns the number of distinct addresses in the index.
+     *
+     * @return the address count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the result cache's counters.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Reduces an address to the form it is indexed under: lower case,
+     * punctuation replaced by spaces, runs of spaces collapsed, and common
+     * street words abbreviated ("Main Street" becomes "main st").
+     *
+     * @param address the address
+     * @return the normalized address
+     */
+    public static String normalize(String address) {
+        StringBuilder out = new StringBuilder(address.length());
+        int start = -1;
+        String lower = address.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean word = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!out.isEmpty()) {
+                    out.append(' ');
+                }
+                out.append(ABBREVIATIONS.getOrDefault(token, token));
+                start = -1;
+            }
+        }
+        return out.toString();
+    }
+
+    private Match resolve(byte[] query) {
+        if (query.length == 0) {
+            return NONE;
+        }
+        int i = lowerBound(query);
+        if (i < size && compare(i, query) == 0) {
+            return new Match(lats[i], lons[i], true);
+        }
+        // A space sorts before every letter and digit, so the first key that
+        // starts with "query " is the lower bound of "query ".
+        byte[] prefix = Arrays.copyOf(query, query.length + 1);
+        prefix[query.length] = ' ';
+        i = lowerBound(prefix);
+        if (i < size && startsWith(i, prefix)) {
+            return new Match(lats[i], lons[i], false);
+        }
+        return NONE;
+    }
+
+    /** Returns the index of the first key not less than {@code query}. */
+    private int lowerBound(byte[] query) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, query) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compare(int i, byte[] query) {
+        return Arrays.compareUnsigned(keys, offsets[i], offsets[i + 1], query, 0, query.length);
+    }
+
+    private boolean startsWith(int i, byte[] prefix) {
+        int from = offsets[i];
+        return offsets[i + 1] - from >= prefix.length
+                && Arrays.equals(keys, from, from + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static void parseLine(byte[] line, int len, List<Row> rows) {
+        if (len > 0 && line[len - 1] == '\r') {
+            len--;
+        }
+        if (len == 0 || line[0] == '#') {
+            return;
+        }
+        int tab2 = -1;
+        int tab1 = -1;
+        for (int i = len - 1; i >= 0; i--) {
+            if (line[i] == '\t') {
+                if (tab2 < 0) {
+                    tab2 = i;
+                } else {
+                    tab1 = i;
+                    break;
+                }
+            }
+        }
+        if (tab1 <= 0) {
+            return;
+        }
+        try {
+            double lat = Double.parseDouble(new String(line, tab1 + 1, tab2 - tab1 - 1, StandardCharsets.US_ASCII));
+            double lon = Double.parseDouble(new String(line, tab2 + 1, len - tab2 - 1, StandardCharsets.US_ASCII));
+            if (!GeoDistance.isValid(lat, lon)) {
+                return;
+            }
+            String key = normalize(new String(line, 0, tab1, StandardCharsets.UTF_8));
+            if (!key.isEmpty()) {
+                rows.add(new Row(key.getBytes(StandardCharsets.UTF_8), lat, lon));
+            }
+        } catch (NumberFormatException e) {
+            // skip the line; gazetteer extracts often carry a header row
+        }
+    }
+
+    private static Geocoder loadShared() {
+        Path file = Path.of(System.getProperty("rideshare.gazetteer", "./data/gazetteer.tsv"));
+        int cacheSize = Integer.getInteger("rideshare.geocoder.cache", 4096);
+        try {
+            Geocoder g = load(file, cacheSize);
+            System.err.println("[GEOCODER] Loaded " + g.size() + " addresses from " + file);
+            return g;
+        } catch (NoSuchFileException e) {
+            System.err.println("[GEOCODER] No gazetteer at " + file + "; addresses will not resolve.");
+        } catch (IOException e) {
+            System.err.println("[GEOCODER] Could not load " + file + ": " + e.getMessage());
+        }
+        return empty(cacheSize);
+    }
+
+    private record Row(byte[] key, double lat, double lon) {
+    }
+}
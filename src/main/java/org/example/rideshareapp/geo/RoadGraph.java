@@ -0,0 +1,660 @@
+package org.example.rideshareapp.geo;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Offline road network for shortest-path distance and travel time.
+ *
+ * <p>The graph lives in a preprocessed binary file that is memory-mapped
+ * and used in place: nothing is parsed or copied at startup, and the
+ * operating system pages in only the parts of the network that queries
+ * touch. The file holds the graph in compressed sparse row (CSR) form,
+ * in this order (big-endian):</p>
+ * <pre>
+ *   int   magic ("RSG1")
+ *   int   nodeCount, edgeCount, cellCount
+ *   float cellDegrees      grid cell size used for snapping
+ *   float maxSpeed         fastest edge, in metres per second
+ *   float lat[nodeCount], lon[nodeCount]
+ *   int   firstEdge[nodeCount + 1]
+ *   int   target[edgeCount]
+ *   float meters[edgeCount], seconds[edgeCount]
+ *   long  cellKey[cellCount]
+ *   int   cellStart[cellCount + 1]
+ * </pre>
+ * <p>The outgoing edges of node {@code u} are {@code firstEdge[u]} to
+ * {@code firstEdge[u + 1] - 1}. Nodes are numbered in grid-cell order, so
+ * the nodes of one cell are contiguous and the cell table finds them with a
+ * binary search; that is how a coordinate is snapped to its nearest node.
+ * {@link Builder} writes the format, and {@link #main} converts node and
+ * edge lists exported from an OpenStreetMap extract.</p>
+ *
+ * <p>Routes are found with A*, guided by the great-circle distance to the
+ * destination (divided by {@code maxSpeed} when minimizing time). Search
+ * state is kept per thread in arrays sized to the graph and reset by a
+ * generation stamp, so a query allocates nothing in proportion to the
+ * graph.</p>
+ *
+ * <p>The shared graph is loaded from {@code rideshare.roadgraph} (default
+ * {@code ./data/roads.bin}). Without that file the shared graph is empty
+ * and finds no routes.</p>
+ */
+public final class RoadGraph {
+
+    /** What a route minimizes. */
+    public enum Metric {
+        /** Shortest distance. */
+        DISTANCE,
+        /** Shortest travel time. */
+        TIME
+    }
+
+    /**
+     * A route between two points.
+     *
+     * @param miles   length, including the legs to and from the road network
+     * @param seconds travel time
+     */
+    public record Route(double miles, double seconds) {
+    }
+
+    private static final class Holder {
+        static final RoadGraph INSTANCE = loadShared();
+    }
+
+    private static final int MAGIC = 0x52534731; // "RSG1"
+    private static final double METERS_PER_MILE = 1609.344;
+    private static final double METERS_PER_DEGREE = 111_320;
+    /** Speed assumed for the straight legs between a point and its snapped node, in m/s (about 30 km/h). */
+    private static final double SNAP_SPEED = 8.33;
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int cellCount;
+    private final double cellDegrees;
+    private final double maxSpeed;
+    private final FloatBuffer lat;
+    private final FloatBuffer lon;
+    private final IntBuffer firstEdge;
+    private final IntBuffer target;
+    private final FloatBuffer meters;
+    private final FloatBuffer seconds;
+    private final LongBuffer cellKey;
+    private final IntBuffer cellStart;
+
+    private final ThreadLocal<Search> searches;
+
+    private RoadGraph(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < 24 || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a road graph file");
+        }
+        this.nodeCount = buf.getInt(4);
+        this.edgeCount = buf.getInt(8);
+        this.cellCount = buf.getInt(12);
+        this.cellDegrees = buf.getFloat(16);
+        this.maxSpeed = buf.getFloat(20);
+        long expected = 24L + 4L * (2L * nodeCount + nodeCount + 1 + 3L * edgeCount + cellCount + 1) + 8L * cellCount;
+        if (buf.remaining() != expected) {
+            throw new IOException("Road graph file is truncated or corrupt: "
+                    + buf.remaining() + " bytes, expected " + expected);
+        }
+        int pos = 24;
+        this.lat = buf.slice(pos, 4 * nodeCount).asFloatBuffer();
+        pos += 4 * nodeCount;
+        this.lon = buf.slice(pos, 4 * nodeCount).asFloatBuffer();
+        pos += 4 * nodeCount;
+        this.firstEdge = buf.slice(pos, 4 * (nodeCount + 1)).asIntBuffer();
+        pos += 4 * (nodeCount + 1);
+        this.target = buf.slice(pos, 4 * edgeCount).asIntBuffer();
+        pos += 4 * edgeCount;
+        this.meters = buf.slice(pos, 4 * edgeCount).asFloatBuffer();
+        pos += 4 * edgeCount;
+        this.seconds = buf.slice(pos, 4 * edgeCount).asFloatBuffer();
+        pos += 4 * edgeCount;
+        this.cellKey = buf.slice(pos, 8 * cellCount).asLongBuffer();
+        pos += 8 * cellCount;
+        this.cellStart = buf.slice(pos, 4 * (cellCount + 1)).asIntBuffer();
+        this.searches = ThreadLocal.withInitial(() -> new Search(nodeCount));
+    }
+
+    /**
+     * Returns the process-wide road graph, mapping it on first use.
+     *
+     * @return the shared graph, possibly empty
+     */
+    public static RoadGraph shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Memory-maps a road graph file.
+     *
+     * @param file the file written by {@link Builder#write}
+     * @return the graph
+     * @throws IOException if the file cannot be read or is not a road graph
+     */
+    public static RoadGraph load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("Road graph too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            return new RoadGraph(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Returns a graph with no roads.
+     *
+     * @return an empty graph
+     */
+    public static RoadGraph empty() {
+        try {
+            return new Builder().toGraph();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of intersections and shape points in the graph.
+     *
+     * @return the node count
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of directed road segments in the graph.
+     *
+     * @return the edge count
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Finds the node nearest a point, looking no further than about one
+     * grid cell away.
+     *
+     * @param latitude  latitude of the point
+     * @param longitude longitude of the point
+     * @return the node, or -1 if no node is close enough
+     */
+    public int nearestNode(double latitude, double longitude) {
+        if (cellCount == 0 || !GeoDistance.isValid(latitude, longitude)) {
+            return -1;
+        }
+        int row = (int) Math.floor(latitude / cellDegrees);
+        int col = (int) Math.floor(longitude / cellDegrees);
+        int best = -1;
+        double bestMiles = cellDegrees * METERS_PER_DEGREE / METERS_PER_MILE;
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = col - 1; c <= col + 1; c++) {
+                int cell = findCell(key(r, c));
+                if (cell < 0) {
+                    continue;
+                }
+                for (int u = cellStart.get(cell), end = cellStart.get(cell + 1); u < end; u++) {
+                    double d = GeoDistance.miles(latitude, longitude, lat.get(u), lon.get(u));
+                    if (d < bestMiles) {
+                        bestMiles = d;
+                        best = u;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds a route between two points. Each point is snapped to its
+     * nearest node, and the straight legs to and from those nodes are added
+     * to the result.
+     *
+     * @param fromLat   latitude of the start
+     * @param fromLon   longitude of the start
+     * @param toLat     latitude of the destination
+     * @param toLon     longitude of the destination
+     * @param objective what to minimize
+     * @return the route, or empty if a point is off the network or the
+     *         destination cannot be reached
+     */
+    public Optional<Route> route(double fromLat, double fromLon, double toLat, double toLon, Metric objective) {
+        int from = nearestNode(fromLat, fromLon);
+        int to = nearestNode(toLat, toLon);
+        if (from < 0 || to < 0) {
+            return Optional.empty();
+        }
+        double legs = (GeoDistance.miles(fromLat, fromLon, lat.get(from), lon.get(from))
+                + GeoDistance.miles(toLat, toLon, lat.get(to), lon.get(to))) * METERS_PER_MILE;
+        Search s = searches.get();
+        if (!s.run(from, to, objective == Metric.TIME)) {
+            return Optional.empty();
+        }
+        double m = s.resultMeters + legs;
+        return Optional.of(new Route(m / METERS_PER_MILE, s.resultSeconds + legs / SNAP_SPEED));
+    }
+
+    private int findCell(long key) {
+        int lo = 0;
+        int hi = cellCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = cellKey.get(mid);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private static double metersBetween(double lat1, double lon1, double lat2, double lon2) {
+        return GeoDistance.miles(lat1, lon1, lat2, lon2) * METERS_PER_MILE;
+    }
+
+    /**
+     * One thread's A* state. Arrays are indexed by node; an entry is only
+     * meaningful if its stamp equals the current search's.
+     */
+    private final class Search {
+        private final double[] cost;      // best cost found so far: metres or seconds
+        private final double[] other;     // the other metric along that path
+        private final int[] seenStamp;
+        private final int[] closedStamp;
+        private int stamp;
+
+        // binary min-heap of (priority, node), with stale entries skipped on pop
+        private double[] heapKey = new double[64];
+        private int[] heapNode = new int[64];
+        private int heapSize;
+
+        double resultMeters;
+        double resultSeconds;
+
+        Search(int n) {
+            this.cost = new double[n];
+            this.other = new double[n];
+            this.seenStamp = new int[n];
+            this.closedStamp = new int[n];
+        }
+
+        boolean run(int from, int to, boolean byTime) {
+            if (++stamp == 0) {
+                // wrapped: clear so old stamps cannot match
+                Arrays.fill(seenStamp, 0);
+                Arrays.fill(closedStamp, 0);
+                stamp = 1;
+            }
+            heapSize = 0;
+            double goalLat = lat.get(to);
+            double goalLon = lon.get(to);
+            // Time heuristic: nothing beats driving straight there at the top speed.
+            double scale = byTime ? 1 / Math.max(maxSpeed, 1e-3) : 1;
+
+            cost[from] = 0;
+            other[from] = 0;
+            seenStamp[from] = stamp;
+            push(metersBetween(lat.get(from), lon.get(from), goalLat, goalLon) * scale, from);
+
+            while (heapSize > 0) {
+                int u = pop();
+                if (closedStamp[u] == stamp) {
+                    continue;
+                }
+                closedStamp[u] = stamp;
+                if (u == to) {
+                    resultMeters = byTime ? other[u] : cost[u];
+                    resultSeconds = byTime ? cost[u] : other[u];
+                    return true;
+                }
+                for (int e = firstEdge.get(u), end = firstEdge.get(u + 1); e < end; e++) {
+                    int v = target.get(e);
+                    if (closedStamp[v] == stamp) {
+                        continue;
+                    }
+                    double w = byTime ? seconds.get(e) : meters.get(e);
+                    double g = cost[u] + w;
+                    if (seenStamp[v] != stamp || g < cost[v]) {
+                        seenStamp[v] = stamp;
+                        cost[v] = g;
+                        other[v] = other[u] + (byTime ? meters.get(e) : seconds.get(e));
+                        push(g + metersBetween(lat.get(v), lon.get(v), goalLat, goalLon) * scale, v);
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void push(double key, int node) {
+            if (heapSize == heapKey.length) {
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+                heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKey[parent] <= key) {
+                    break;
+                }
+                heapKey[i] = heapKey[parent];
+                heapNode[i] = heapNode[parent];
+                i = parent;
+            }
+            heapKey[i] = key;
+            heapNode[i] = node;
+        }
+
+        private int pop() {
+            int top = heapNode[0];
+            heapSize--;
+            double key = heapKey[heapSize];
+            int node = heapNode[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) {
+                    child++;
+                }
+                if (heapKey[child] >= key) {
+                    break;
+                }
+                heapKey[i] = heapKey[child];
+                heapNode[i] = heapNode[child];
+                i = child;
+            }
+            heapKey[i] = key;
+            heapNode[i] = node;
+            return top;
+        }
+    }
+
+    /**
+     * Collects nodes and road segments and writes them in the mapped format.
+     */
+    public static final class Builder {
+        private final double cellDegrees;
+        private double[] lats = new double[1024];
+        private double[] lons = new double[1024];
+        private int nodes;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private float[] edgeMeters = new float[1024];
+        private float[] edgeSeconds = new float[1024];
+        private int edges;
+
+        /** Creates a builder with 500 m snapping cells. */
+        public Builder() {
+            this(500);
+        }
+
+        /**
+         * Creates a builder.
+         *
+         * @param cellMeters snapping grid cell size; points further than
+         *                   about this from every node do not snap
+         */
+        public Builder(int cellMeters) {
+            this.cellDegrees = cellMeters / METERS_PER_DEGREE;
+        }
+
+        /**
+         * Adds a node.
+         *
+         * @param latitude  latitude in decimal degrees
+         * @param longitude longitude in decimal degrees
+         * @return the node's ID within this builder
+         */
+        public int addNode(double latitude, double longitude) {
+            if (!GeoDistance.isValid(latitude, longitude)) {
+                throw new IllegalArgumentException("Invalid position: " + latitude + ", " + longitude);
+            }
+            if (nodes == lats.length) {
+                lats = Arrays.copyOf(lats, nodes * 2);
+                lons = Arrays.copyOf(lons, nodes * 2);
+            }
+            lats[nodes] = latitude;
+            lons[nodes] = longitude;
+            return nodes++;
+        }
+
+        /**
+         * Adds a one-way road segment. Its length is the great-circle
+         * distance between its ends, which keeps the A* heuristic admissible.
+         *
+         * @param fromNode the start node
+         * @param toNode   the end node
+         * @param kph      speed limit in kilometres per hour
+         */
+        public void addEdge(int fromNode, int toNode, double kph) {
+            if (fromNode < 0 || fromNode >= nodes || toNode < 0 || toNode >= nodes) {
+                throw new IllegalArgumentException("Unknown node in edge " + fromNode + " -> " + toNode);
+            }
+            if (!(kph > 0)) {
+                throw new IllegalArgumentException("Speed must be positive: " + kph);
+            }
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+                edgeMeters = Arrays.copyOf(edgeMeters, edges * 2);
+                edgeSeconds = Arrays.copyOf(edgeSeconds, edges * 2);
+            }
+            double m = metersBetween(lats[fromNode], lons[fromNode], lats[toNode], lons[toNode]);
+            from[edges] = fromNode;
+            to[edges] = toNode;
+            edgeMeters[edges] = (float) m;
+            edgeSeconds[edges] = (float) (m / (kph / 3.6));
+            edges++;
+        }
+
+        /**
+         * Adds a road segment that can be driven both ways.
+         *
+         * @param a   one end
+         * @param b   the other end
+         * @param kph speed limit in kilometres per hour
+         */
+        public void addRoad(int a, int b, double kph) {
+            addEdge(a, b, kph);
+            addEdge(b, a, kph);
+        }
+
+        /**
+         * Writes the graph file.
+         *
+         * @param file the file to create or replace
+         * @throws IOException if writing fails
+         */
+        public void write(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+                writeTo(out);
+            }
+        }
+
+        /** Builds the graph in memory, for tests and for the empty graph. */
+        RoadGraph toGraph() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeTo(out);
+            }
+            return new RoadGraph(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            // Renumber nodes in grid-cell order so each cell's nodes are contiguous.
+            long[] keys = new long[nodes];
+            Integer[] order = new Integer[nodes];
+            for (int i = 0; i < nodes; i++) {
+                keys[i] = key((int) Math.floor(lats[i] / cellDegrees), (int) Math.floor(lons[i] / cellDegrees));
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+            int[] newId = new int[nodes];
+            for (int i = 0; i < nodes; i++) {
+                newId[order[i]] = i;
+            }
+
+            int cells = 0;
+            for (int i = 0; i < nodes; i++) {
+                if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                    cells++;
+                }
+            }
+
+            // CSR by counting sort on the renumbered source node.
+            int[] first = new int[nodes + 1];
+            for (int e = 0; e < edges; e++) {
+                first[newId[from[e]] + 1]++;
+            }
+            for (int i = 0; i < nodes; i++) {
+                first[i + 1] += first[i];
+            }
+            int[] fill = Arrays.copyOf(first, nodes);
+            int[] slot = new int[edges];
+            for (int e = 0; e < edges; e++) {
+                slot[fill[newId[from[e]]]++] = e;
+            }
+
+            float maxSpeed = 0;
+            for (int e = 0; e < edges; e++) {
+                if (edgeSeconds[e] > 0) {
+                    maxSpeed = Math.max(maxSpeed, edgeMeters[e] / edgeSeconds[e]);
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(nodes);
+            out.writeInt(edges);
+            out.writeInt(cells);
+            out.writeFloat((float) cellDegrees);
+            out.writeFloat(maxSpeed);
+            for (int i = 0; i < nodes; i++) {
+                out.writeFloat((float) lats[order[i]]);
+            }
+            for (int i = 0; i < nodes; i++) {
+                out.writeFloat((float) lons[order[i]]);
+            }
+            for (int i = 0; i <= nodes; i++) {
+                out.writeInt(first[i]);
+            }
+            for (int i = 0; i < edges; i++) {
+                out.writeInt(newId[to[slot[i]]]);
+            }
+            for (int i = 0; i < edges; i++) {
+                out.writeFloat(edgeMeters[slot[i]]);
+            }
+            for (int i = 0; i < edges; i++) {
+                out.writeFloat(edgeSeconds[slot[i]]);
+            }
+            for (int i = 0; i < nodes; i++) {
+                if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                    out.writeLong(keys[order[i]]);
+                }
+            }
+            for (int i = 0; i < nodes; i++) {
+                if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                    out.writeInt(i);
+                }
+            }
+            out.writeInt(nodes);
+        }
+    }
+
+    private static RoadGraph loadShared() {
+        Path file = Path.of(System.getProperty("rideshare.roadgraph", "./data/roads.bin"));
+        try {
+            RoadGraph g = load(file);
+            System.err.println("[ROUTING] Mapped " + g.nodeCount() + " nodes and " + g.edgeCount() + " edges from " + file);
+            return g;
+        } catch (NoSuchFileException e) {
+            System.err.println("[ROUTING] No road graph at " + file + "; using straight-line distances.");
+        } catch (IOException e) {
+            System.err.println("[ROUTING] Could not load " + file + ": " + e.getMessage());
+        }
+        return empty();
+    }
+
+    /**
+     * Converts tab-separated node and edge lists into a road graph file.
+     *
+     * <p>Nodes are {@code id<TAB>lat<TAB>lon}; edges are
+     * {@code fromId<TAB>toId<TAB>kph<TAB>oneway}, where {@code oneway} is
+     * {@code 1} for one-way roads. IDs are arbitrary longs, such as
+     * OpenStreetMap node IDs, so the lists can come straight from an
+     * extract of the drivable ways.</p>
+     *
+     * @param args {@code nodes.tsv edges.tsv out.bin [cellMeters]}
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: RoadGraph <nodes.tsv> <edges.tsv> <out.bin> [cellMeters]");
+            System.exit(2);
+        }
+        Builder b = new Builder(args.length > 3 ? Integer.parseInt(args[3]) : 500);
+        Map<Long, Integer> ids = new HashMap<>();
+        long start = System.currentTimeMillis();
+        try (BufferedReader in = Files.newBufferedReader(Path.of(args[0]))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                String[] f = line.split("\t");
+                if (f.length < 3 || line.startsWith("#")) {
+                    continue;
+                }
+                ids.put(Long.parseLong(f[0].trim()), b.addNode(Double.parseDouble(f[1]), Double.parseDouble(f[2])));
+            }
+        }
+        int skipped = 0;
+        try (BufferedReader in = Files.newBufferedReader(Path.of(args[1]))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                String[] f = line.split("\t");
+                if (f.length < 3 || line.startsWith("#")) {
+                    continue;
+                }
+                Integer a = ids.get(Long.parseLong(f[0].trim()));
+                Integer c = ids.get(Long.parseLong(f[1].trim()));
+                if (a == null || c == null) {
+                    skipped++;
+                    continue;
+                }
+                double kph = Double.parseDouble(f[2]);
+                if (f.length > 3 && f[3].trim().equals("1")) {
+                    b.addEdge(a, c, kph);
+                } else {
+                    b.addRoad(a, c, kph);
+                }
+            }
+        }
+        b.write(Path.of(args[2]));
+        System.out.printf("Wrote %d nodes and %d edges to %s in %d ms (%d edges skipped)%n",
+                b.nodes, b.edges, args[2], System.currentTimeMillis() - start, skipped);
+    }
+}
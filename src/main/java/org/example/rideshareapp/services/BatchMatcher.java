@@ -0,0 +1,451 @@
+package org.example.rideshareapp.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns a batch of ride requests to drivers, minimizing total pickup cost.
+ *
+ * <p>Each request comes with a short list of candidate drivers and the cost
+ * of each (typically the nearest few drivers and their distance), in
+ * compressed form: the candidates of request {@code r} are at indexes
+ * {@code offsets[r]} to {@code offsets[r + 1] - 1} of {@code drivers} and
+ * {@code costs}, which must not be negative. The result gives each
+ * request a driver, or -1, and never gives a driver two requests.</p>
+ *
+ * <p>Requests only compete for drivers they share, so the batch is first
+ * split into connected components of the request–driver graph, and the
+ * components are solved independently and in parallel. With candidates
+ * limited to nearby drivers, most components are small.</p>
+ *
+ * @see Strategy
+ */
+public final class BatchMatcher {
+
+    /** How a batch is matched. */
+    public enum Strategy {
+        /**
+         * Requests in order, each taking its cheapest free candidate. This is
+         * what dispatching requests one at a time does; it is here as a
+         * baseline.
+         */
+        FIRST_COME,
+        /** Cheapest request–driver pairs first, across the whole component. */
+        GREEDY,
+        /**
+         * As many requests matched as possible, at minimum total cost
+         * (Hungarian method on the sparse candidate graph).
+         */
+        OPTIMAL
+    }
+
+    private BatchMatcher() {
+    }
+
+    /**
+     * Matches a batch.
+     *
+     * @param requests number of requests
+     * @param offsets  {@code requests + 1} candidate list boundaries
+     * @param drivers  candidate driver IDs
+     * @param costs    candidate costs
+     * @param strategy how to match
+     * @return for each request, the assigned driver ID or -1
+     */
+    public static int[] match(int requests, int[] offsets, int[] drivers, double[] costs, Strategy strategy) {
+        int[] result = new int[requests];
+        Arrays.fill(result, -1);
+        if (strategy == Strategy.FIRST_COME) {
+            firstCome(requests, offsets, drivers, costs, result);
+            return result;
+        }
+        List<int[]> components = components(requests, offsets, drivers);
+        IntStream stream = IntStream.range(0, components.size());
+        if (requests > 256) {
+            stream = stream.parallel();
+        }
+        // Components share no requests or drivers, so they can write the result concurrently.
+        stream.forEach(c -> {
+            int[] rs = components.get(c);
+            if (strategy == Strategy.OPTIMAL) {
+                hungarian(rs, offsets, drivers, costs, result);
+            } else {
+                greedy(rs, offsets, drivers, costs, result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the total cost of an assignment.
+     *
+     * @param offsets candidate list boundaries
+     * @param drivers candidate driver IDs
+     * @param costs   candidate costs
+     * @param result  the assignment from {@link #match}
+     * @return the sum of the assigned pairs' costs
+     */
+    public static double totalCost(int[] offsets, int[] drivers, double[] costs, int[] result) {
+        double total = 0;
+        for (int r = 0; r < result.length; r++) {
+            for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                if (drivers[i] == result[r]) {
+                    total += costs[i];
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void firstCome(int requests, int[] offsets, int[] drivers, double[] costs, int[] result) {
+        Map<Integer, Boolean> taken = new HashMap<>();
+        for (int r = 0; r < requests; r++) {
+            int best = -1;
+            for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                if (!taken.containsKey(drivers[i]) && (best < 0 || costs[i] < costs[best])) {
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                taken.put(drivers[best], Boolean.TRUE);
+                result[r] = drivers[best];
+            }
+        }
+    }
+
+    /** Groups requests that are connected through shared candidate drivers. */
+    private static List<int[]> components(int requests, int[] offsets, int[] drivers) {
+        int[] parent = new int[requests];
+        for (int r = 0; r < requests; r++) {
+            parent[r] = r;
+        }
+        Map<Integer, Integer> firstRequest = new HashMap<>();
+        for (int r = 0; r < requests; r++) {
+            for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                Integer other = firstRequest.putIfAbsent(drivers[i], r);
+                if (other != null) {
+                    union(parent, r, other);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for (int r = 0; r < requests; r++) {
+            groups.computeIfAbsent(find(parent, r), k -> new ArrayList<>()).add(r);
+        }
+        List<int[]> out = new ArrayList<>(groups.size());
+        for (List<Integer> g : groups.values()) {
+            out.add(g.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return out;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) {
+            parent[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    private static void greedy(int[] rs, int[] offsets, int[] drivers, double[] costs, int[] result) {
+        int edges = 0;
+        for (int r : rs) {
+            edges += offsets[r + 1] - offsets[r];
+        }
+        // Sort the component's candidates by cost, packed into longs: the top half of a
+        // non-negative double's bits orders like the value, and the bottom half holds the
+        // candidate's position. Costs that differ only past the sixth digit may tie.
+        long[] order = new long[edges];
+        int[] owner = new int[edges];
+        int[] index = new int[edges];
+        int e = 0;
+        for (int r : rs) {
+            for (int i = offsets[r]; i < offsets[r + 1]; i++) {
+                owner[e] = r;
+                index[e] = i;
+                order[e] = (Double.doubleToLongBits(costs[i]) & 0xFFFFFFFF00000000L) | e;
+                e++;
+            }
+        }
+        Arrays.sort(order);
+        Map<Integer, Boolean> taken = new HashMap<>();
+        for (long o : order) {
+            int k = (int) (o & 0xFFFFFFFFL);
+            int r = owner[k];
+            int i = index[k];
+            if (result[r] < 0 && !taken.containsKey(drivers[i])) {
+                taken.put(drivers[i], Boolean.TRUE);
+                result[r] = drivers[i];
+            }
+        }
+    }
+
+    /**
+     * Minimum-cost assignment for a component: the Hungarian method run on
+     * the sparse candidate graph, from whichever side is smaller.
+     */
+    private static void hungarian(int[] rs, int[] offsets, int[] drivers, double[] costs, int[] result) {
+        int n = rs.length;
+        int[] off = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            off[k + 1] = off[k] + offsets[rs[k] + 1] - offsets[rs[k]];
+        }
+        // Candidates by local request, with drivers renumbered from 0.
+        Map<Integer, Integer> column = new HashMap<>();
+        int[] col = new int[off[n]];
+        double[] cost = new double[off[n]];
+        for (int k = 0, e = 0; k < n; k++) {
+            for (int i = offsets[rs[k]]; i < offsets[rs[k] + 1]; i++, e++) {
+                Integer c = column.get(drivers[i]);
+                if (c == null) {
+                    c = column.size();
+                    column.put(drivers[i], c);
+                }
+                col[e] = c;
+                cost[e] = costs[i];
+            }
+        }
+        int m = column.size();
+        int[] driverOf = new int[m];
+        column.forEach((d, c) -> driverOf[c] = d);
+
+        if (m >= n) {
+            int[] colOfRow = assign(n, m, off, col, cost);
+            for (int k = 0; k < n; k++) {
+                if (colOfRow[k] >= 0) {
+                    result[rs[k]] = driverOf[colOfRow[k]];
+                }
+            }
+            return;
+        }
+        // Fewer drivers than requests: augment from the drivers instead.
+        int[] tOff = new int[m + 1];
+        for (int e = 0; e < col.length; e++) {
+            tOff[col[e] + 1]++;
+        }
+        for (int c = 0; c < m; c++) {
+            tOff[c + 1] += tOff[c];
+        }
+        int[] fill = Arrays.copyOf(tOff, m);
+        int[] tCol = new int[col.length];
+        double[] tCost = new double[col.length];
+        for (int k = 0; k < n; k++) {
+            for (int e = off[k]; e < off[k + 1]; e++) {
+                int t = fill[col[e]]++;
+                tCol[t] = k;
+                tCost[t] = cost[e];
+            }
+        }
+        int[] requestOfDriver = assign(m, n, tOff, tCol, tCost);
+        for (int c = 0; c < m; c++) {
+            if (requestOfDriver[c] >= 0) {
+                result[rs[requestOfDriver[c]]] = driverOf[c];
+            }
+        }
+    }
+
+    /**
+     * Runs the Hungarian method on an {@code n}-row, {@code m}-column sparse
+     * cost graph in compressed form.
+     *
+     * <p>Rows are added one at a time, each along the cheapest augmenting
+     * path to a free column: Dijkstra on costs reduced by the potentials
+     * {@code u} and {@code v}, which keep them non-negative. Every row also
+     * gets a private dummy column costing more than all real edges together,
+     * so there is always a path, and the optimum leaves as few rows
+     * unmatched as possible before it minimizes cost.</p>
+     *
+     * @return for each row, its column or -1
+     */
+    private static int[] assign(int rows, int cols, int[] realOff, int[] realCol, double[] realCost) {
+        double unmatched = 1;
+        for (double c : realCost) {
+            unmatched += c;
+        }
+        int n = rows;
+        int m = cols + rows;
+        int[] off = new int[n + 1];
+        int[] col = new int[realCol.length + n];
+        double[] cost = new double[realCol.length + n];
+        for (int r = 0, e = 0; r < n; r++) {
+            for (int i = realOff[r]; i < realOff[r + 1]; i++, e++) {
+                col[e] = realCol[i];
+                cost[e] = realCost[i];
+            }
+            col[e] = cols + r;
+            cost[e] = unmatched;
+            e++;
+            off[r + 1] = e;
+        }
+        double[] u = new double[n];
+        double[] v = new double[m];
+        int[] colOfRow = new int[n];
+        int[] rowOfCol = new int[m];
+        Arrays.fill(colOfRow, -1);
+        Arrays.fill(rowOfCol, -1);
+
+        // Per-search state, valid where the stamp matches the current search.
+        double[] distRow = new double[n];
+        double[] distCol = new double[m];
+        int[] prevRow = new int[m];
+        int[] seenRow = new int[n];
+        int[] seenCol = new int[m];
+        int[] doneRow = new int[n];
+        int[] doneCol = new int[m];
+        int[] settledRows = new int[n];
+        int[] settledCols = new int[m];
+        Heap heap = new Heap();
+
+        for (int s = 0; s < n; s++) {
+            int stamp = s + 1;
+            int rowsSettled = 0;
+            int colsSettled = 0;
+            heap.clear();
+            distRow[s] = 0;
+            seenRow[s] = stamp;
+            heap.push(0, s);
+            int target = -1;
+            double delta = 0;
+            while (!heap.isEmpty()) {
+                double d = heap.topKey();
+                int node = heap.pop();
+                if (node < n) {
+                    int r = node;
+                    if (doneRow[r] == stamp || d > distRow[r]) {
+                        continue;
+                    }
+                    doneRow[r] = stamp;
+                    settledRows[rowsSettled++] = r;
+                    for (int e = off[r]; e < off[r + 1]; e++) {
+                        int c = col[e];
+                        double nd = d + cost[e] - u[r] - v[c];
+                        if (doneCol[c] != stamp && (seenCol[c] != stamp || nd < distCol[c])) {
+                            seenCol[c] = stamp;
+                            distCol[c] = nd;
+                            prevRow[c] = r;
+                            heap.push(nd, n + c);
+                        }
+                    }
+                } else {
+                    int c = node - n;
+                    if (doneCol[c] == stamp || d > distCol[c]) {
+                        continue;
+                    }
+                    doneCol[c] = stamp;
+                    settledCols[colsSettled++] = c;
+                    int r = rowOfCol[c];
+                    if (r < 0) {
+                        target = c;
+                        delta = d;
+                        break;
+                    }
+                    // The matched edge has a reduced cost of zero.
+                    if (seenRow[r] != stamp || d < distRow[r]) {
+                        seenRow[r] = stamp;
+                        distRow[r] = d;
+                        heap.push(d, r);
+                    }
+                }
+            }
+            for (int i = 0; i < rowsSettled; i++) {
+                u[settledRows[i]] += delta - distRow[settledRows[i]];
+            }
+            for (int i = 0; i < colsSettled; i++) {
+                v[settledCols[i]] -= delta - distCol[settledCols[i]];
+            }
+            for (int c = target; ; ) {
+                int r = prevRow[c];
+                int next = colOfRow[r];
+                colOfRow[r] = c;
+                rowOfCol[c] = r;
+                if (r == s) {
+                    break;
+                }
+                c = next;
+            }
+        }
+        for (int r = 0; r < n; r++) {
+            if (colOfRow[r] >= cols) {
+                colOfRow[r] = -1;
+            }
+        }
+        return colOfRow;
+    }
+
+    /** Binary min-heap of search nodes keyed by distance, in primitive arrays. */
+    private static final class Heap {
+        private double[] keys = new double[64];
+        private int[] nodes = new int[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double topKey() {
+            return keys[0];
+        }
+
+        void push(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            double key = keys[size];
+            int node = nodes[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package org.example.rideshareapp.services;
+
+import org.example.rideshareapp.db.RideStatus;
+import org.example.rideshareapp.geo.DriverSpatialIndex;
+import org.example.rideshareapp.geo.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Matches ride requests to nearby available drivers in batches.
+ *
+ * <p>Requests are queued on a {@link ConcurrentLinkedQueue}, so submitting
+ * one never blocks. Every {@code windowMillis} a single daemon thread takes
+ * everything queued, looks up each request's nearest available drivers in
+ * the {@link DriverSpatialIndex} (in parallel for large batches), and hands
+ * the candidates to {@link BatchMatcher}, which gives as many requests as
+ * possible a driver, at the lowest total pickup distance. Matching a whole
+ * window at once, rather than giving each request the closest driver as it
+ * arrives, avoids taking a driver that a later request in the same window
+ * needed more. Available drivers who have not reported a position are
+ * candidates for every request too, behind any driver with a position, and
+ * their assignment has a {@code NaN} pickup distance.</p>
+ *
+ * <p>A match reserves the driver with {@link DriverService#reserve}, which
+ * atomically takes them off the market, and moves the ride to
+ * {@code MATCHED} in the {@link RideLifecycle}. A driver who went offline
+ * since the lookup fails the reservation, and their request waits for the
+ * next window. The driver then accepts or declines the offer. A declined
+ * ride goes back in the queue, and is not offered to that driver again; so
+ * does an offer left unanswered for {@code offerMillis}. Either way the
+ * driver goes back on the market. Requests that have no accepted driver after
+ * {@code maxWaitMillis} are cancelled.</p>
+ *
+ * <p>The engine follows rides through lifecycle events rather than its own
+ * calls, so an accept or cancel from anywhere is picked up: the future
+ * returned by {@link #submit} completes when a driver accepts, and fails if
+ * the ride is cancelled or times out. Cancelling a matched or accepted ride
+ * puts its driver back on the market.</p>
+ *
+ * <p>The shared engine reads {@code rideshare.dispatch.windowMs} (default
+ * 1000), {@code rideshare.dispatch.offerMs} (30 seconds),
+ * {@code rideshare.dispatch.maxWaitMs} (two minutes),
+ * {@code rideshare.dispatch.candidates} (8 drivers per request) and
+ * {@code rideshare.dispatch.radiusMeters} (8000).</p>
+ */
+public class DispatchEngine implements AutoCloseable {
+
+    /**
+     * A driver who accepted a ride.
+     *
+     * @param rideId      the ride
+     * @param riderId     the rider who requested it
+     * @param driverId    the driver
+     * @param pickupMiles straight-line distance from the driver to the pickup when
+     *                    matched, or {@code NaN} if they took the ride without being matched
+     *                    or had not reported a position
+     */
+    public record Assignment(long rideId, int riderId, int driverId, double pickupMiles) {
+    }
+
+    /**
+     * Snapshot of the engine's counters.
+     *
+     * @param submitted requests submitted
+     * @param matched   rides offered to a driver
+     * @param accepted  rides accepted by a driver
+     * @param declined  offers declined or left unanswered
+     * @param expired   requests that waited too long
+     * @param cancelled requests cancelled by the rider
+     * @param batches   batches matched
+     * @param pending   requests not yet accepted
+     */
+    public record Stats(long submitted, long matched, long accepted, long declined, long expired,
+                        long cancelled, long batches, int pending) {
+    }
+
+    private static final class Holder {
+        static final DispatchEngine INSTANCE = createShared();
+    }
+
+    // Request states. Only the dispatch thread moves a request out of WAITING
+    // (to TAKEN while it reserves a driver, then OFFERED); lifecycle events move
+    // it back to WAITING when an offer is declined, and to DONE when it ends.
+    private static final int WAITING = 0;
+    private static final int TAKEN = 1;
+    private static final int OFFERED = 2;
+    private static final int DONE = 3;
+
+    /** Batches smaller than this look up candidates on the dispatch thread alone. */
+    private static final int PARALLEL_LOOKUP = 256;
+
+    /** One submitted request. */
+    private static final class Request {
+        final long rideId;
+        final int riderId;
+        final double lat;
+        final double lon;
+        final long submittedAt;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final CompletableFuture<Assignment> result = new CompletableFuture<>();
+        /** Drivers who declined this ride, or let the offer lapse. */
+        final Set<Integer> declinedBy = ConcurrentHashMap.newKeySet();
+        volatile int driverId;
+        volatile double pickupMiles;
+        volatile long offeredAt;
+
+        Request(long rideId, int riderId, double lat, double lon, long submittedAt) {
+            this.rideId = rideId;
+            this.riderId = riderId;
+            this.lat = lat;
+            this.lon = lon;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    private final DriverService drivers;
+    private final RideLifecycle rides;
+    private final BatchMatcher.Strategy strategy;
+    private final long offerMillis;
+    private final long maxWaitMillis;
+    private final int candidates;
+    private final double radiusMiles;
+
+    private final ConcurrentLinkedQueue<Request> incoming = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Long, Request> byRide = new ConcurrentHashMap<>();
+    private final List<Consumer<Assignment>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher;
+    private volatile boolean closed;
+
+    // Only touched by the dispatch thread.
+    /** Requests carried over between windows. */
+    private List<Request> waiting = new ArrayList<>();
+    /** Requests offered to a driver, to check for unanswered offers. */
+    private final List<Request> offered = new ArrayList<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /** The shared engine once it has been created. */
+    private static volatile DispatchEngine sharedInstance;
+
+    /**
+     * Creates an engine and starts its dispatch thread.
+     *
+     * @param drivers       service that finds and reserves drivers
+     * @param rides         lifecycle of the rides being dispatched
+     * @param strategy      how each batch is matched
+     * @param windowMillis  time between batches
+     * @param offerMillis   time a driver has to answer an offer
+     * @param maxWaitMillis time after which a request with no accepted driver is cancelled
+     * @param candidates    nearest drivers considered per request
+     * @param radiusMeters  drivers further than this from the pickup are not considered
+     */
+    public DispatchEngine(DriverService drivers, RideLifecycle rides, BatchMatcher.Strategy strategy,
+                          long windowMillis, long offerMillis, long maxWaitMillis, int candidates,
+                          int radiusMeters) {
+        if (windowMillis <= 0 || offerMillis <= 0 || candidates <= 0 || radiusMeters <= 0) {
+            throw new IllegalArgumentException("Invalid dispatch settings");
+        }
+        this.drivers = drivers;
+        this.rides = rides;
+        this.strategy = strategy;
+        this.offerMillis = offerMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.candidates = candidates;
+        this.radiusMiles = radiusMeters / 1609.344;
+        rides.addListener(this::onTransition);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the process-wide engine, configured from system properties.
+     *
+     * @return the shared engine
+     */
+    public static DispatchEngine shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates an engine for the given services, configured from system
+     * properties.
+     *
+     * @param drivers service that finds and reserves drivers
+     * @param rides   lifecycle of the rides being dispatched
+     * @return a new engine
+     */
+    public static DispatchEngine fromProperties(DriverService drivers, RideLifecycle rides) {
+        return new DispatchEngine(drivers, rides, BatchMatcher.Strategy.OPTIMAL,
+                Long.getLong("rideshare.dispatch.windowMs", 1000L),
+                Long.getLong("rideshare.dispatch.offerMs", 30_000L),
+                Long.getLong("rideshare.dispatch.maxWaitMs", 2 * 60_000L),
+                Integer.getInteger("rideshare.dispatch.candidates", 8),
+                Integer.getInteger("rideshare.dispatch.radiusMeters", 8000));
+    }
+
+    /**
+     * Queues a requested ride for the next batch.
+     *
+     * <p>The returned future completes when a driver accepts the ride, fails
+     * with a {@link TimeoutException} if none does in time (the ride is then
+     * cancelled), and fails with a {@link CancellationException} if the ride
+     * is cancelled. Cancelling the returned future itself does not cancel
+     * the ride.</p>
+     *
+     * @param rideId  the ride, {@code REQUESTED} in the lifecycle
+     * @param riderId the rider
+     * @param lat     pickup latitude
+     * @param lon     pickup longitude
+     * @return the future assignment
+     * @throws IllegalArgumentException if the pickup position is invalid
+     */
+    public CompletableFuture<Assignment> submit(long rideId, int riderId, double lat, double lon) {
+        if (!GeoDistance.isValid(lat, lon)) {
+            throw new IllegalArgumentException("Invalid pickup position: " + lat + ", " + lon);
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Dispatch is shut down"));
+        }
+        Request r = new Request(rideId, riderId, lat, lon, System.currentTimeMillis());
+        if (byRide.putIfAbsent(rideId, r) != null) {
+            throw new IllegalArgumentException("Ride " + rideId + " is already being dispatched");
+        }
+        incoming.add(r);
+        submitted.increment();
+        return r.result.copy();
+    }
+
+    /**
+     * Adds a listener called with every accepted ride the engine is
+     * dispatching, on the thread that accepted it. Listeners should return
+     * quickly.
+     *
+     * @param listener the listener
+     * @return an action that removes the listener
+     */
+    public Runnable addListener(Consumer<Assignment> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Returns a snapshot of the engine's counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(submitted.sum(), matched.sum(), accepted.sum(), declined.sum(), expired.sum(),
+                cancelled.sum(), batches.sum(), byRide.size());
+    }
+
+    /**
+     * Stops the dispatch thread and fails every request not yet accepted.
+     * The rides themselves are left as they are.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Request r : byRide.values()) {
+            if (r.state.getAndSet(DONE) != DONE) {
+                r.result.completeExceptionally(new IllegalStateException("Dispatch is shut down"));
+            }
+        }
+        byRide.clear();
+    }
+
+    /**
+     * Stops the shared engine, if it was created. Called on application
+     * shutdown.
+     */
+    public static void shutdown() {
+        // Read the field rather than the holder, so shutdown never creates the engine.
+        DispatchEngine engine = sharedInstance;
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    /** Runs one batch window. */
+    private void dispatch() {
+        try {
+            long now = System.currentTimeMillis();
+            offered.removeIf(r -> r.state.get() != OFFERED || lapse(r, now));
+            for (Request r; (r = incoming.poll()) != null; ) {
+                waiting.add(r);
+            }
+            waiting.removeIf(r -> r.state.get() != WAITING || expire(r, now));
+            if (!waiting.isEmpty()) {
+                waiting = match(waiting, now);
+            }
+        } catch (RuntimeException e) {
+            // keep the thread alive for the next window
+            System.err.println("[DISPATCH] Batch failed: " + e.getMessage());
+        }
+    }
+
+    /** Withdraws an offer the driver has not answered; true once it is no longer offered. */
+    private boolean lapse(Request r, long now) {
+        if (now - r.offeredAt < offerMillis) {
+            return false;
+        }
+        // Nothing else would ever put the driver back on the market. They are not offered this
+        // ride again; if the driver accepted just now, the decline fails and they keep the ride.
+        if (rides.decline(r.rideId, r.driverId).isPresent()) {
+            drivers.release(r.driverId);
+        }
+        return true;
+    }
+
+    private boolean expire(Request r, long now) {
+        if (now - r.submittedAt < maxWaitMillis || !r.state.compareAndSet(WAITING, DONE)) {
+            return false;
+        }
+        byRide.remove(r.rideId, r);
+        expired.increment();
+        r.result.completeExceptionally(new TimeoutException("No driver found for ride " + r.rideId));
+        rides.cancel(r.rideId, r.riderId);
+        return true;
+    }
+
+    /** Matches a batch and returns the requests that are still waiting. */
+    private List<Request> match(List<Request> batch, long now) {
+        int n = batch.size();
+        IntStream lookups = IntStream.range(0, n);
+        if (n >= PARALLEL_LOOKUP) {
+            lookups = lookups.parallel();
+        }
+        // Drivers with no position are not in the index; once per window, so they still get rides
+        int[] unplaced = drivers.findUnplacedDrivers();
+        List<List<DriverSpatialIndex.Nearby>> nearby = lookups
+                .mapToObj(i -> lookup(batch.get(i), i, unplaced))
+                .toList();
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + nearby.get(i).size();
+        }
+        int[] ids = new int[offsets[n]];
+        double[] miles = new double[offsets[n]];
+        double[] costs = new double[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (DriverSpatialIndex.Nearby d : nearby.get(i)) {
+                ids[k] = d.driverId();
+                miles[k] = d.miles();
+                // an unplaced driver costs as much as the farthest one in range, so any placed driver wins
+                costs[k] = Double.isNaN(d.miles()) ? radiusMiles : d.miles();
+                k++;
+            }
+        }
+
+        int[] driverFor = BatchMatcher.match(n, offsets, ids, costs, strategy);
+        batches.increment();
+
+        List<Request> left = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Request r = batch.get(i);
+            int driverId = driverFor[i];
+            double pickup = Double.NaN;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                if (ids[k] == driverId) {
+                    pickup = miles[k];
+                    break;
+                }
+            }
+            if (driverId >= 0 && offer(r, driverId, pickup, now)) {
+                offered.add(r);
+            } else if (r.state.get() == WAITING) {
+                left.add(r);
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Nearest available drivers who have not turned the request down, then up to
+     * {@code candidates} drivers with no position, at {@code NaN} miles. Request {@code i}
+     * of the batch starts at unplaced driver {@code i}, so a batch can spread over all of them.
+     */
+    private List<DriverSpatialIndex.Nearby> lookup(Request r, int i, int[] unplaced) {
+        List<DriverSpatialIndex.Nearby> nearest = drivers.findNearestDrivers(r.lat, r.lon, candidates, radiusMiles);
+        if (r.declinedBy.isEmpty() && unplaced.length == 0) {
+            return nearest;
+        }
+        List<DriverSpatialIndex.Nearby> found = new ArrayList<>(nearest.size() + Math.min(candidates, unplaced.length));
+        for (DriverSpatialIndex.Nearby d : nearest) {
+            if (!r.declinedBy.contains(d.driverId())) {
+                found.add(d);
+            }
+        }
+        for (int j = 0; j < Math.min(candidates, unplaced.length); j++) {
+            int driverId = unplaced[(i + j) % unplaced.length];
+            if (!r.declinedBy.contains(driverId)) {
+                found.add(new DriverSpatialIndex.Nearby(driverId, Double.NaN));
+            }
+        }
+        return found;
+    }
+
+    /** Reserves the driver and offers them the ride; false if either step failed. */
+    private boolean offer(Request r, int driverId, double pickupMiles, long now) {
+        if (!r.state.compareAndSet(WAITING, TAKEN)) {
+            return false;
+        }
+        boolean reserved;
+        try {
+            reserved = drivers.reserve(driverId);
+        } catch (RuntimeException e) {
+            System.err.println("[DISPATCH] Could not reserve driver " + driverId + ": " + e.getMessage());
+            reserved = false;
+        }
+        if (!reserved) {
+            r.state.compareAndSet(TAKEN, WAITING);
+            return false;
+        }
+        r.driverId = driverId;
+        r.pickupMiles = pickupMiles;
+        r.offeredAt = now;
+        // OFFERED before the lifecycle moves, so a decline that follows at once finds it.
+        if (!r.state.compareAndSet(TAKEN, OFFERED) || rides.match(r.rideId, driverId).isEmpty()) {
+            // The ride ended in the meantime, or was taken by a driver directly.
+            drivers.release(driverId);
+            r.state.compareAndSet(OFFERED, WAITING);
+            return false;
+        }
+        matched.increment();
+        return true;
+    }
+
+    /** Follows the rides being dispatched through the lifecycle. */
+    private void onTransition(RideLifecycle.Transition t) {
+        RideLifecycle.State after = t.after();
+        switch (after.status()) {
+            case ACCEPTED -> {
+                Request r = byRide.remove(after.rideId());
+                if (r == null || r.state.getAndSet(DONE) == DONE) {
+                    return;
+                }
+                accepted.increment();
+                Assignment a = new Assignment(after.rideId(), after.riderId(), after.driverId(),
+                        r.driverId == after.driverId() ? r.pickupMiles : Double.NaN);
+                r.result.complete(a);
+                for (Consumer<Assignment> listener : listeners) {
+                    try {
+                        listener.accept(a);
+                    } catch (RuntimeException e) {
+                        System.err.println("[DISPATCH] Listener failed: " + e.getMessage());
+                    }
+                }
+            }
+            case REQUESTED -> {
+                // A declined offer: back in the queue, without that driver.
+                Request r = t.before() == null ? null : byRide.get(after.rideId());
+                if (r != null && r.state.compareAndSet(OFFERED, WAITING)) {
+                    declined.increment();
+                    r.declinedBy.add(t.before().driverId());
+                    incoming.add(r);
+                }
+            }
+            case CANCELLED -> {
+                RideStatus was = t.before().status();
+                if (was == RideStatus.MATCHED || was == RideStatus.ACCEPTED) {
+                    drivers.release(t.before().driverId());
+                }
+                Request r = byRide.remove(after.rideId());
+                if (r != null && r.state.getAndSet(DONE) != DONE) {
+                    cancelled.increment();
+                    r.result.completeExceptionally(new CancellationException("Ride " + after.rideId() + " was cancelled"));
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static DispatchEngine createShared() {
+        DispatchEngine engine = fromProperties(new DriverService(), RideLifecycle.shared());
+        sharedInstance = engine;
+        return engine;
+    }
+}
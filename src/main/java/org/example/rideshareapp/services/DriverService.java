@@ -1,88 +1,190 @@
 package org.example.rideshareapp.services;
 
-import org.example.rideshareapp.db.DB;
+import org.example.rideshareapp.db.Ride;
+import org.example.rideshareapp.geo.DriverSpatialIndex;
+import org.example.rideshareapp.geo.GeoDistance;
+import org.example.rideshareapp.storage.DriverStore;
+import org.example.rideshareapp.storage.Storage;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 public class DriverService extends ProfileService {
     private String plateNumber;
     private boolean availabilityStatus; // 0= not available 1= available
+    private final DriverSpatialIndex spatial;
+    private final EtaService eta;
+    private final RideLifecycle rides;
 
+    // where and when each ride in progress started, so its speed can be learned on completion
+    private record Start(double lat, double lon, long at) {
+    }
 
-    public void setPlateNumber(String plateNumber, Integer driverId) {
-        String sql = "UPDATE drivers SET plateNumber = ? WHERE driverId = ?";
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, plateNumber);
-            ps.setInt(2, driverId);
-            ps.executeUpdate();
-            this.plateNumber = plateNumber;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+    private final ConcurrentHashMap<Long, Start> started = new ConcurrentHashMap<>();
+
+    public DriverService() {
+        super();
+        this.spatial = DriverSpatialIndex.shared();
+        this.eta = EtaService.shared();
+        this.rides = RideLifecycle.shared();
     }
 
-    //im storing availabilityStatus as an int
-    public void toggleAvailability(Integer driverId) {
-        // 1. Get current status from DB
-        boolean currentStatus;
-        String selectSql = "SELECT availabilityStatus FROM drivers WHERE driverId = ?";
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(selectSql)) {
-            ps.setInt(1, driverId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                currentStatus = rs.getInt("availabilityStatus") == 1; //availabilityStatus is stored as a
-                // int 1 being true 0 being false so this line is checking if its true or false and saving it in current status
-
-            } else {
-                throw new RuntimeException("Driver not found");
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+    public DriverService(Storage storage, RideLifecycle rides) {
+        this(storage, DriverSpatialIndex.shared(), EtaService.shared(), rides);
+    }
 
-        boolean newStatus = !currentStatus; //flips status
-        int statusInt; // makes it possible to store in db
-        if (newStatus) {
-            statusInt = 1;
-        } else {
-            statusInt = 0;
-        }
-        String updateSql = "UPDATE drivers SET availabilityStatus = ? WHERE driverId = ?";
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(updateSql)) {
-            ps.setInt(1, statusInt);
-            ps.setInt(2, driverId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public DriverService(Storage storage, DriverSpatialIndex spatial, EtaService eta, RideLifecycle rides) {
+        super(storage);
+        this.spatial = spatial;
+        this.eta = eta;
+        this.rides = rides;
+    }
+
+    // Driver writes go through the storage engine; on SQLite they are group-committed
+    // by the shared writer. Each method returns a future that completes once the change is durable.
+
+    public CompletableFuture<Void> setPlateNumber(String plateNumber, Integer driverId) {
+        return storage.drivers().setPlateNumber(driverId, plateNumber)
+                .thenRun(() -> this.plateNumber = plateNumber);
+    }
+
+    // availability lives in memory and is written back in the background,
+    // so flips are atomic and never touch the DB on the caller's thread. Refused while the driver
+    // has a ride: dispatch took them off the market for it and puts them back when it ends
+    public CompletableFuture<Boolean> toggleAvailability(Integer driverId) {
+        if (rides.currentRide(driverId).isPresent()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Driver " + driverId + " has a ride in progress"));
         }
+        DriverStore drivers = storage.drivers();
+        boolean newStatus = drivers.toggleAvailability(driverId); // throws if the driver doesn't exist
+        spatial.setAvailable(driverId, newStatus);
+        return drivers.persisted().thenApply(v -> newStatus);
+    }
+
+    public boolean isAvailable(int driverId) {
+        return storage.drivers().isAvailable(driverId);
+    }
+
+    public int[] getAvailableDrivers() {
+        return storage.drivers().availableDrivers();
+    }
+
+    // positions are only kept in memory, in the spatial index; a driver shows up in
+    // nearby searches once they have reported a position and are available
+    public void updatePosition(int driverId, double latitude, double longitude) {
+        spatial.updatePosition(driverId, latitude, longitude, storage.drivers().isAvailable(driverId));
+    }
+
+    // closest available drivers first
+    public List<DriverSpatialIndex.Nearby> findNearestDrivers(double latitude, double longitude, int k, double maxMiles) {
+        return spatial.nearest(latitude, longitude, k, maxMiles);
+    }
+
+    // available drivers who have not reported a position yet, so nearby searches never return them;
+    // dispatch still offers them rides, once every driver it can place is taken
+    public int[] findUnplacedDrivers() {
+        return IntStream.of(storage.drivers().availableDrivers())
+                .filter(d -> spatial.position(d).map(p -> Double.isNaN(p.lat())).orElse(true))
+                .toArray();
+    }
+
+    public List<DriverSpatialIndex.Nearby> findDriversWithin(double latitude, double longitude, double miles) {
+        return spatial.within(latitude, longitude, miles);
     }
 
     // Accept a ride → driver unavailable
-    public void acceptRide(int driverId) {
+    public CompletableFuture<Void> acceptRide(int driverId) {
         this.availabilityStatus = false; // unavailable
+        storage.drivers().setAvailable(driverId, false);
+        spatial.setAvailable(driverId, false);
+        return storage.drivers().persisted();
+    }
+
+    // Take an available driver off the market while a ride is offered to them; the availability
+    // flip is atomic, so a driver is never offered two rides at once. False if they weren't available
+    public boolean reserve(int driverId) {
+        boolean wasAvailable = storage.drivers().setAvailable(driverId, false);
+        spatial.setAvailable(driverId, false);
+        return wasAvailable;
+    }
+
+    // Put a reserved driver back on the market, e.g. when the ride they were offered is cancelled
+    public void release(int driverId) {
+        storage.drivers().setAvailable(driverId, true);
+        spatial.setAvailable(driverId, true);
+    }
+
+    // The ride this driver has been offered, is picking up or is driving, if any
+    public Optional<RideLifecycle.State> currentRide(int driverId) {
+        return rides.currentRide(driverId);
+    }
 
-        String sql = "UPDATE drivers SET availabilityStatus = 0 WHERE driverId = ?";
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, driverId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    // Accept a specific ride → driver unavailable and the ride is assigned to them.
+    // Transitions go through the ride lifecycle, which records them as events; on SQLite the
+    // journal writes them to the rides table. Fails if the ride was cancelled or taken meanwhile
+    public CompletableFuture<Void> acceptRide(int driverId, long rideId) {
+        if (rides.accept(rideId, driverId).isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Ride " + rideId + " can no longer be accepted"));
         }
+        return acceptRide(driverId);
+    }
+
+    // Turn down an offered ride → it goes back to dispatch and the driver is available again
+    public boolean declineRide(int driverId, long rideId) {
+        if (rides.decline(rideId, driverId).isEmpty()) {
+            return false;
+        }
+        release(driverId);
+        return true;
+    }
+
+    // Rider picked up; false if the driver has not accepted this ride
+    public boolean startRide(int driverId, long rideId) {
+        if (rides.start(rideId, driverId).isEmpty()) {
+            return false;
+        }
+        spatial.position(driverId)
+                .filter(p -> !Double.isNaN(p.lat()))
+                .ifPresent(p -> started.put(rideId, new Start(p.lat(), p.lon(), System.currentTimeMillis())));
+        return true;
     }
 
     // Complete a ride → driver available
-    public void completeRide(int driverId) {
+    public CompletableFuture<Void> completeRide(int driverId) {
         this.availabilityStatus = true; // available
+        storage.drivers().setAvailable(driverId, true);
+        spatial.setAvailable(driverId, true);
+        return storage.drivers().persisted();
+    }
+
+    // Complete a specific ride → driver available and the ride is closed
+    public CompletableFuture<Void> completeRide(int driverId, long rideId) {
+        if (rides.complete(rideId, driverId).isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Ride " + rideId + " is not in progress with driver " + driverId));
+        }
+        learnEta(driverId, rideId);
+        return completeRide(driverId);
+    }
 
-        String sql = "UPDATE drivers SET availabilityStatus = 1 WHERE driverId = ?";
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, driverId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    // the trip runs from where the driver was at startRide to where they are now;
+    // rides started without a known position are skipped
+    private void learnEta(int driverId, long rideId) {
+        Start start = started.remove(rideId);
+        DriverSpatialIndex.Position end = spatial.position(driverId).orElse(null);
+        if (start == null || end == null || Double.isNaN(end.lat())) {
+            return;
         }
+        // the quoted distance if the ride has reached the store, else straight line
+        double miles = storage.rides().findById(rideId)
+                .map(Ride::distance)
+                .filter(d -> d > 0)
+                .orElseGet(() -> GeoDistance.miles(start.lat(), start.lon(), end.lat(), end.lon()));
+        eta.record(start.lat(), start.lon(), end.lat(), end.lon(), miles, start.at(), System.currentTimeMillis());
     }
 }
@@ -0,0 +1,476 @@
+package org.example.rideshareapp.services;
+
+import org.example.rideshareapp.geo.GeoDistance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimates travel times from the speeds of completed rides.
+ *
+ * <p>Every completed ride contributes one speed sample (distance over
+ * duration) to the grid cells of its pickup and drop-off, in the hour of
+ * the week it started. For each cell and hour the service keeps a running
+ * count, mean and sum of squared deviations (Welford's method), plus an
+ * all-hours column per cell and city-wide aggregates per hour. These live
+ * in flat primitive arrays indexed by {@code slot * COLUMNS + hour}, so
+ * recording a ride and answering a query are both a few array reads and
+ * writes, whatever the amount of history.</p>
+ *
+ * <p>An estimate uses the most specific aggregate with enough samples:
+ * cell and hour, then cell, then city and hour, then city, then a default
+ * speed. Counts stop growing at {@code window} samples, after which each
+ * new sample moves the mean by {@code 1/window}, so the model follows
+ * changes in traffic instead of averaging over all time.</p>
+ *
+ * <p>Cells are assigned slots in a fixed-size open-addressing table; once
+ * it is full, rides in new cells only update the city-wide aggregates.
+ * Updates are guarded by a fixed set of stripe locks, as in
+ * {@link org.example.rideshareapp.auth.LoginThrottle}.</p>
+ *
+ * <p>The aggregates are saved to a compact binary snapshot (only occupied
+ * cells are written) and loaded from it at startup. The shared service
+ * reads {@code rideshare.eta.snapshot} (default {@code ./data/eta.bin}),
+ * {@code rideshare.eta.cellMeters} (2000), {@code rideshare.eta.cells}
+ * (1024), {@code rideshare.eta.window} (500) and
+ * {@code rideshare.eta.snapshotMs} (ten minutes; 0 disables periodic
+ * snapshots).</p>
+ */
+public class EtaService {
+
+    /**
+     * A travel time estimate.
+     *
+     * @param seconds     expected travel time
+     * @param stdSeconds  standard deviation of the travel time, or 0 if unknown
+     * @param speedMph    average speed the estimate assumes
+     * @param samples     rides behind the aggregates used, 0 for the default speed
+     */
+    public record Estimate(double seconds, double stdSeconds, double speedMph, long samples) {
+    }
+
+    /**
+     * Snapshot of the service's counters.
+     *
+     * @param recorded rides learned from
+     * @param rejected rides ignored as implausible
+     * @param cells    grid cells with data
+     */
+    public record Stats(long recorded, long rejected, int cells) {
+    }
+
+    private static final class Holder {
+        static final EtaService INSTANCE = createShared();
+    }
+
+    /** Hours in a week, plus one all-hours column. */
+    private static final int COLUMNS = 7 * 24 + 1;
+    private static final int ALL_HOURS = COLUMNS - 1;
+    /** Samples an aggregate needs before it is trusted. */
+    private static final int MIN_SAMPLES = 5;
+    private static final double DEFAULT_MPH = 18;
+    private static final double MIN_MPH = 1;
+    private static final double MAX_MPH = 90;
+    private static final int STRIPES = 64;
+    private static final int SNAPSHOT_MAGIC = 0x45544131; // "ETA1"
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final double cellDegrees;
+    private final int window;
+    private final ZoneId zone;
+
+    /** Cell key + 1 per slot, 0 when free. */
+    private final AtomicLongArray cellKeys;
+    private final int mask;
+
+    // Per (slot, column): slot count is the table size, plus one extra row for the city.
+    private final int[] count;
+    private final double[] mean;
+    private final double[] m2;
+    private final int citySlot;
+
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile ScheduledExecutorService snapshots;
+
+    /** The shared model once it has been created. */
+    private static volatile EtaService sharedInstance;
+
+    /**
+     * Creates an empty model.
+     *
+     * @param cellMeters size of a grid cell
+     * @param cells      cells that can hold data, rounded up to a power of two
+     * @param window     sample count after which older samples fade out
+     * @param zone       time zone that hours of the week are counted in
+     */
+    public EtaService(int cellMeters, int cells, int window, ZoneId zone) {
+        if (cellMeters <= 0 || cells <= 0 || window <= 1) {
+            throw new IllegalArgumentException("Invalid ETA model size");
+        }
+        this.cellDegrees = cellMeters / METERS_PER_DEGREE;
+        this.window = window;
+        this.zone = zone;
+        int n = Integer.highestOneBit(Math.max(1, cells - 1)) << 1;
+        this.cellKeys = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.citySlot = n;
+        this.count = new int[(n + 1) * COLUMNS];
+        this.mean = new double[(n + 1) * COLUMNS];
+        this.m2 = new double[(n + 1) * COLUMNS];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the process-wide model, loading its last snapshot on first use.
+     *
+     * @return the shared model
+     */
+    public static EtaService shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Learns from a completed ride.
+     *
+     * @param fromLat   pickup latitude
+     * @param fromLon   pickup longitude
+     * @param toLat     drop-off latitude
+     * @param toLon     drop-off longitude
+     * @param miles     distance driven
+     * @param startedAt when the ride started, epoch milliseconds
+     * @param endedAt   when it was completed, epoch milliseconds
+     * @return false if the ride was ignored as implausible
+     */
+    public boolean record(double fromLat, double fromLon, double toLat, double toLon,
+                          double miles, long startedAt, long endedAt) {
+        double hours = (endedAt - startedAt) / 3_600_000.0;
+        double mph = miles / hours;
+        if (!GeoDistance.isValid(fromLat, fromLon) || !GeoDistance.isValid(toLat, toLon)
+                || hours < 1 / 60.0 || !(mph >= MIN_MPH && mph <= MAX_MPH)) {
+            rejected.increment();
+            return false;
+        }
+        int hour = hourOfWeek(startedAt);
+        int from = slotFor(cell(fromLat, fromLon), true);
+        int to = slotFor(cell(toLat, toLon), true);
+        if (from >= 0) {
+            add(from, hour, mph);
+        }
+        if (to >= 0 && to != from) {
+            add(to, hour, mph);
+        }
+        add(citySlot, hour, mph);
+        recorded.increment();
+        return true;
+    }
+
+    /**
+     * Estimates the travel time for a trip starting at a given time.
+     *
+     * @param fromLat   start latitude
+     * @param fromLon   start longitude
+     * @param toLat     end latitude
+     * @param toLon     end longitude
+     * @param miles     trip distance
+     * @param startAt   departure time, epoch milliseconds
+     * @return the estimate
+     */
+    public Estimate estimate(double fromLat, double fromLon, double toLat, double toLon,
+                             double miles, long startAt) {
+        int hour = hourOfWeek(startAt);
+        int from = GeoDistance.isValid(fromLat, fromLon) ? slotFor(cell(fromLat, fromLon), false) : -1;
+        int to = GeoDistance.isValid(toLat, toLon) ? slotFor(cell(toLat, toLon), false) : -1;
+
+        // Half the trip at each end's speed: time adds, so speeds combine harmonically.
+        double[] a = speed(from, hour);
+        double[] b = to == from ? a : speed(to, hour);
+        double seconds = 3600 * (miles / 2 / a[0] + miles / 2 / b[0]);
+        // First-order error propagation from speed to time. The halves are added as
+        // fully correlated, since slow traffic at one end usually means slow at the other.
+        double stdA = 3600 * miles / 2 * a[1] / (a[0] * a[0]);
+        double stdB = 3600 * miles / 2 * b[1] / (b[0] * b[0]);
+        double avgMph = seconds > 0 ? miles / (seconds / 3600) : a[0];
+        return new Estimate(seconds, stdA + stdB, avgMph, (long) Math.min(a[2], b[2]));
+    }
+
+    /**
+     * Returns the model's counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        int cells = 0;
+        for (int i = 0; i < cellKeys.length(); i++) {
+            if (cellKeys.get(i) != 0) {
+                cells++;
+            }
+        }
+        return new Stats(recorded.sum(), rejected.sum(), cells);
+    }
+
+    /**
+     * Writes the aggregates to a file, replacing it atomically.
+     *
+     * @param file the snapshot file
+     * @throws IOException if writing fails
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeDouble(cellDegrees);
+            int used = 0;
+            for (int i = 0; i < cellKeys.length(); i++) {
+                if (cellKeys.get(i) != 0) {
+                    used++;
+                }
+            }
+            out.writeInt(used);
+            for (int i = 0; i < cellKeys.length(); i++) {
+                long key = cellKeys.get(i);
+                if (key != 0) {
+                    out.writeLong(key - 1);
+                    writeRow(out, i);
+                }
+            }
+            writeRow(out, citySlot);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Merges a snapshot into this model. Cells that no longer fit are
+     * skipped. A snapshot taken with a different cell size is ignored,
+     * since its cells would not line up.
+     *
+     * @param file the snapshot file
+     * @return false if the snapshot was ignored
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public boolean loadSnapshot(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an ETA snapshot: " + file);
+            }
+            if (in.readDouble() != cellDegrees) {
+                return false;
+            }
+            int used = in.readInt();
+            for (int c = 0; c < used; c++) {
+                int slot = slotFor(in.readLong(), true);
+                readRow(in, slot);
+            }
+            readRow(in, citySlot);
+            return true;
+        }
+    }
+
+    /**
+     * Starts saving a snapshot to {@code file} every {@code periodMillis},
+     * on a daemon thread.
+     *
+     * @param file         the snapshot file
+     * @param periodMillis time between snapshots
+     */
+    public synchronized void scheduleSnapshots(Path file, long periodMillis) {
+        if (snapshots != null || periodMillis <= 0) {
+            return;
+        }
+        snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "eta-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                saveSnapshot(file);
+            } catch (IOException e) {
+                System.err.println("[ETA] Snapshot failed: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves a final snapshot of the shared model, if it was created, and
+     * stops its periodic snapshots. Called on application shutdown.
+     */
+    public static void shutdown() {
+        // Read the field rather than the holder, so shutdown never creates the model.
+        EtaService eta = sharedInstance;
+        if (eta != null) {
+            if (eta.snapshots != null) {
+                eta.snapshots.shutdownNow();
+            }
+            try {
+                eta.saveSnapshot(snapshotPath());
+            } catch (IOException e) {
+                System.err.println("[ETA] Snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Returns {mean mph, std mph, samples} from the most specific aggregate with enough data. */
+    private double[] speed(int slot, int hour) {
+        if (slot >= 0) {
+            double[] s = read(slot, hour);
+            if (s != null) {
+                return s;
+            }
+            s = read(slot, ALL_HOURS);
+            if (s != null) {
+                return s;
+            }
+        }
+        double[] s = read(citySlot, hour);
+        if (s != null) {
+            return s;
+        }
+        s = read(citySlot, ALL_HOURS);
+        return s != null ? s : new double[] {DEFAULT_MPH, 0, 0};
+    }
+
+    private double[] read(int slot, int column) {
+        int i = slot * COLUMNS + column;
+        synchronized (locks[i & (STRIPES - 1)]) {
+            int n = count[i];
+            if (n < MIN_SAMPLES) {
+                return null;
+            }
+            return new double[] {mean[i], Math.sqrt(m2[i] / (n - 1)), n};
+        }
+    }
+
+    private void add(int slot, int hour, double mph) {
+        update(slot * COLUMNS + hour, mph);
+        update(slot * COLUMNS + ALL_HOURS, mph);
+    }
+
+    private void update(int i, double x) {
+        synchronized (locks[i & (STRIPES - 1)]) {
+            int n = count[i];
+            if (n < window) {
+                n++;
+                count[i] = n;
+            } else {
+                // Keep the weight of the window: decay the old spread in step with the mean.
+                m2[i] *= (double) (n - 1) / n;
+            }
+            double delta = x - mean[i];
+            mean[i] += delta / n;
+            m2[i] += delta * (x - mean[i]);
+        }
+    }
+
+    private void writeRow(DataOutputStream out, int slot) throws IOException {
+        for (int c = 0; c < COLUMNS; c++) {
+            int i = slot * COLUMNS + c;
+            synchronized (locks[i & (STRIPES - 1)]) {
+                out.writeInt(count[i]);
+                out.writeFloat((float) mean[i]);
+                out.writeFloat((float) m2[i]);
+            }
+        }
+    }
+
+    private void readRow(DataInputStream in, int slot) throws IOException {
+        for (int c = 0; c < COLUMNS; c++) {
+            int n = in.readInt();
+            double mu = in.readFloat();
+            double sq = in.readFloat();
+            if (slot < 0 || n == 0) {
+                continue;
+            }
+            int i = slot * COLUMNS + c;
+            synchronized (locks[i & (STRIPES - 1)]) {
+                // Chan et al. parallel merge of two aggregates.
+                int total = Math.min(count[i] + n, window);
+                double delta = mu - mean[i];
+                double sum = (double) count[i] + n;
+                mean[i] += delta * n / sum;
+                m2[i] += sq + delta * delta * count[i] * n / sum;
+                count[i] = total;
+            }
+        }
+    }
+
+    /** Finds, or if {@code create} claims, the slot for a cell; -1 if absent or the table is full. */
+    private int slotFor(long key, boolean create) {
+        long stored = key + 1;
+        int h = Long.hashCode(key * 0x9E3779B97F4A7C15L);
+        for (int probe = 0; probe <= mask; probe++) {
+            int i = (h + probe) & mask;
+            long k = cellKeys.get(i);
+            if (k == stored) {
+                return i;
+            }
+            if (k == 0) {
+                if (!create) {
+                    return -1;
+                }
+                if (cellKeys.compareAndSet(i, 0, stored)) {
+                    return i;
+                }
+                if (cellKeys.get(i) == stored) {
+                    return i; // another thread claimed it for the same cell
+                }
+            }
+        }
+        return -1;
+    }
+
+    private long cell(double lat, double lon) {
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lon / cellDegrees);
+        return (row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private int hourOfWeek(long millis) {
+        ZonedDateTime t = Instant.ofEpochMilli(millis).atZone(zone);
+        return (t.getDayOfWeek().getValue() - 1) * 24 + t.getHour();
+    }
+
+    private static Path snapshotPath() {
+        return Path.of(System.getProperty("rideshare.eta.snapshot", "./data/eta.bin"));
+    }
+
+    private static EtaService createShared() {
+        EtaService eta = new EtaService(
+                Integer.getInteger("rideshare.eta.cellMeters", 2000),
+                Integer.getInteger("rideshare.eta.cells", 1024),
+                Integer.getInteger("rideshare.eta.window", 500),
+                ZoneId.systemDefault());
+        Path file = snapshotPath();
+        try {
+            if (!eta.loadSnapshot(file)) {
+                System.err.println("[ETA] Snapshot " + file + " uses a different cell size; starting fresh.");
+            }
+        } catch (NoSuchFileException e) {
+            // first run
+        } catch (IOException e) {
+            System.err.println("[ETA] Could not load " + file + ": " + e.getMessage());
+        }
+        eta.scheduleSnapshots(file, Long.getLong("rideshare.eta.snapshotMs", 10 * 60_000L));
+        sharedInstance = eta;
+        return eta;
+    }
+}
@@ -1,6 +1,18 @@
 package org.example.rideshareapp.services;
 
+import org.example.rideshareapp.geo.GeoDistance;
+import org.example.rideshareapp.geo.Geocoder;
+import org.example.rideshareapp.geo.RoadGraph;
+import org.example.rideshareapp.storage.LocationStore;
+import org.example.rideshareapp.storage.SavedLocation;
+import org.example.rideshareapp.storage.Storage;
+import org.example.rideshareapp.util.LruCache;
+
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service class responsible for managing map-related data and operations
@@ -12,15 +24,22 @@ import java.util.ArrayList;
  * calculating distances and ride costs between two locations.
  * </p>
  *
- * <p>This class currently uses static, simulated data for demonstration
- * purposes. Future versions could integrate real mapping APIs such as
- * Google Maps or OpenStreetMap for distance and routing calculations.</p>
+ * <p>Each user's saved locations are persisted in a {@link LocationStore}
+ * and reached through {@link #savedLocations(int)}, a per-user
+ * {@link SavedLocations} view that is loaded on first use, kept in a
+ * bounded cache, and writes every change through to the store.</p>
+ *
+ * <p>Distances are driving distances over an offline {@link RoadGraph}
+ * when one is installed and both locations are on it, and great-circle
+ * distances computed by {@link GeoDistance} otherwise. Routes are cached
+ * per origin and destination area in a {@link QuoteCache}. New and edited
+ * addresses are resolved to coordinates by an offline {@link Geocoder}.</p>
  *
  * <h2>Responsibilities</h2>
  * <ul>
- *   <li>Manage a list of saved {@link Location} objects.</li>
+ *   <li>Manage each user's saved {@link Location} objects.</li>
  *   <li>Provide methods to add, remove, and update location data.</li>
- *   <li>Compute (mock) ride distance and cost estimates.</li>
+ *   <li>Compute ride distance and cost estimates.</li>
  *   <li>Support integration with {@link org.example.rideshareapp.controllers.MapController}
  *       and {@link org.example.rideshareapp.controllers.RideRequestController}.</li>
  * </ul>
@@ -38,15 +57,80 @@ public class MapService {
         /** A short user-assigned label for the location. */
         String label;
 
+        /** Latitude in decimal degrees, or {@code NaN} if unknown. */
+        double latitude;
+
+        /** Longitude in decimal degrees, or {@code NaN} if unknown. */
+        double longitude;
+
         /**
-         * Constructs a new {@code Location} object.
+         * Constructs a new {@code Location} object without coordinates.
          *
          * @param address the street address of the location
          * @param label a short, user-defined label (e.g., “Home”)
          */
         public Location(String address, String label) {
+            this(address, label, Double.NaN, Double.NaN);
+        }
+
+        /**
+         * Constructs a new {@code Location} object.
+         *
+         * @param address the street address of the location
+         * @param label a short, user-defined label (e.g., “Home”)
+         * @param latitude the latitude in decimal degrees, or {@code NaN}
+         * @param longitude the longitude in decimal degrees, or {@code NaN}
+         */
+        public Location(String address, String label, double latitude, double longitude) {
             this.address = address;
             this.label = label;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        /**
+         * Returns the street address.
+         *
+         * @return the address
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * Returns the user-assigned label.
+         *
+         * @return the label
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Returns the latitude.
+         *
+         * @return the latitude in decimal degrees, or {@code NaN} if unknown
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Returns the longitude.
+         *
+         * @return the longitude in decimal degrees, or {@code NaN} if unknown
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Returns whether this location has a usable position.
+         *
+         * @return true if both coordinates are known and in range
+         */
+        public boolean hasCoordinates() {
+            return GeoDistance.isValid(latitude, longitude);
         }
 
         /**
@@ -60,50 +144,209 @@ public class MapService {
         }
     }
 
-    /** The in-memory list of saved user locations. */
-    private ArrayList<Location> savedLocations = new ArrayList<>();
-
     /**
-     * Constructs the {@code MapService} and initializes it with
-     * a few pre-defined sample locations.
+     * One user's saved locations, keyed by label.
+     * <p>
+     * The view is loaded from the store the first time it is used. Lookups
+     * by label are hash lookups, and every change is applied to the view at
+     * once and written through to the store in the background. If a write
+     * fails, the view is dropped so the next use reloads what was stored.
+     * Labels are unique per user; saving under an existing label replaces
+     * that location's address.
+     * </p>
      */
-    public MapService() {
-        savedLocations.add(new Location("131 Park Ave", "School"));
-        savedLocations.add(new Location("22 Main St", "Home"));
-        savedLocations.add(new Location("44 State Rd", "Work"));
+    public final class SavedLocations {
+        private final int userId;
+        private final LinkedHashMap<String, Location> byLabel = new LinkedHashMap<>();
+        private boolean loaded;
+
+        private SavedLocations(int userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * Returns the user's locations in the order they were first saved.
+         *
+         * @return a snapshot of the locations
+         */
+        public synchronized List<Location> all() {
+            load();
+            return new ArrayList<>(byLabel.values());
+        }
+
+        /**
+         * Returns the location saved under a label.
+         *
+         * @param label the label
+         * @return the location, or null if there is none
+         */
+        public synchronized Location get(String label) {
+            load();
+            return byLabel.get(label);
+        }
+
+        /**
+         * Saves a location, geocoding its address. If the address cannot be
+         * resolved, the location is still saved, without coordinates.
+         *
+         * @param address the address of the location
+         * @param label a short, user-assigned label
+         * @return the saved location
+         */
+        public Location add(String address, String label) {
+            Location location = new Location(address, label);
+            locate(location);
+            return put(location);
+        }
+
+        /**
+         * Saves a location with known coordinates.
+         *
+         * @param address the address of the location
+         * @param label a short, user-assigned label
+         * @param latitude the latitude in decimal degrees
+         * @param longitude the longitude in decimal degrees
+         * @return the saved location
+         */
+        public Location add(String address, String label, double latitude, double longitude) {
+            return put(new Location(address, label, latitude, longitude));
+        }
+
+        /**
+         * Removes a saved location.
+         *
+         * @param selectedLocation the {@link Location} to be removed
+         * @return true if it was one of the user's locations
+         */
+        public synchronized boolean remove(Location selectedLocation) {
+            load();
+            if (selectedLocation == null || byLabel.get(selectedLocation.label) != selectedLocation) {
+                return false;
+            }
+            byLabel.remove(selectedLocation.label);
+            writeThrough(store.delete(userId, selectedLocation.label));
+            return true;
+        }
+
+        /**
+         * Updates the address and label of a saved location.
+         *
+         * @param selectedLocation the location to modify
+         * @param address the new address
+         * @param label the new label
+         * @return false if the location is not one of the user's, or another
+         *         of their locations already has the new label
+         */
+        public synchronized boolean update(Location selectedLocation, String address, String label) {
+            load();
+            if (selectedLocation == null || byLabel.get(selectedLocation.label) != selectedLocation) {
+                return false;
+            }
+            String oldLabel = selectedLocation.label;
+            boolean renamed = !Objects.equals(oldLabel, label);
+            if (renamed && byLabel.containsKey(label)) {
+                return false;
+            }
+            boolean moved = !Objects.equals(selectedLocation.address, address);
+            selectedLocation.address = address;
+            selectedLocation.label = label;
+            if (moved) {
+                locate(selectedLocation);
+            }
+            if (renamed) {
+                byLabel.remove(oldLabel);
+                byLabel.put(label, selectedLocation);
+            }
+            writeThrough(store.replace(oldLabel, toRow(selectedLocation)));
+            return true;
+        }
+
+        private synchronized Location put(Location location) {
+            load();
+            Location existing = byLabel.get(location.label);
+            if (existing != null) {
+                // Keep the object callers may already hold, with the new values.
+                existing.address = location.address;
+                existing.latitude = location.latitude;
+                existing.longitude = location.longitude;
+                location = existing;
+            } else {
+                byLabel.put(location.label, location);
+            }
+            writeThrough(store.save(toRow(location)));
+            return location;
+        }
+
+        private void load() {
+            if (!loaded) {
+                for (SavedLocation row : store.findByUser(userId)) {
+                    byLabel.put(row.label(), new Location(row.address(), row.label(), row.latitude(), row.longitude()));
+                }
+                loaded = true;
+            }
+        }
+
+        private SavedLocation toRow(Location location) {
+            return new SavedLocation(userId, location.label, location.address, location.latitude, location.longitude);
+        }
+
+        private void writeThrough(CompletableFuture<Void> write) {
+            write.whenComplete((v, e) -> {
+                if (e != null) {
+                    System.err.println("[LOCATIONS] Save failed for user " + userId + ": " + e.getMessage());
+                    views.invalidate(userId);
+                }
+            });
+        }
     }
 
+    /** Loaded per-user views, least recently used dropped first. */
+    private final LruCache<Integer, SavedLocations> views =
+            new LruCache<>(Integer.getInteger("rideshare.cache.locations", 1000));
+
+    /** Where saved locations are persisted. */
+    private final LocationStore store;
+
+    /** Resolves typed addresses to coordinates. */
+    private final Geocoder geocoder;
+
+    /** Road network for driving distances and times. */
+    private final RoadGraph roads;
+
+    /** Recent routes, so repeated trips skip the search. */
+    private final QuoteCache quotes;
+
     /**
-     * Adds a new location to the saved locations list.
-     *
-     * @param address the address of the location
-     * @param label a short, user-assigned label
+     * Constructs the {@code MapService} with the shared geocoder, road
+     * graph and storage engine.
      */
-    public void addLocation(String address, String label) {
-        savedLocations.add(new Location(address, label));
+    public MapService() {
+        this(Geocoder.shared(), RoadGraph.shared(), QuoteCache.fromProperties(), Storage.current().locations());
     }
 
     /**
-     * Removes a previously saved location.
+     * Constructs the {@code MapService}.
      *
-     * @param selectedLocation the {@link Location} to be removed
+     * @param geocoder resolves addresses to coordinates
+     * @param roads road network used for distances and travel times
+     * @param quotes cache of computed routes
+     * @param store where saved locations are persisted
      */
-    public void removeLocation(Location selectedLocation) {
-        savedLocations.remove(selectedLocation);
+    public MapService(Geocoder geocoder, RoadGraph roads, QuoteCache quotes, LocationStore store) {
+        this.geocoder = geocoder;
+        this.roads = roads;
+        this.quotes = quotes;
+        this.store = store;
     }
 
     /**
-     * Updates the address and label of an existing location.
+     * Returns a user's saved locations, loading them on first use.
      *
-     * @param selectedLocation the location to modify
-     * @param address the new address
-     * @param label the new label
+     * @param userId the user's ID
+     * @return the user's view
      */
-    public void updateLocation(Location selectedLocation, String address, String label) {
-        if (selectedLocation != null) {
-            selectedLocation.address = address;
-            selectedLocation.label = label;
-        }
+    public SavedLocations savedLocations(int userId) {
+        return views.computeIfAbsent(userId, SavedLocations::new);
     }
 
     /**
@@ -129,17 +372,70 @@ public class MapService {
     }
 
     /**
-     * Calculates the approximate distance between two locations.
-     * <p>
-     * Currently returns a fixed simulated value (5.3 miles).
-     * </p>
+     * Quotes a trip between two locations: the length and driving time of
+     * the fastest route on the road network if both are on it, otherwise
+     * the great-circle distance with an unknown time. Quotes are cached, so
+     * asking again for a nearby trip is a hash lookup.
      *
      * @param currentLocation the user’s starting location
      * @param destination the desired destination location
-     * @return the simulated ride distance in miles
+     * @return the quote; its distance is {@code NaN} if either location is
+     *         missing or has no coordinates
+     */
+    public QuoteCache.Quote quote(Location currentLocation, Location destination) {
+        if (currentLocation == null || destination == null
+                || !currentLocation.hasCoordinates() || !destination.hasCoordinates()) {
+            return new QuoteCache.Quote(Double.NaN, Double.NaN);
+        }
+        double fromLat = currentLocation.latitude;
+        double fromLon = currentLocation.longitude;
+        double toLat = destination.latitude;
+        double toLon = destination.longitude;
+        QuoteCache.Quote q = quotes.get(fromLat, fromLon, toLat, toLon);
+        if (q == null) {
+            q = roads.route(fromLat, fromLon, toLat, toLon, RoadGraph.Metric.TIME)
+                    .map(r -> new QuoteCache.Quote(r.miles(), r.seconds()))
+                    .orElseGet(() -> new QuoteCache.Quote(
+                            GeoDistance.miles(fromLat, fromLon, toLat, toLon), Double.NaN));
+            quotes.put(fromLat, fromLon, toLat, toLon, q);
+        }
+        return q;
+    }
+
+    /**
+     * Calculates the distance between two locations: the length of the
+     * fastest driving route if both are on the road network, otherwise the
+     * great-circle distance.
+     *
+     * @param currentLocation the user’s starting location
+     * @param destination the desired destination location
+     * @return the distance in miles, or {@code NaN} if either location is
+     *         missing or has no coordinates
      */
     public double calculateDistance(Location currentLocation, Location destination) {
-        return 5.3; // simulated for demonstration
+        return quote(currentLocation, destination).miles();
+    }
+
+    /**
+     * Estimates the driving time between two locations along the fastest
+     * route on the road network.
+     *
+     * @param currentLocation the user’s starting location
+     * @param destination the desired destination location
+     * @return the time in seconds, or {@code NaN} if either location is
+     *         missing or there is no route between them
+     */
+    public double estimateTravelSeconds(Location currentLocation, Location destination) {
+        return quote(currentLocation, destination).seconds();
+    }
+
+    /**
+     * Returns the quote cache's hit rate and other counters.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats quoteCacheStats() {
+        return quotes.stats();
     }
 
     /**
@@ -153,12 +449,11 @@ public class MapService {
         return rideDistance * pricePerMile;
     }
 
-    /**
-     * Retrieves the list of saved user locations.
-     *
-     * @return an {@link ArrayList} of {@link Location} objects
-     */
-    public ArrayList<Location> getSavedLocations() {
-        return savedLocations;
+    /** Sets a location's coordinates from its address, or clears them if it does not resolve. */
+    private void locate(Location location) {
+        Geocoder.Match m = geocoder.geocode(location.address).orElse(null);
+        location.latitude = m == null ? Double.NaN : m.latitude();
+        location.longitude = m == null ? Double.NaN : m.longitude();
     }
+
 }
@@ -1,34 +1,104 @@
 package org.example.rideshareapp.services;
 
-import org.example.rideshareapp.db.DB;
+import org.example.rideshareapp.auth.LoginThrottle;
+import org.example.rideshareapp.auth.LoginThrottledException;
+import org.example.rideshareapp.auth.PasswordHasher;
+import org.example.rideshareapp.auth.Session;
+import org.example.rideshareapp.auth.SessionRegistry;
+import org.example.rideshareapp.storage.Storage;
+import org.example.rideshareapp.storage.User;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Handles user authentication, account creation, profile updates,
  * and support actions within the RideShare application.
- * This service maintains basic session information for the logged-in user
- * and interacts with the underlying database to manage stored user data.
+ * This service keeps no per-user state: a successful login opens a
+ * {@link Session} in the {@link SessionRegistry}, and calls on behalf of a
+ * logged-in user pass its token. One instance can therefore serve any
+ * number of concurrent users. Stored user data is managed through a
+ * {@link Storage} engine.
+ * <p>
+ * Passwords are stored as BCrypt hashes. Hashing runs on the shared
+ * {@link PasswordHasher} pool, so the {@code ...Async} methods never block
+ * the calling thread on it; the plain methods wait for the result.
+ * Accounts that still hold a plaintext password are rehashed on their next
+ * successful login.
+ * </p>
  */
 public class ProfileService {
 
-    /** The unique database ID of the currently logged-in user. */
-    private int profileId;
+    /** Where users (and, for subclasses, drivers and rides) are stored. */
+    protected final Storage storage;
 
-    /** The username of the logged-in user. */
-    private String username;
+    /** Hashes and verifies passwords off the caller's thread. */
+    protected final PasswordHasher hasher;
 
-    /** The stored password hash or plain password value for the user. */
-    private String password_hash;
+    /** Open sessions, keyed by token. */
+    protected final SessionRegistry sessions;
 
-    /** The user classification (e.g., Driver or Rider). */
-    private String classification;
+    /** Sheds excess login attempts before any lookup or hashing. */
+    protected final LoginThrottle throttle;
 
     /**
-     * Registers a new user in the database.
+     * Creates a service backed by the default storage engine.
+     */
+    public ProfileService() {
+        this(Storage.current());
+    }
+
+    /**
+     * Creates a service backed by the given storage engine.
+     *
+     * @param storage the storage engine
+     */
+    public ProfileService(Storage storage) {
+        this(storage, PasswordHasher.shared());
+    }
+
+    /**
+     * Creates a service backed by the given storage engine and hasher.
+     *
+     * @param storage the storage engine
+     * @param hasher the password hasher
+     */
+    public ProfileService(Storage storage, PasswordHasher hasher) {
+        this(storage, hasher, SessionRegistry.shared());
+    }
+
+    /**
+     * Creates a service backed by the given storage engine, hasher and
+     * session registry.
+     *
+     * @param storage the storage engine
+     * @param hasher the password hasher
+     * @param sessions the session registry
+     */
+    public ProfileService(Storage storage, PasswordHasher hasher, SessionRegistry sessions) {
+        this(storage, hasher, sessions, LoginThrottle.shared());
+    }
+
+    /**
+     * Creates a service with every dependency given explicitly.
+     *
+     * @param storage the storage engine
+     * @param hasher the password hasher
+     * @param sessions the session registry
+     * @param throttle the login throttle
+     */
+    public ProfileService(Storage storage, PasswordHasher hasher, SessionRegistry sessions,
+                          LoginThrottle throttle) {
+        this.storage = storage;
+        this.hasher = hasher;
+        this.sessions = sessions;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Registers a new user in the database, waiting for the password to be
+     * hashed.
      *
      * @param username the username to create
      * @param password the password to store
@@ -36,103 +106,198 @@ public class ProfileService {
      * @return true if registration succeeds, false otherwise
      */
     public boolean register(String username, String password, String classification) {
-        String sql = "INSERT INTO users (username, password_hash, classification) VALUES (?, ?, ?)";
-
-        try (Connection conn = DB.get();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try {
+            return registerAsync(username, password, classification).join();
+        } catch (CompletionException e) {
+            System.err.println("[REGISTER ERROR] " + e.getCause().getMessage());
+            return false;
+        }
+    }
 
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            stmt.setString(3, classification);
+    /**
+     * Registers a new user in the database. The password is hashed on the
+     * hashing pool before the row is written.
+     *
+     * @param username the username to create
+     * @param password the password to store
+     * @param classification the user classification
+     * @return a future completed with true if registration succeeds, false if
+     *         the username is taken; failed if the hashing pool is saturated
+     */
+    public CompletableFuture<Boolean> registerAsync(String username, String password, String classification) {
+        return hasher.hash(password)
+                .thenApply(hash -> storage.users().create(username, hash, classification).isPresent());
+    }
 
-            stmt.executeUpdate();
-            return true;
+    /**
+     * Returns the open session for a token.
+     *
+     * @param token the session token
+     * @return the session, or empty if it has expired or was closed
+     */
+    public Optional<Session> session(String token) {
+        return sessions.get(token);
+    }
 
-        } catch (SQLException e) {
-            System.err.println("[REGISTER ERROR] " + e.getMessage());
-            return false;
+    /**
+     * Attempts to authenticate a user, waiting for the password check.
+     *
+     * @param username the username provided at login
+     * @param password the password provided at login
+     * @param classification the user classification attempting to log in
+     * @return the new session if the credentials match a stored user, empty otherwise
+     */
+    public Optional<Session> login(String username, String password, String classification) {
+        try {
+            return loginAsync(username, password, classification).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof LoginThrottledException) {
+                System.err.println("[LOGIN] " + e.getCause().getMessage());
+            } else {
+                e.getCause().printStackTrace();
+            }
+            return Optional.empty();
         }
     }
 
     /**
-     * Returns the database ID of the current user.
+     * Attempts to authenticate a user from this process's own UI. See
+     * {@link #loginAsync(String, String, String, String)}.
      *
-     * @return the logged-in user's profile ID
+     * @param username the username provided at login
+     * @param password the password provided at login
+     * @param classification the user classification attempting to log in
+     * @return a future completed with the new session, or empty if the
+     *         credentials do not match
      */
-    public int getProfileId() {
-        return profileId;
+    public CompletableFuture<Optional<Session>> loginAsync(String username, String password,
+                                                           String classification) {
+        return loginAsync(username, password, classification, LoginThrottle.LOCAL_SOURCE);
     }
 
     /**
-     * Attempts to authenticate a user using stored values in the users table.
-     * If successful, the user's session information is loaded into memory.
+     * Attempts to authenticate a user and, if successful, opens a session.
+     * The attempt first goes through the {@link LoginThrottle}; if it is
+     * over the limit for the username or the source, it fails straight
+     * away, before any lookup or hashing. Otherwise the user is looked up
+     * by username only, in the background, and the password is checked
+     * against the stored hash on the hashing pool, never in SQL; the
+     * calling thread does neither. Unknown usernames cost the same
+     * hash as known ones. A legacy plaintext password, or a hash with an
+     * outdated cost, is replaced with a fresh hash in the background after a
+     * successful login.
      *
      * @param username the username provided at login
      * @param password the password provided at login
      * @param classification the user classification attempting to log in
-     * @return true if the credentials match a stored user, false otherwise
+     * @param source where the attempt comes from, such as a client address
+     * @return a future completed with the new session, or empty if the
+     *         credentials do not match; failed with
+     *         {@link LoginThrottledException} if the attempt was throttled, or
+     *         {@link java.util.concurrent.RejectedExecutionException} if the
+     *         hashing pool is saturated
      */
-    public boolean login(String username, String password, String classification) {
-        String sql = "SELECT * FROM users WHERE username = ? AND password_hash = ? AND classification = ?";
-
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username.trim());
-            ps.setString(2, password.trim());
-            ps.setString(3, classification.trim());
+    public CompletableFuture<Optional<Session>> loginAsync(String username, String password,
+                                                           String classification, String source) {
+        if (!throttle.tryAcquire(username, classification, source)) {
+            return CompletableFuture.failedFuture(
+                    new LoginThrottledException("Too many login attempts for " + username.trim()));
+        }
 
-            ResultSet rs = ps.executeQuery();
+        String pw = password.trim();
+        // The lookup may hit the database, so it runs off the caller's (often the FX) thread too.
+        return CompletableFuture.supplyAsync(() -> storage.users().findByUsername(username.trim())
+                        .filter(u -> u.classification().equals(classification.trim())))
+                .thenCompose(found -> {
+                    String stored = found.map(User::passwordHash).orElse(null);
+                    return hasher.verify(pw, stored).thenApply(ok -> {
+                        if (!ok) {
+                            return Optional.<Session>empty();
+                        }
+                        User u = found.get();
+                        if (hasher.needsRehash(stored)) {
+                            upgradePassword(u, pw);
+                        }
+                        return Optional.of(sessions.open(u.id(), u.username(), u.classification()));
+                    });
+                });
+    }
 
-            if (rs.next()) {
-                this.profileId = rs.getInt("id");
-                this.username = rs.getString("username");
-                this.password_hash = rs.getString("password_hash");
-                this.classification = rs.getString("classification");
-                return true;
-            }
+    /**
+     * Ends a session.
+     *
+     * @param token the session token
+     * @return true if the session was open
+     */
+    public boolean logout(String token) {
+        return sessions.close(token);
+    }
 
-            return false;
+    /** Replaces a plaintext or outdated password value with a fresh hash. */
+    private void upgradePassword(User user, String password) {
+        hasher.hash(password)
+                .thenAccept(hash -> {
+                    if (storage.users().replacePasswordHash(user.id(), user.passwordHash(), hash)) {
+                        System.out.println("[Login] Upgraded password hash for user " + user.id());
+                    }
+                })
+                .exceptionally(e -> {
+                    // Not fatal: the old value still works and is retried next login.
+                    System.err.println("[REHASH ERROR] " + e.getMessage());
+                    return null;
+                });
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Updates the stored account information for a logged-in user, waiting
+     * for the new password to be hashed.
+     *
+     * @param token the user's session token
+     * @param newUsername the new username to apply
+     * @param newPassword the new password value to store
+     * @param newClassification the new classification value
+     * @return true if the update succeeded, false if the session is not open
+     *         or no rows were affected
+     */
+    public boolean updateProfile(String token, String newUsername, String newPassword, String newClassification) {
+        try {
+            return updateProfileAsync(token, newUsername, newPassword, newClassification).join();
+        } catch (CompletionException e) {
+            System.err.println("[UPDATE ERROR] " + e.getCause().getMessage());
             return false;
         }
     }
 
     /**
-     * Updates the stored account information for the currently logged-in user.
+     * Updates the stored account information for a logged-in user. The new
+     * password is hashed on the hashing pool first, and the session's
+     * snapshot is refreshed once the row is written.
      *
+     * @param token the user's session token
      * @param newUsername the new username to apply
      * @param newPassword the new password value to store
      * @param newClassification the new classification value
-     * @return true if the update succeeded, false if no rows were affected
+     * @return a future completed with true if the update succeeded, false if
+     *         the session is not open or no rows were affected
      */
-    public boolean updateProfile(String newUsername, String newPassword, String newClassification) {
-        String sql = "UPDATE users SET username = ?, password_hash = ?, classification = ? WHERE id = ?";
-
-        try (Connection conn = DB.get();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, newUsername.trim());
-            ps.setString(2, newPassword.trim());
-            ps.setString(3, newClassification.trim());
-            ps.setInt(4, this.profileId);
-
-            int rows = ps.executeUpdate();
+    public CompletableFuture<Boolean> updateProfileAsync(String token, String newUsername, String newPassword,
+                                                         String newClassification) {
+        Optional<Session> session = sessions.get(token);
+        if (session.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        int id = session.get().userId();
+        return hasher.hash(newPassword.trim()).thenApply(hash -> {
+            User updated = new User(id, newUsername.trim(), hash, newClassification.trim());
 
-            if (rows > 0) {
-                this.username = newUsername;
-                this.password_hash = newPassword;
-                this.classification = newClassification;
+            if (storage.users().update(updated)) {
+                sessions.update(token, s -> s.withProfile(updated.username(), updated.classification()));
                 return true;
             } else {
                 System.err.println("[UPDATE FAILED] No rows updated.");
                 return false;
             }
-
-        } catch (SQLException e) {
-            System.err.println("[UPDATE ERROR] " + e.getMessage());
-            return false;
-        }
+        });
     }
 
     /**
@@ -141,21 +306,10 @@ public class ProfileService {
      * @param profileId the ID of the user whose profile should be displayed
      */
     public void viewProfile(int profileId) {
-        String sql = "SELECT * FROM users WHERE id = ?";
-
-        try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, profileId);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                System.out.println("Username: " + rs.getString("username"));
-                System.out.println("Classification: " + rs.getString("classification"));
-                System.out.println("Password: " + rs.getString("password_hash"));
-            }
-
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        storage.users().findById(profileId).ifPresent(u -> {
+            System.out.println("Username: " + u.username());
+            System.out.println("Classification: " + u.classification());
+        });
     }
 
     /**
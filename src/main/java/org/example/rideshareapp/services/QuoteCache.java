@@ -0,0 +1,123 @@
+package org.example.rideshareapp.services;
+
+import org.example.rideshareapp.util.LruCache;
+
+/**
+ * Cache of route quotes between pairs of points, shared by everyone asking
+ * for the same trip.
+ *
+ * <p>Points are quantized to a grid of {@code cellMeters} cells, and a quote
+ * is cached under its origin and destination cells, so riders leaving the
+ * same block for the same block share one routing result. A cached quote is
+ * the route computed for whichever pair of points first missed in those
+ * cells, so its distance can be off by up to about a cell diagonal at each
+ * end.</p>
+ *
+ * <p>Entries expire after {@code ttlMillis}, so quotes that depend on
+ * conditions such as traffic age out, and the least recently used entries
+ * are evicted beyond the capacity. Both are handled by {@link LruCache},
+ * which also counts hits and misses.</p>
+ *
+ * <p>The shared cache is sized from {@code rideshare.quote.cache} (default
+ * 10000), {@code rideshare.quote.ttlMs} (default five minutes) and
+ * {@code rideshare.quote.cellMeters} (default 100).</p>
+ */
+public class QuoteCache {
+
+    /**
+     * A cached route quote.
+     *
+     * @param miles   route length
+     * @param seconds travel time, or {@code NaN} if unknown
+     */
+    public record Quote(double miles, double seconds) {
+    }
+
+    /** Origin and destination cells. */
+    private record Key(long from, long to) {
+    }
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final LruCache<Key, Quote> cache;
+    private final double cellDegrees;
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity   maximum cached quotes
+     * @param ttlMillis  time after which a quote is recomputed
+     * @param cellMeters size of the quantization grid
+     */
+    public QuoteCache(int capacity, long ttlMillis, int cellMeters) {
+        if (cellMeters <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellMeters);
+        }
+        this.cache = new LruCache<>(capacity, ttlMillis);
+        this.cellDegrees = cellMeters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Creates a cache configured from system properties.
+     *
+     * @return a new cache
+     */
+    public static QuoteCache fromProperties() {
+        return new QuoteCache(
+                Integer.getInteger("rideshare.quote.cache", 10_000),
+                Long.getLong("rideshare.quote.ttlMs", 5 * 60_000L),
+                Integer.getInteger("rideshare.quote.cellMeters", 100));
+    }
+
+    /**
+     * Returns the cached quote for a trip, if there is a live one.
+     *
+     * @param fromLat origin latitude
+     * @param fromLon origin longitude
+     * @param toLat   destination latitude
+     * @param toLon   destination longitude
+     * @return the quote, or null on a miss
+     */
+    public Quote get(double fromLat, double fromLon, double toLat, double toLon) {
+        return cache.get(key(fromLat, fromLon, toLat, toLon));
+    }
+
+    /**
+     * Caches a quote for a trip.
+     *
+     * @param fromLat origin latitude
+     * @param fromLon origin longitude
+     * @param toLat   destination latitude
+     * @param toLon   destination longitude
+     * @param quote   the quote
+     */
+    public void put(double fromLat, double fromLon, double toLat, double toLon, Quote quote) {
+        cache.put(key(fromLat, fromLon, toLat, toLon), quote);
+    }
+
+    /**
+     * Drops every cached quote, for example after the road network changes.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the cache's hit, miss, eviction and expiry counts.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats stats() {
+        return cache.stats();
+    }
+
+    private Key key(double fromLat, double fromLon, double toLat, double toLon) {
+        return new Key(cell(fromLat, fromLon), cell(toLat, toLon));
+    }
+
+    private long cell(double lat, double lon) {
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lon / cellDegrees);
+        return (row << 32) | (col & 0xFFFFFFFFL);
+    }
+}
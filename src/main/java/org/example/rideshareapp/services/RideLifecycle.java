@@ -0,0 +1,420 @@
+package org.example.rideshareapp.services;
+
+import org.example.rideshareapp.db.Ride;
+import org.example.rideshareapp.db.RideEvent;
+import org.example.rideshareapp.db.RideStatus;
+import org.example.rideshareapp.storage.RideStore;
+import org.example.rideshareapp.storage.Storage;
+import org.example.rideshareapp.util.LruCache;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The lifecycle of every ride, as an explicit state machine.
+ *
+ * <pre>
+ *   REQUESTED --match--&gt; MATCHED --accept--&gt; ACCEPTED --start--&gt; IN_PROGRESS --complete--&gt; COMPLETED
+ *       ^                  |
+ *       +-----decline------+
+ *
+ *   REQUESTED, MATCHED or ACCEPTED --cancel--&gt; CANCELLED
+ * </pre>
+ *
+ * <p>A driver may also accept a ride that is still {@code REQUESTED}.</p>
+ *
+ * <p>Each ride's current state is an immutable {@link State} in an
+ * {@link AtomicReference}. A transition reads it, checks that the move is
+ * allowed, and swaps in the next state with compare-and-set, retrying only
+ * if another transition on the same ride got there first. No lock is taken,
+ * and rides never contend with each other. When an accept and a cancel race,
+ * exactly one of them succeeds and the other sees the new state and is
+ * refused.</p>
+ *
+ * <p>Every successful transition appends a {@link RideEvent} to the ride
+ * store. On SQLite that is the {@link org.example.rideshareapp.db.RideJournal},
+ * so the change is durable when the append returns and reaches the
+ * {@code rides} table in the background. Each transition takes the next
+ * version number of its ride, and appends its event only after the event of
+ * the version before it, so a ride's events are journaled in the order its
+ * transitions happened. That wait is only ever on a transition that has
+ * already succeeded and is appending.</p>
+ *
+ * <p>Rides that end are moved to a bounded cache of finished rides, so late
+ * transitions on them are still refused. A ride that is not in memory, for
+ * example one requested before a restart, is loaded from the store the first
+ * time it is used. Listeners added with {@link #addListener} see every
+ * transition, on the thread that made it.</p>
+ *
+ * <p>Rides with a driver are also indexed by driver, so a driver's
+ * {@link #currentRide} is found without looking through every active ride.
+ * The index is updated in the same order as the ride's events are
+ * appended.</p>
+ *
+ * <p>One lifecycle should be shared by everything that changes rides in a
+ * given store. The shared lifecycle uses {@link Storage#current()} and keeps
+ * {@code rideshare.cache.finishedRides} (default 10000) finished rides.</p>
+ */
+public class RideLifecycle {
+
+    /**
+     * A ride's state at one point in its lifecycle.
+     *
+     * @param rideId      the ride
+     * @param riderId     the rider who requested it
+     * @param driverId    the matched or assigned driver, or 0
+     * @param status      where the ride is in its lifecycle
+     * @param origin      the pickup address
+     * @param destination the drop-off address
+     * @param fare        the fare in USD
+     * @param version     number of transitions made in this process, starting at 1 for a new ride
+     */
+    public record State(long rideId, int riderId, int driverId, RideStatus status,
+                        String origin, String destination, double fare, long version) {
+
+        /**
+         * Returns whether the ride has ended, as completed or cancelled.
+         *
+         * @return true if no further transitions are possible
+         */
+        public boolean isFinished() {
+            return status == RideStatus.COMPLETED || status == RideStatus.CANCELLED;
+        }
+
+        private State next(RideStatus status, int driverId) {
+            return new State(rideId, riderId, driverId, status, origin, destination, fare, version + 1);
+        }
+    }
+
+    /**
+     * A successful transition.
+     *
+     * @param before the state it started from
+     * @param after  the state it moved to
+     */
+    public record Transition(State before, State after) {
+    }
+
+    private static final class Holder {
+        static final RideLifecycle INSTANCE = new RideLifecycle(Storage.current().rides(),
+                Integer.getInteger("rideshare.cache.finishedRides", 10_000));
+    }
+
+    /** A ride in memory. */
+    private static final class Entry {
+        final AtomicReference<State> state;
+        /** Version of the last state whose event has been appended. */
+        final AtomicLong appended;
+
+        Entry(State state, long appended) {
+            this.state = new AtomicReference<>(state);
+            this.appended = new AtomicLong(appended);
+        }
+    }
+
+    private final RideStore store;
+    private final ConcurrentHashMap<Long, Entry> active = new ConcurrentHashMap<>();
+    /**
+     * Rides each driver is matched to, on their way to or driving, by driver. The sets are
+     * immutable and replaced whole; dispatch gives a driver one ride at a time, so they hold one.
+     */
+    private final ConcurrentHashMap<Integer, Set<Long>> byDriver = new ConcurrentHashMap<>();
+    private final LruCache<Long, Entry> finished;
+    private final List<Consumer<Transition>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a lifecycle over a ride store.
+     *
+     * @param store         where ride events are appended and rides are loaded from
+     * @param finishedRides number of finished rides to remember
+     */
+    public RideLifecycle(RideStore store, int finishedRides) {
+        this.store = store;
+        this.finished = new LruCache<>(finishedRides);
+    }
+
+    /**
+     * Returns the process-wide lifecycle.
+     *
+     * @return the shared lifecycle
+     */
+    public static RideLifecycle shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Records a new ride as {@code REQUESTED}.
+     *
+     * @param riderId     the rider
+     * @param origin      the pickup address
+     * @param destination the drop-off address
+     * @param distance    the ride distance in miles
+     * @param fare        the fare in USD
+     * @return the new ride's state
+     * @throws IllegalArgumentException if the store cannot record the ride, e.g. an address is too long
+     */
+    public State request(int riderId, String origin, String destination, double distance, double fare) {
+        long rideId = store.nextRideId();
+        State state = new State(rideId, riderId, 0, RideStatus.REQUESTED, origin, destination, fare, 1);
+        Entry entry = new Entry(state, 0);
+        // Appended before it is visible, so a rejected request leaves nothing behind.
+        append(entry, null, state, RideEvent.requested(rideId, riderId, origin, destination, distance, fare));
+        active.put(rideId, entry);
+        notify(new Transition(null, state));
+        return state;
+    }
+
+    /**
+     * Offers a waiting ride to a driver: {@code REQUESTED} to {@code MATCHED}.
+     *
+     * @param rideId   the ride
+     * @param driverId the driver
+     * @return the transition, or empty if the ride is not waiting for a driver
+     */
+    public Optional<Transition> match(long rideId, int driverId) {
+        return transition(rideId, RideEvent.Type.MATCHED, s -> s.status() == RideStatus.REQUESTED
+                ? s.next(RideStatus.MATCHED, driverId) : null);
+    }
+
+    /**
+     * A driver accepts a ride offered to them, or one still waiting for a
+     * driver: {@code MATCHED} or {@code REQUESTED} to {@code ACCEPTED}.
+     *
+     * @param rideId   the ride
+     * @param driverId the driver
+     * @return the transition, or empty if the ride cannot be accepted by this driver
+     */
+    public Optional<Transition> accept(long rideId, int driverId) {
+        return transition(rideId, RideEvent.Type.ACCEPTED, s -> s.status() == RideStatus.REQUESTED
+                || (s.status() == RideStatus.MATCHED && s.driverId() == driverId)
+                ? s.next(RideStatus.ACCEPTED, driverId) : null);
+    }
+
+    /**
+     * A driver turns down a ride offered to them: {@code MATCHED} back to
+     * {@code REQUESTED}.
+     *
+     * @param rideId   the ride
+     * @param driverId the driver
+     * @return the transition, or empty if the ride is not offered to this driver
+     */
+    public Optional<Transition> decline(long rideId, int driverId) {
+        return transition(rideId, RideEvent.Type.DECLINED, s -> s.status() == RideStatus.MATCHED
+                && s.driverId() == driverId ? s.next(RideStatus.REQUESTED, 0) : null);
+    }
+
+    /**
+     * The driver picks the rider up: {@code ACCEPTED} to {@code IN_PROGRESS}.
+     *
+     * @param rideId   the ride
+     * @param driverId the driver
+     * @return the transition, or empty if the ride is not accepted by this driver
+     */
+    public Optional<Transition> start(long rideId, int driverId) {
+        return transition(rideId, RideEvent.Type.STARTED, s -> s.status() == RideStatus.ACCEPTED
+                && s.driverId() == driverId ? s.next(RideStatus.IN_PROGRESS, driverId) : null);
+    }
+
+    /**
+     * The driver drops the rider off: {@code IN_PROGRESS} to {@code COMPLETED}.
+     *
+     * @param rideId   the ride
+     * @param driverId the driver
+     * @return the transition, or empty if this driver does not have the ride in progress
+     */
+    public Optional<Transition> complete(long rideId, int driverId) {
+        return transition(rideId, RideEvent.Type.COMPLETED, s -> s.status() == RideStatus.IN_PROGRESS
+                && s.driverId() == driverId ? s.next(RideStatus.COMPLETED, driverId) : null);
+    }
+
+    /**
+     * The rider cancels a ride before pickup: {@code REQUESTED},
+     * {@code MATCHED} or {@code ACCEPTED} to {@code CANCELLED}. The
+     * cancelled state keeps the driver, if there was one.
+     *
+     * @param rideId  the ride
+     * @param riderId the rider, who must be the one who requested the ride
+     * @return the transition, or empty if the ride is not the rider's or can no longer be cancelled
+     */
+    public Optional<Transition> cancel(long rideId, int riderId) {
+        return transition(rideId, RideEvent.Type.CANCELLED, s -> s.riderId() == riderId
+                && (s.status() == RideStatus.REQUESTED || s.status() == RideStatus.MATCHED
+                || s.status() == RideStatus.ACCEPTED) ? s.next(RideStatus.CANCELLED, s.driverId()) : null);
+    }
+
+    /**
+     * Returns a ride's current state.
+     *
+     * @param rideId the ride
+     * @return the state, or empty if the ride does not exist
+     */
+    public Optional<State> state(long rideId) {
+        Entry entry = entry(rideId);
+        return entry == null ? Optional.empty() : Optional.of(entry.state.get());
+    }
+
+    /**
+     * Returns the ride a driver is currently matched to, on their way to, or
+     * driving, among rides in memory, in constant time.
+     *
+     * @param driverId the driver
+     * @return the ride's state, or empty if the driver has none
+     */
+    public Optional<State> currentRide(int driverId) {
+        for (long rideId : byDriver.getOrDefault(driverId, Set.of())) {
+            Entry entry = active.get(rideId);
+            // A ride loaded from the store can be indexed just after it moved on, so check it is still theirs.
+            State s = entry == null ? null : entry.state.get();
+            if (s != null && s.driverId() == driverId && !s.isFinished()) {
+                return Optional.of(s);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds a listener called after every transition, including new requests
+     * (whose {@link Transition#before()} is null), on the thread that made
+     * the transition. Listeners should return quickly.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<Transition> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Moves a ride to the state {@code step} returns for its current state,
+     * or does nothing if {@code step} returns null.
+     */
+    private Optional<Transition> transition(long rideId, RideEvent.Type type, UnaryOperator<State> step) {
+        Entry entry = entry(rideId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        State before;
+        State after;
+        do {
+            before = entry.state.get();
+            after = step.apply(before);
+            if (after == null) {
+                return Optional.empty();
+            }
+        } while (!entry.state.compareAndSet(before, after));
+
+        // A declined ride has no driver any more; its event names the driver who declined.
+        int driverId = type == RideEvent.Type.DECLINED ? before.driverId() : after.driverId();
+        append(entry, before, after, RideEvent.of(type, rideId, driverId));
+        if (after.isFinished()) {
+            // Into the finished cache first, so a concurrent lookup that misses
+            // the active map still finds the ride instead of reloading it.
+            finished.put(rideId, entry);
+            active.remove(rideId, entry);
+        }
+        Transition t = new Transition(before, after);
+        notify(t);
+        return Optional.of(t);
+    }
+
+    /**
+     * Appends a transition's event, and indexes it by driver, once the previous
+     * version's event is in; {@code before} is null for a new ride.
+     */
+    private void append(Entry entry, State before, State after, RideEvent event) {
+        long version = after.version();
+        for (int spins = 0; entry.appended.get() != version - 1; spins++) {
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        try {
+            store.append(event);
+        } finally {
+            index(before, after);
+            entry.appended.set(version);
+        }
+    }
+
+    /** Moves a ride in the driver index; called in version order for each ride. */
+    private void index(State before, State after) {
+        boolean held = after.driverId() != 0 && !after.isFinished();
+        if (before != null && before.driverId() != 0 && (!held || before.driverId() != after.driverId())) {
+            byDriver.computeIfPresent(before.driverId(), (d, rides) -> without(rides, before.rideId()));
+        }
+        if (held) {
+            byDriver.compute(after.driverId(), (d, rides) -> with(rides, after.rideId()));
+        }
+    }
+
+    private static Set<Long> with(Set<Long> rides, long rideId) {
+        if (rides == null) {
+            return Set.of(rideId);
+        }
+        if (rides.contains(rideId)) {
+            return rides;
+        }
+        Set<Long> more = new HashSet<>(rides);
+        more.add(rideId);
+        return Set.copyOf(more);
+    }
+
+    /** The set without the ride, or null once it is empty, which removes the driver. */
+    private static Set<Long> without(Set<Long> rides, long rideId) {
+        if (!rides.contains(rideId)) {
+            return rides;
+        }
+        Set<Long> fewer = new HashSet<>(rides);
+        fewer.remove(rideId);
+        return fewer.isEmpty() ? null : Set.copyOf(fewer);
+    }
+
+    private void notify(Transition t) {
+        for (Consumer<Transition> listener : listeners) {
+            try {
+                listener.accept(t);
+            } catch (RuntimeException e) {
+                System.err.println("[RIDES] Listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Entry entry(long rideId) {
+        // Active before finished: a ride leaves the active map only after it is in the finished cache.
+        Entry entry = active.get(rideId);
+        if (entry == null) {
+            entry = finished.get(rideId);
+        }
+        if (entry != null) {
+            return entry;
+        }
+        Optional<Ride> ride = store.findById(rideId);
+        if (ride.isEmpty()) {
+            return null;
+        }
+        Ride r = ride.get();
+        Entry loaded = new Entry(new State(r.id(), r.riderId(), r.driverId(), r.status(),
+                r.origin(), r.destination(), r.fare(), 0), 0);
+        if (loaded.state.get().isFinished()) {
+            finished.put(rideId, loaded);
+            return loaded;
+        }
+        Entry existing = active.putIfAbsent(rideId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        if (r.driverId() != 0) {
+            byDriver.compute(r.driverId(), (d, rides) -> with(rides, rideId));
+        }
+        return loaded;
+    }
+}
@@ -1,12 +1,22 @@
 package org.example.rideshareapp.services;
 
+import org.example.rideshareapp.db.RideEvent;
+import org.example.rideshareapp.storage.Storage;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Service class responsible for managing ride requests within the
  * RideShare application.
  * <p>
  * The {@code RideRequestService} coordinates ride creation, cost
  * validation, and payment authorization by integrating with both
- * {@link PaymentService} and {@link MapService}. This implementation
+ * {@link PaymentService} and {@link MapService}. Rides move through the
+ * {@link RideLifecycle}, which records every change as a ride event. This implementation
  * is a simplified version that simulates backend ride processing.
  * </p>
  *
@@ -14,11 +24,13 @@ package org.example.rideshareapp.services;
  * <ul>
  *   <li>Coordinate between payment and mapping services when a ride is requested.</li>
  *   <li>Validate ride request parameters such as destination, cost, and payment method.</li>
+ *   <li>Hand requested rides to the {@link DispatchEngine}, which assigns drivers.</li>
+ *   <li>Cancel rides on the rider's behalf and refund them.</li>
  * </ul>
  *
  * <p>
  * In a production system, this service would communicate with a backend
- * server, handle driver assignment, and track ride status updates.
+ * server and track ride status updates.
  * </p>
  */
 public class RideRequestService {
@@ -29,51 +41,201 @@ public class RideRequestService {
     /** Reference to the application's map service for location and route management. */
     private final MapService mapService;
 
+    /** Lifecycle of every ride, which records ride events. */
+    private final RideLifecycle lifecycle;
+
+    /** Engine that assigns drivers to requested rides. */
+    private final DispatchEngine dispatch;
+
     /**
      * Constructs a new {@code RideRequestService} instance with
-     * dependencies on the {@link PaymentService} and {@link MapService}.
+     * dependencies on the {@link PaymentService} and {@link MapService},
+     * backed by the shared ride lifecycle and dispatch engine.
      *
      * @param paymentService the payment service used for validating and processing ride charges
      * @param mapService the map service used for managing ride destinations and distances
      */
     public RideRequestService(PaymentService paymentService, MapService mapService) {
+        this(paymentService, mapService, RideLifecycle.shared(), DispatchEngine.shared());
+    }
+
+    /**
+     * Constructs a new {@code RideRequestService} instance backed by the
+     * given storage engine, with its own ride lifecycle and dispatch engine
+     * over that storage.
+     *
+     * @param paymentService the payment service used for validating and processing ride charges
+     * @param mapService the map service used for managing ride destinations and distances
+     * @param storage the storage engine that records ride events
+     */
+    public RideRequestService(PaymentService paymentService, MapService mapService, Storage storage) {
+        this(paymentService, mapService, storage, new RideLifecycle(storage.rides(),
+                Integer.getInteger("rideshare.cache.finishedRides", 10_000)));
+    }
+
+    private RideRequestService(PaymentService paymentService, MapService mapService, Storage storage,
+                               RideLifecycle lifecycle) {
+        this(paymentService, mapService, lifecycle,
+                DispatchEngine.fromProperties(new DriverService(storage, lifecycle), lifecycle));
+    }
+
+    /**
+     * Constructs a new {@code RideRequestService} instance backed by the
+     * given ride lifecycle and dispatch engine, which should dispatch rides
+     * of that lifecycle.
+     *
+     * @param paymentService the payment service used for validating and processing ride charges
+     * @param mapService the map service used for managing ride destinations and distances
+     * @param lifecycle the lifecycle of every ride
+     * @param dispatch the engine that assigns drivers to requested rides
+     */
+    public RideRequestService(PaymentService paymentService, MapService mapService, RideLifecycle lifecycle,
+                              DispatchEngine dispatch) {
         this.paymentService = paymentService;
         this.mapService = mapService;
+        this.lifecycle = lifecycle;
+        this.dispatch = dispatch;
     }
 
     /**
      * Submits a new ride request to the system.
      * <p>
-     * This method validates the provided payment method and simulates
-     * a successful payment transaction for the ride.
+     * This method validates the provided payment method, simulates
+     * a successful payment transaction for the ride and appends a
+     * {@link RideEvent.Type#REQUESTED} event to the ride store. On SQLite
+     * the event goes to the ride journal, which stores the ride in the
+     * {@code rides} table in the background. The ride is then queued for a
+     * driver without waiting for one, and is cancelled and refunded if none
+     * accepts it in time, as with {@link #requestAndDispatch}. A pickup
+     * location with no known position is refused before the card is charged:
+     * no driver could be dispatched to it, so the ride would wait forever.
      * </p>
      *
+     * @param riderId the user ID of the rider requesting the ride
+     * @param origin the {@link MapService.Location} where the rider is picked up
      * @param destination the {@link MapService.Location} where the user wishes to travel
      * @param rideCost the total ride cost in USD
      * @param rideDistance the total ride distance in miles
      * @param card the {@link PaymentService.PaymentMethod} used for the transaction
-     * @return {@code true} if the payment was processed successfully;
-     *         {@code false} if the card is invalid or the transaction failed
+     * @return {@code true} if the ride was paid for and queued for a driver;
+     *         {@code false} if the card is invalid, the transaction failed,
+     *         the pickup location has no known position or the ride could not
+     *         be recorded or dispatched (the card is then refunded)
      */
-    public boolean requestRide(MapService.Location destination,
+    public boolean requestRide(int riderId,
+                               MapService.Location origin,
+                               MapService.Location destination,
                                double rideCost,
                                double rideDistance,
                                PaymentService.PaymentMethod card) {
-        if (card == null) return false;
-        return paymentService.processPayment(card, rideCost);
+        return !requestAndDispatch(riderId, origin, destination, rideCost, rideDistance, card)
+                .isCompletedExceptionally();
+    }
+
+    /**
+     * Submits a new ride request and waits for a driver, without blocking.
+     * <p>
+     * The ride is paid for and recorded as in {@link #requestRide}, then
+     * queued with the {@link DispatchEngine}. The returned future completes
+     * with the assigned driver, or fails with an
+     * {@link IllegalArgumentException} if the pickup location has no known
+     * position or an address is too long to record (the card is then
+     * refunded), an {@link IllegalStateException} if the payment was not
+     * processed or dispatch is shut down (the ride is then cancelled and
+     * refunded), a {@link TimeoutException} if no driver accepted the ride in
+     * time (the ride is then cancelled and refunded), or a
+     * {@link CancellationException} if the ride was cancelled first.
+     * </p>
+     *
+     * @param riderId the user ID of the rider requesting the ride
+     * @param origin the {@link MapService.Location} where the rider is picked up
+     * @param destination the {@link MapService.Location} where the user wishes to travel
+     * @param rideCost the total ride cost in USD
+     * @param rideDistance the total ride distance in miles
+     * @param card the {@link PaymentService.PaymentMethod} used for the transaction
+     * @return the future driver assignment
+     */
+    public CompletableFuture<DispatchEngine.Assignment> requestAndDispatch(int riderId,
+                                                                         MapService.Location origin,
+                                                                         MapService.Location destination,
+                                                                         double rideCost,
+                                                                         double rideDistance,
+                                                                         PaymentService.PaymentMethod card) {
+        if (origin == null || !origin.hasCoordinates()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("The pickup location has no known position"));
+        }
+        long rideId;
+        try {
+            rideId = placeRide(riderId, origin, destination, rideCost, rideDistance, card);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (rideId < 0) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The payment was not processed"));
+        }
+        CompletableFuture<DispatchEngine.Assignment> assignment;
+        try {
+            assignment = dispatch.submit(rideId, riderId, origin.getLatitude(), origin.getLongitude());
+        } catch (IllegalArgumentException e) {
+            assignment = CompletableFuture.failedFuture(e);
+        }
+        return assignment.whenComplete((a, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                // dispatch has already cancelled the ride
+                paymentService.processRefund(card, rideCost);
+            } else if (cause != null && !(cause instanceof CancellationException)) {
+                // dispatch gave up on a ride still waiting, e.g. on shutdown; the rider's own cancel refunds itself
+                cancelRideRequest(riderId, rideId, card);
+            }
+        });
+    }
+
+    /**
+     * Charges the card and records the ride; returns its ID, or -1 if the
+     * payment failed. If the ride cannot be recorded the card is refunded.
+     */
+    private long placeRide(int riderId,
+                           MapService.Location origin,
+                           MapService.Location destination,
+                           double rideCost,
+                           double rideDistance,
+                           PaymentService.PaymentMethod card) {
+        if (card == null) return -1;
+        if (!paymentService.processPayment(card, rideCost)) return -1;
+
+        try {
+            return lifecycle.request(riderId,
+                    origin == null ? null : origin.address,
+                    destination.address,
+                    rideDistance,
+                    rideCost).rideId();
+        } catch (RuntimeException e) {
+            paymentService.processRefund(card, rideCost);
+            throw e;
+        }
     }
 
     /**
-     * Cancels an active ride request.
+     * Cancels a ride request on the rider's behalf and refunds the fare.
      * <p>
-     * This is a placeholder method for future implementation. In a
-     * production system, it would update the ride’s backend status
-     * and initiate a refund if applicable.
+     * A ride can be cancelled until it starts: while it waits for a driver,
+     * while a driver is being offered it and after a driver accepted it, in
+     * which case the driver is available again. The cancellation is recorded
+     * as a {@link RideEvent.Type#CANCELLED} event. If a driver accepts the
+     * ride at the same moment, exactly one of the two wins.
      * </p>
      *
-     * @param rideRequest an identifier or object representing the current ride request
+     * @param riderId the user ID of the rider who requested the ride
+     * @param rideId the ride to cancel
+     * @param card the {@link PaymentService.PaymentMethod} to refund
+     * @return {@code true} if the ride was cancelled; {@code false} if it is
+     *         not this rider's, has already started or has ended
      */
-    public void cancelRideRequest(Object rideRequest) {
-        ///placeholder for future implementation
+    public boolean cancelRideRequest(int riderId, long rideId, PaymentService.PaymentMethod card) {
+        Optional<RideLifecycle.Transition> cancelled = lifecycle.cancel(rideId, riderId);
+        cancelled.ifPresent(t -> paymentService.processRefund(card, t.before().fare()));
+        return cancelled.isPresent();
     }
 }
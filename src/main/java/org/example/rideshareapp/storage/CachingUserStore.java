@@ -0,0 +1,114 @@
+package org.example.rideshareapp.storage;
+
+import org.example.rideshareapp.util.LruCache;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache in front of another {@link UserStore}.
+ *
+ * <p>Each user is cached once, by ID, in a bounded {@link LruCache}, so
+ * repeated profile views and logins are answered from memory. A second
+ * cache maps usernames to IDs. A name lookup only counts as a hit if the
+ * user it points to is cached and still has that username, so a rename or
+ * an eviction can never leave a stale user reachable under its old name.
+ * Every write through this store invalidates the user's entry once the
+ * underlying write has returned. A lookup that raced with a write does not
+ * cache its result: each miss notes the invalidation count before loading
+ * and only stores the row if, checked under the cache's lock, no
+ * invalidation has started since. Misses are not cached, so new users
+ * become visible straight away.</p>
+ *
+ * <p>Writes made without going through this store (for example by the bulk
+ * loader, which only inserts) are not seen until the entry is evicted.</p>
+ */
+public class CachingUserStore implements UserStore {
+
+    private final UserStore delegate;
+    private final LruCache<Integer, User> users;
+    private final LruCache<String, Integer> ids;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache in front of a store.
+     *
+     * @param delegate the store to read from and write to
+     * @param capacity maximum cached users
+     */
+    public CachingUserStore(UserStore delegate, int capacity) {
+        this.delegate = delegate;
+        this.users = new LruCache<>(capacity);
+        this.ids = new LruCache<>(capacity);
+    }
+
+    @Override
+    public Optional<User> findById(int id) {
+        User cached = users.get(id);
+        return cached != null ? Optional.of(cached) : load(() -> delegate.findById(id));
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        Integer id = ids.get(username);
+        User cached = id == null ? null : users.peek(id);
+        if (cached != null && cached.username().equals(username)) {
+            return Optional.of(cached);
+        }
+        return load(() -> delegate.findByUsername(username));
+    }
+
+    @Override
+    public Optional<User> create(String username, String passwordHash, String classification) {
+        return delegate.create(username, passwordHash, classification);
+    }
+
+    @Override
+    public boolean update(User user) {
+        try {
+            return delegate.update(user);
+        } finally {
+            invalidate(user.id());
+        }
+    }
+
+    @Override
+    public boolean replacePasswordHash(int id, String expected, String newValue) {
+        try {
+            return delegate.replacePasswordHash(id, expected, newValue);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    /**
+     * Returns the cache's hit, miss and eviction counts, over lookups by ID
+     * and by username.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats stats() {
+        LruCache.Stats a = users.stats();
+        LruCache.Stats b = ids.stats();
+        return new LruCache.Stats(a.hits() + b.hits(), a.misses() + b.misses(), a.evictions(),
+                a.expired(), a.size(), a.capacity());
+    }
+
+    private Optional<User> load(Supplier<Optional<User>> loader) {
+        long before = invalidations.get();
+        Optional<User> loaded = loader.get();
+        if (loaded.isPresent()) {
+            User u = loaded.get();
+            users.putIf(u.id(), u, () -> invalidations.get() == before);
+            ids.putIf(u.username(), u.id(), () -> invalidations.get() == before);
+        }
+        return loaded;
+    }
+
+    // The user's entry is enough: name entries are checked against it on every lookup.
+    private void invalidate(int id) {
+        invalidations.incrementAndGet();
+        users.invalidate(id);
+    }
+}
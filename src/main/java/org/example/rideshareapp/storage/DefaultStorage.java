@@ -0,0 +1,14 @@
+package org.example.rideshareapp.storage;
+
+/**
+ * Holds the engine returned by {@link Storage#current()}, created on first use.
+ */
+final class DefaultStorage {
+
+    static final Storage INSTANCE = "memory".equalsIgnoreCase(System.getProperty("rideshare.storage"))
+            ? new InMemoryStorage()
+            : new SqliteStorage();
+
+    private DefaultStorage() {
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.rideshareapp.storage;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores driver details and availability.
+ *
+ * <p>Availability changes take effect immediately for readers; the future
+ * from {@link #persisted()} completes once they are durable.</p>
+ */
+public interface DriverStore {
+
+    /**
+     * Adds a driver for an existing user.
+     *
+     * @param driverId    the driver's user ID
+     * @param plateNumber the vehicle plate
+     * @param available   whether the driver starts out available
+     * @return a future completed once the driver is stored
+     */
+    CompletableFuture<Void> create(int driverId, String plateNumber, boolean available);
+
+    /**
+     * Changes a driver's plate number.
+     *
+     * @param driverId    the driver's user ID
+     * @param plateNumber the new plate
+     * @return a future completed once the change is stored
+     */
+    CompletableFuture<Void> setPlateNumber(int driverId, String plateNumber);
+
+    /**
+     * Returns a driver's plate number.
+     *
+     * @param driverId the driver's user ID
+     * @return the plate, if the driver exists
+     */
+    Optional<String> plateNumber(int driverId);
+
+    /**
+     * Returns whether the driver exists.
+     *
+     * @param driverId the driver's user ID
+     * @return true if the driver exists
+     */
+    boolean isKnown(int driverId);
+
+    /**
+     * Returns whether the driver is available.
+     *
+     * @param driverId the driver's user ID
+     * @return true if the driver is available
+     */
+    boolean isAvailable(int driverId);
+
+    /**
+     * Sets a driver's availability.
+     *
+     * @param driverId  the driver's user ID
+     * @param available the new availability
+     * @return the previous availability
+     * @throws RuntimeException if the driver does not exist
+     */
+    boolean setAvailable(int driverId, boolean available);
+
+    /**
+     * Flips a driver's availability.
+     *
+     * @param driverId the driver's user ID
+     * @return the new availability
+     * @throws RuntimeException if the driver does not exist
+     */
+    boolean toggleAvailability(int driverId);
+
+    /**
+     * Returns the IDs of all available drivers, in ascending order.
+     *
+     * @return the available driver IDs
+     */
+    int[] availableDrivers();
+
+    /**
+     * Returns a future that completes once every availability change made
+     * so far is durable.
+     *
+     * @return the future
+     */
+    CompletableFuture<Void> persisted();
+}
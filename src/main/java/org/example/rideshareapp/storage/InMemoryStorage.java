@@ -0,0 +1,469 @@
+package org.example.rideshareapp.storage;
+
+import org.example.rideshareapp.db.AvailabilityStore.ConcurrentBitSet;
+import org.example.rideshareapp.db.Ride;
+import org.example.rideshareapp.db.RideEvent;
+import org.example.rideshareapp.db.RideStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage engine that keeps everything on the heap.
+ *
+ * <p>Nothing is persisted, so this engine is for load tests and profiling:
+ * running the services against it shows how much of their latency comes
+ * from the database. Users, drivers and rides live in
+ * {@link StripedLongMap}s keyed by primitive IDs, driver availability in
+ * lock-free bitsets, saved locations in per-user maps, and ride events are
+ * applied synchronously. Every
+ * future returned by this engine is already complete.</p>
+ */
+public class InMemoryStorage implements Storage {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final UserStore users;
+    private final DriverStore drivers;
+    private final RideStore rides;
+    private final LocationStore locations = new Locations();
+
+    /**
+     * Creates an engine with four lock stripes per core.
+     */
+    public InMemoryStorage() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param stripes lock stripes per map, rounded up to a power of two
+     */
+    public InMemoryStorage(int stripes) {
+        this.users = new Users(stripes);
+        this.drivers = new Drivers(stripes);
+        this.rides = new Rides(stripes);
+    }
+
+    @Override
+    public UserStore users() {
+        return users;
+    }
+
+    @Override
+    public DriverStore drivers() {
+        return drivers;
+    }
+
+    @Override
+    public RideStore rides() {
+        return rides;
+    }
+
+    @Override
+    public LocationStore locations() {
+        return locations;
+    }
+
+    private static final class Users implements UserStore {
+
+        private final StripedLongMap<User> byId;
+        private final ConcurrentHashMap<String, User> byName = new ConcurrentHashMap<>();
+        private final AtomicInteger lastId = new AtomicInteger();
+
+        Users(int stripes) {
+            this.byId = new StripedLongMap<>(stripes);
+        }
+
+        @Override
+        public Optional<User> findById(int id) {
+            return Optional.ofNullable(byId.get(id));
+        }
+
+        @Override
+        public Optional<User> findByUsername(String username) {
+            return Optional.ofNullable(byName.get(username));
+        }
+
+        @Override
+        public Optional<User> create(String username, String passwordHash, String classification) {
+            User user = new User(lastId.incrementAndGet(), username, passwordHash, classification);
+            if (byName.putIfAbsent(username, user) != null) {
+                return Optional.empty();
+            }
+            byId.put(user.id(), user);
+            return Optional.of(user);
+        }
+
+        @Override
+        public boolean update(User user) {
+            boolean[] updated = {false};
+            // The stripe lock serialises updates to the same user, so the
+            // name index is swapped consistently.
+            byId.compute(user.id(), old -> {
+                if (old == null) {
+                    return null;
+                }
+                if (!old.username().equals(user.username())) {
+                    if (byName.putIfAbsent(user.username(), user) != null) {
+                        return null;
+                    }
+                    byName.remove(old.username(), old);
+                } else {
+                    byName.put(user.username(), user);
+                }
+                updated[0] = true;
+                return user;
+            });
+            return updated[0];
+        }
+
+        @Override
+        public boolean replacePasswordHash(int id, String expected, String newValue) {
+            boolean[] replaced = {false};
+            byId.compute(id, old -> {
+                if (old == null || !old.passwordHash().equals(expected)) {
+                    return null;
+                }
+                User user = new User(old.id(), old.username(), newValue, old.classification());
+                byName.put(user.username(), user);
+                replaced[0] = true;
+                return user;
+            });
+            return replaced[0];
+        }
+    }
+
+    private static final class Drivers implements DriverStore {
+
+        private final StripedLongMap<String> plates;
+        private final ConcurrentBitSet known = new ConcurrentBitSet();
+        private final ConcurrentBitSet available = new ConcurrentBitSet();
+        private final AtomicInteger availableCount = new AtomicInteger();
+
+        Drivers(int stripes) {
+            this.plates = new StripedLongMap<>(stripes);
+        }
+
+        @Override
+        public CompletableFuture<Void> create(int driverId, String plateNumber, boolean isAvailable) {
+            plates.put(driverId, plateNumber == null ? "" : plateNumber);
+            known.set(driverId);
+            apply(driverId, isAvailable);
+            return DONE;
+        }
+
+        @Override
+        public CompletableFuture<Void> setPlateNumber(int driverId, String plateNumber) {
+            if (known.get(driverId)) {
+                plates.put(driverId, plateNumber == null ? "" : plateNumber);
+            }
+            return DONE;
+        }
+
+        @Override
+        public Optional<String> plateNumber(int driverId) {
+            return Optional.ofNullable(plates.get(driverId));
+        }
+
+        @Override
+        public boolean isKnown(int driverId) {
+            return known.get(driverId);
+        }
+
+        @Override
+        public boolean isAvailable(int driverId) {
+            return available.get(driverId);
+        }
+
+        @Override
+        public boolean setAvailable(int driverId, boolean isAvailable) {
+            requireKnown(driverId);
+            return apply(driverId, isAvailable);
+        }
+
+        @Override
+        public boolean toggleAvailability(int driverId) {
+            requireKnown(driverId);
+            boolean now = available.flip(driverId);
+            availableCount.addAndGet(now ? 1 : -1);
+            return now;
+        }
+
+        @Override
+        public int[] availableDrivers() {
+            return available.toArray(availableCount.get());
+        }
+
+        @Override
+        public CompletableFuture<Void> persisted() {
+            return DONE;
+        }
+
+        private boolean apply(int driverId, boolean isAvailable) {
+            boolean previous = isAvailable ? available.set(driverId) : available.clear(driverId);
+            if (previous != isAvailable) {
+                availableCount.addAndGet(isAvailable ? 1 : -1);
+            }
+            return previous;
+        }
+
+        private void requireKnown(int driverId) {
+            if (!known.get(driverId)) {
+                throw new RuntimeException("Driver not found");
+            }
+        }
+    }
+
+    private static final class Locations implements LocationStore {
+
+        /** Each user's places in insertion order; a user's map is its own lock. */
+        private final ConcurrentHashMap<Integer, LinkedHashMap<String, SavedLocation>> byUser =
+                new ConcurrentHashMap<>();
+
+        @Override
+        public List<SavedLocation> findByUser(int userId) {
+            LinkedHashMap<String, SavedLocation> places = byUser.get(userId);
+            if (places == null) {
+                return List.of();
+            }
+            synchronized (places) {
+                return new ArrayList<>(places.values());
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> save(SavedLocation location) {
+            LinkedHashMap<String, SavedLocation> places = byUser.computeIfAbsent(location.userId(), k -> new LinkedHashMap<>());
+            synchronized (places) {
+                places.put(location.label(), location);
+            }
+            return DONE;
+        }
+
+        @Override
+        public CompletableFuture<Void> replace(String oldLabel, SavedLocation location) {
+            LinkedHashMap<String, SavedLocation> places = byUser.get(location.userId());
+            if (places != null) {
+                synchronized (places) {
+                    if (places.remove(oldLabel) != null) {
+                        places.put(location.label(), location);
+                    }
+                }
+            }
+            return DONE;
+        }
+
+        @Override
+        public CompletableFuture<Void> delete(int userId, String label) {
+            LinkedHashMap<String, SavedLocation> places = byUser.get(userId);
+            if (places != null) {
+                synchronized (places) {
+                    places.remove(label);
+                }
+            }
+            return DONE;
+        }
+    }
+
+    private static final class Rides implements RideStore {
+
+        private final AtomicLong lastId = new AtomicLong();
+        private final StripedLongMap<Ride> byId;
+        private final StripedLongMap<IdList> byRider;
+        private final StripedLongMap<IdList> byDriver;
+        private final Map<RideStatus, ConcurrentSkipListSet<Long>> byStatus = new EnumMap<>(RideStatus.class);
+
+        Rides(int stripes) {
+            this.byId = new StripedLongMap<>(stripes);
+            this.byRider = new StripedLongMap<>(stripes);
+            this.byDriver = new StripedLongMap<>(stripes);
+            for (RideStatus s : RideStatus.values()) {
+                byStatus.put(s, new ConcurrentSkipListSet<>());
+            }
+        }
+
+        @Override
+        public long nextRideId() {
+            return lastId.incrementAndGet();
+        }
+
+        @Override
+        public void append(RideEvent e) {
+            if (e.type() == RideEvent.Type.REQUESTED) {
+                Ride ride = new Ride(e.rideId(), e.riderId(), 0, e.origin(), e.destination(),
+                        e.distance(), e.fare(), RideStatus.REQUESTED, e.timestamp(), 0, 0, 0);
+                if (byId.putIfAbsent(e.rideId(), ride) == null) {
+                    lastId.accumulateAndGet(e.rideId(), Math::max);
+                    index(byRider, e.riderId(), e.rideId());
+                    byStatus.get(RideStatus.REQUESTED).add(e.rideId());
+                }
+                return;
+            }
+
+            RideStatus[] previous = new RideStatus[1];
+            int[] previousDriver = new int[1];
+            Ride updated = byId.compute(e.rideId(), r -> {
+                if (r == null) {
+                    return null;
+                }
+                previous[0] = r.status();
+                previousDriver[0] = r.driverId();
+                return apply(r, e);
+            });
+            if (updated == null) {
+                return;
+            }
+            if (previous[0] != updated.status()) {
+                byStatus.get(previous[0]).remove(e.rideId());
+                byStatus.get(updated.status()).add(e.rideId());
+            }
+            // A ride belongs to a driver from the offer on, and stops belonging to one who declines it.
+            switch (e.type()) {
+                case MATCHED, ACCEPTED -> index(byDriver, e.driverId(), e.rideId());
+                case DECLINED -> unindex(byDriver, previousDriver[0], e.rideId());
+                default -> { }
+            }
+        }
+
+        @Override
+        public Optional<Ride> findById(long rideId) {
+            return Optional.ofNullable(byId.get(rideId));
+        }
+
+        @Override
+        public List<Ride> findByRider(int riderId, long beforeId, int limit) {
+            return resolve(byRider.read(riderId, ids -> ids == null ? null : ids.before(beforeId, limit)));
+        }
+
+        @Override
+        public List<Ride> findByDriver(int driverId, long beforeId, int limit) {
+            return resolve(byDriver.read(driverId, ids -> ids == null ? null : ids.before(beforeId, limit)));
+        }
+
+        @Override
+        public List<Ride> findByStatus(RideStatus status, long afterId, int limit) {
+            List<Ride> out = new ArrayList<>(Math.min(limit, 64));
+            for (Long id : byStatus.get(status).tailSet(afterId, false)) {
+                if (out.size() == limit) {
+                    break;
+                }
+                Ride r = byId.get(id);
+                // Status sets are updated after the ride, so skip entries
+                // caught mid-transition.
+                if (r != null && r.status() == status) {
+                    out.add(r);
+                }
+            }
+            return out;
+        }
+
+        private List<Ride> resolve(long[] ids) {
+            if (ids == null) {
+                return List.of();
+            }
+            List<Ride> out = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                Ride r = byId.get(id);
+                if (r != null) {
+                    out.add(r);
+                }
+            }
+            return out;
+        }
+
+        private static void index(StripedLongMap<IdList> map, int key, long rideId) {
+            map.compute(key, ids -> {
+                IdList list = ids == null ? new IdList() : ids;
+                list.add(rideId);
+                return list;
+            });
+        }
+
+        private static void unindex(StripedLongMap<IdList> map, int key, long rideId) {
+            map.compute(key, ids -> {
+                if (ids != null) {
+                    ids.remove(rideId);
+                }
+                return ids;
+            });
+        }
+
+        /** Same field changes the journal projector makes in the rides table. */
+        private static Ride apply(Ride r, RideEvent e) {
+            return switch (e.type()) {
+                case MATCHED -> new Ride(r.id(), r.riderId(), e.driverId(), r.origin(), r.destination(),
+                        r.distance(), r.fare(), RideStatus.MATCHED,
+                        r.requestedAt(), r.acceptedAt(), r.startedAt(), r.completedAt());
+                case DECLINED -> new Ride(r.id(), r.riderId(), 0, r.origin(), r.destination(),
+                        r.distance(), r.fare(), RideStatus.REQUESTED,
+                        r.requestedAt(), r.acceptedAt(), r.startedAt(), r.completedAt());
+                case ACCEPTED -> new Ride(r.id(), r.riderId(), e.driverId(), r.origin(), r.destination(),
+                        r.distance(), r.fare(), RideStatus.ACCEPTED,
+                        r.requestedAt(), e.timestamp(), r.startedAt(), r.completedAt());
+                case STARTED -> new Ride(r.id(), r.riderId(), r.driverId(), r.origin(), r.destination(),
+                        r.distance(), r.fare(), RideStatus.IN_PROGRESS,
+                        r.requestedAt(), r.acceptedAt(), e.timestamp(), r.completedAt());
+                case COMPLETED, CANCELLED -> new Ride(r.id(), r.riderId(), r.driverId(), r.origin(),
+                        r.destination(), r.distance(), r.fare(),
+                        e.type() == RideEvent.Type.COMPLETED ? RideStatus.COMPLETED : RideStatus.CANCELLED,
+                        r.requestedAt(), r.acceptedAt(), r.startedAt(), e.timestamp());
+                case REQUESTED -> r;
+            };
+        }
+    }
+
+    /**
+     * Sorted, growable list of ride IDs. Only used under its stripe's lock.
+     */
+    private static final class IdList {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+
+        /** Returns up to {@code limit} IDs below {@code beforeId}, largest first. */
+        long[] before(long beforeId, int limit) {
+            int end = Arrays.binarySearch(ids, 0, size, beforeId);
+            end = end >= 0 ? end : -end - 1;
+            int n = Math.max(0, Math.min(limit, end));
+            long[] out = new long[n];
+            for (int i = 0; i < n; i++) {
+                out[i] = ids[end - 1 - i];
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.rideshareapp.storage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores each user's saved places, keyed by user and label.
+ */
+public interface LocationStore {
+
+    /**
+     * Returns all of a user's saved places, oldest first.
+     *
+     * @param userId the user's ID
+     * @return the places
+     */
+    List<SavedLocation> findByUser(int userId);
+
+    /**
+     * Saves a place, replacing any place the user already has under the
+     * same label.
+     *
+     * @param location the place
+     * @return a future completed once the place is stored
+     */
+    CompletableFuture<Void> save(SavedLocation location);
+
+    /**
+     * Replaces the place stored under {@code oldLabel}, which may involve a
+     * change of label.
+     *
+     * @param oldLabel the label the place is stored under now
+     * @param location the new values
+     * @return a future completed once the change is stored
+     */
+    CompletableFuture<Void> replace(String oldLabel, SavedLocation location);
+
+    /**
+     * Deletes a place.
+     *
+     * @param userId the user's ID
+     * @param label  the place's label
+     * @return a future completed once the place is gone
+     */
+    CompletableFuture<Void> delete(int userId, String label);
+}
@@ -0,0 +1,70 @@
+package org.example.rideshareapp.storage;
+
+import org.example.rideshareapp.db.Ride;
+import org.example.rideshareapp.db.RideEvent;
+import org.example.rideshareapp.db.RideStatus;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Records ride lifecycle events and answers ride queries.
+ *
+ * <p>Implementations may apply events asynchronously, so a query right
+ * after {@link #append} is not guaranteed to see it. List queries use the
+ * same keyset cursors as {@link org.example.rideshareapp.db.RideRepository}.</p>
+ */
+public interface RideStore {
+
+    /**
+     * Reserves a new ride ID.
+     *
+     * @return an ID no other ride will get
+     */
+    long nextRideId();
+
+    /**
+     * Records a ride event.
+     *
+     * @param event the event
+     */
+    void append(RideEvent event);
+
+    /**
+     * Looks up a ride by ID.
+     *
+     * @param rideId the ride ID
+     * @return the ride, if it exists
+     */
+    Optional<Ride> findById(long rideId);
+
+    /**
+     * Returns a page of a rider's rides, newest first.
+     *
+     * @param riderId  the rider's user ID
+     * @param beforeId cursor: only rides with a smaller ID are returned
+     * @param limit    maximum rides to return
+     * @return the rides on this page
+     */
+    List<Ride> findByRider(int riderId, long beforeId, int limit);
+
+    /**
+     * Returns a page of a driver's rides, newest first.
+     *
+     * @param driverId the driver's user ID
+     * @param beforeId cursor: only rides with a smaller ID are returned
+     * @param limit    maximum rides to return
+     * @return the rides on this page
+     */
+    List<Ride> findByDriver(int driverId, long beforeId, int limit);
+
+    /**
+     * Returns a page of rides in a given status, oldest first.
+     *
+     * @param status  the status to filter on
+     * @param afterId cursor: only rides with a larger ID are returned
+     * @param limit   maximum rides to return
+     * @return the rides on this page
+     */
+    List<Ride> findByStatus(RideStatus status, long afterId, int limit);
+}
@@ -0,0 +1,13 @@
+package org.example.rideshareapp.storage;
+
+/**
+ * A row of the {@code saved_locations} table.
+ *
+ * @param userId    the owning user's ID
+ * @param label     the user's name for the place, unique per user
+ * @param address   the street address
+ * @param latitude  latitude in decimal degrees, or {@code NaN} if unknown
+ * @param longitude longitude in decimal degrees, or {@code NaN} if unknown
+ */
+public record SavedLocation(int userId, String label, String address, double latitude, double longitude) {
+}
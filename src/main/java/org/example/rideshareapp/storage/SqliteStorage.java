@@ -0,0 +1,372 @@
+package org.example.rideshareapp.storage;
+
+import org.example.rideshareapp.db.AvailabilityStore;
+import org.example.rideshareapp.db.DB;
+import org.example.rideshareapp.db.Ride;
+import org.example.rideshareapp.db.RideEvent;
+import org.example.rideshareapp.db.RideRepository;
+import org.example.rideshareapp.db.RideStatus;
+import org.example.rideshareapp.util.LruCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage engine backed by the SQLite database in {@link DB}.
+ *
+ * <p>User lookups use the read-only pool, behind a {@link CachingUserStore},
+ * and user writes a pooled write connection. Plate numbers are cached the
+ * same way. Driver writes go through the shared writer, availability
+ * through the {@link AvailabilityStore}, and ride events through the
+ * {@link org.example.rideshareapp.db.RideJournal}. Saved locations are read
+ * from the read-only pool and written through the shared writer.</p>
+ */
+public class SqliteStorage implements Storage {
+
+    private final CachingUserStore users =
+            new CachingUserStore(new Users(), Integer.getInteger("rideshare.cache.users", 10_000));
+    private final Drivers drivers = new Drivers(Integer.getInteger("rideshare.cache.drivers", 10_000));
+    private final RideStore rides = new Rides(new RideRepository());
+    private final LocationStore locations = new Locations();
+
+    @Override
+    public UserStore users() {
+        return users;
+    }
+
+    @Override
+    public DriverStore drivers() {
+        return drivers;
+    }
+
+    @Override
+    public RideStore rides() {
+        return rides;
+    }
+
+    @Override
+    public LocationStore locations() {
+        return locations;
+    }
+
+    /**
+     * Returns the user cache's counters.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats userCacheStats() {
+        return users.stats();
+    }
+
+    /**
+     * Returns the plate number cache's counters.
+     *
+     * @return the statistics
+     */
+    public LruCache.Stats driverCacheStats() {
+        return drivers.plates.stats();
+    }
+
+    private static final class Users implements UserStore {
+
+        private static final String COLUMNS = "id, username, password_hash, classification";
+
+        @Override
+        public Optional<User> findById(int id) {
+            return find("SELECT " + COLUMNS + " FROM users WHERE id = ?", id);
+        }
+
+        @Override
+        public Optional<User> findByUsername(String username) {
+            return find("SELECT " + COLUMNS + " FROM users WHERE username = ?", username);
+        }
+
+        @Override
+        public Optional<User> create(String username, String passwordHash, String classification) {
+            String sql = "INSERT OR IGNORE INTO users (username, password_hash, classification) VALUES (?, ?, ?)";
+            try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, username);
+                ps.setString(2, passwordHash);
+                ps.setString(3, classification);
+                if (ps.executeUpdate() == 0) {
+                    return Optional.empty();
+                }
+                try (Statement s = c.createStatement();
+                     ResultSet rs = s.executeQuery("SELECT last_insert_rowid()")) {
+                    rs.next();
+                    return Optional.of(new User(rs.getInt(1), username, passwordHash, classification));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean update(User user) {
+            String sql = "UPDATE OR IGNORE users SET username = ?, password_hash = ?, classification = ? WHERE id = ?";
+            try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, user.username());
+                ps.setString(2, user.passwordHash());
+                ps.setString(3, user.classification());
+                ps.setInt(4, user.id());
+                return ps.executeUpdate() > 0;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean replacePasswordHash(int id, String expected, String newValue) {
+            String sql = "UPDATE users SET password_hash = ? WHERE id = ? AND password_hash = ?";
+            try (Connection c = DB.get(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, newValue);
+                ps.setInt(2, id);
+                ps.setString(3, expected);
+                return ps.executeUpdate() > 0;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static Optional<User> find(String sql, Object key) {
+            try (Connection c = DB.read(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setObject(1, key);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new User(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final class Drivers implements DriverStore {
+
+        /** Plate numbers by driver ID; missing drivers are not cached. */
+        final LruCache<Integer, String> plates;
+
+        Drivers(int cacheSize) {
+            this.plates = new LruCache<>(cacheSize);
+        }
+
+        @Override
+        public CompletableFuture<Void> create(int driverId, String plateNumber, boolean available) {
+            String sql = "INSERT OR IGNORE INTO drivers (driverId, plateNumber, availabilityStatus) VALUES (?, ?, ?)";
+            return DB.writer().<Void>submit(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setInt(1, driverId);
+                    ps.setString(2, plateNumber);
+                    ps.setInt(3, available ? 1 : 0);
+                    ps.executeUpdate();
+                }
+                return null;
+            }).thenRun(() -> {
+                plates.invalidate(driverId);
+                DB.availability().register(driverId, available);
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> setPlateNumber(int driverId, String plateNumber) {
+            String sql = "UPDATE drivers SET plateNumber = ? WHERE driverId = ?";
+            plates.invalidate(driverId);
+            return DB.writer().<Void>submit(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, plateNumber);
+                    ps.setInt(2, driverId);
+                    ps.executeUpdate();
+                }
+                return null;
+            }).whenComplete((v, e) -> plates.invalidate(driverId));
+        }
+
+        @Override
+        public Optional<String> plateNumber(int driverId) {
+            String cached = plates.get(driverId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+            Optional<String> plate = loadPlateNumber(driverId);
+            plate.ifPresent(p -> plates.put(driverId, p));
+            return plate;
+        }
+
+        private Optional<String> loadPlateNumber(int driverId) {
+            try (Connection c = DB.read();
+                 PreparedStatement ps = c.prepareStatement("SELECT plateNumber FROM drivers WHERE driverId = ?")) {
+                ps.setInt(1, driverId);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? Optional.ofNullable(rs.getString(1)) : Optional.empty();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean isKnown(int driverId) {
+            return DB.availability().isKnown(driverId);
+        }
+
+        @Override
+        public boolean isAvailable(int driverId) {
+            return DB.availability().isAvailable(driverId);
+        }
+
+        @Override
+        public boolean setAvailable(int driverId, boolean available) {
+            return DB.availability().set(driverId, available);
+        }
+
+        @Override
+        public boolean toggleAvailability(int driverId) {
+            return DB.availability().toggle(driverId);
+        }
+
+        @Override
+        public int[] availableDrivers() {
+            return DB.availability().availableDrivers();
+        }
+
+        @Override
+        public CompletableFuture<Void> persisted() {
+            return DB.availability().persisted();
+        }
+    }
+
+    private static final class Rides implements RideStore {
+
+        private final RideRepository repository;
+
+        Rides(RideRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public long nextRideId() {
+            return DB.journal().nextRideId();
+        }
+
+        @Override
+        public void append(RideEvent event) {
+            DB.journal().append(event);
+        }
+
+        @Override
+        public Optional<Ride> findById(long rideId) {
+            return repository.findById(rideId);
+        }
+
+        @Override
+        public List<Ride> findByRider(int riderId, long beforeId, int limit) {
+            return repository.findByRider(riderId, beforeId, limit);
+        }
+
+        @Override
+        public List<Ride> findByDriver(int driverId, long beforeId, int limit) {
+            return repository.findByDriver(driverId, beforeId, limit);
+        }
+
+        @Override
+        public List<Ride> findByStatus(RideStatus status, long afterId, int limit) {
+            return repository.findByStatus(status, afterId, limit);
+        }
+    }
+
+    private static final class Locations implements LocationStore {
+
+        @Override
+        public List<SavedLocation> findByUser(int userId) {
+            String sql = "SELECT label, address, latitude, longitude FROM saved_locations WHERE user_id = ? ORDER BY id";
+            try (Connection c = DB.read(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                List<SavedLocation> out = new ArrayList<>();
+                while (rs.next()) {
+                    out.add(new SavedLocation(userId, rs.getString(1), rs.getString(2),
+                            coordinate(rs, 3), coordinate(rs, 4)));
+                }
+                return out;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> save(SavedLocation location) {
+            String sql = """
+                    INSERT INTO saved_locations (user_id, label, address, latitude, longitude)
+                    VALUES (?, ?, ?, ?, ?)
+                    ON CONFLICT (user_id, label) DO UPDATE
+                      SET address = excluded.address, latitude = excluded.latitude, longitude = excluded.longitude
+                    """;
+            return DB.writer().<Void>submit(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setInt(1, location.userId());
+                    ps.setString(2, location.label());
+                    ps.setString(3, location.address());
+                    setCoordinate(ps, 4, location.latitude());
+                    setCoordinate(ps, 5, location.longitude());
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> replace(String oldLabel, SavedLocation location) {
+            String sql = """
+                    UPDATE OR REPLACE saved_locations SET label = ?, address = ?, latitude = ?, longitude = ?
+                    WHERE user_id = ? AND label = ?
+                    """;
+            return DB.writer().<Void>submit(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, location.label());
+                    ps.setString(2, location.address());
+                    setCoordinate(ps, 3, location.latitude());
+                    setCoordinate(ps, 4, location.longitude());
+                    ps.setInt(5, location.userId());
+                    ps.setString(6, oldLabel);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> delete(int userId, String label) {
+            String sql = "DELETE FROM saved_locations WHERE user_id = ? AND label = ?";
+            return DB.writer().<Void>submit(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setInt(1, userId);
+                    ps.setString(2, label);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+
+        // Unknown coordinates are stored as NULL, since SQLite has no NaN.
+        private static void setCoordinate(PreparedStatement ps, int index, double value) throws SQLException {
+            if (Double.isNaN(value)) {
+                ps.setNull(index, Types.REAL);
+            } else {
+                ps.setDouble(index, value);
+            }
+        }
+
+        private static double coordinate(ResultSet rs, int index) throws SQLException {
+            double value = rs.getDouble(index);
+            return rs.wasNull() ? Double.NaN : value;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.rideshareapp.storage;
+
+/**
+ * The persistence layer the services run against.
+ *
+ * <p>{@link SqliteStorage} is the normal engine. {@link InMemoryStorage}
+ * keeps everything on the heap and exists so the service layer can be
+ * load-tested and profiled without the database in the way. The engine
+ * used by default is chosen with the {@code rideshare.storage} system
+ * property ({@code sqlite} or {@code memory}).</p>
+ */
+public interface Storage {
+
+    /**
+     * Returns the user store.
+     *
+     * @return the user store
+     */
+    UserStore users();
+
+    /**
+     * Returns the driver store.
+     *
+     * @return the driver store
+     */
+    DriverStore drivers();
+
+    /**
+     * Returns the ride store.
+     *
+     * @return the ride store
+     */
+    RideStore rides();
+
+    /**
+     * Returns the saved location store.
+     *
+     * @return the saved location store
+     */
+    LocationStore locations();
+
+    /**
+     * Returns the process-wide storage engine picked by the
+     * {@code rideshare.storage} system property.
+     *
+     * @return the default engine
+     */
+    static Storage current() {
+        return DefaultStorage.INSTANCE;
+    }
+}
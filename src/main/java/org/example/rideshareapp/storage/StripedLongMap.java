@@ -0,0 +1,157 @@
+package org.example.rideshareapp.storage;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent map from {@code long} keys to values, split into independently
+ * locked stripes.
+ *
+ * <p>Each stripe is an open-addressing table of primitive keys, so lookups
+ * neither box the key nor allocate. A key's stripe is picked from the high
+ * bits of its hash and its slot from the low bits. Writers on different
+ * stripes never contend, and readers share a stripe's read lock. Entries are
+ * never removed, which matches how users and rides are stored.</p>
+ *
+ * @param <V> the value type
+ */
+final class StripedLongMap<V> {
+
+    private final Stripe<V>[] stripes;
+    private final int mask;
+
+    /**
+     * Creates a map.
+     *
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    StripedLongMap(int stripes) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.mask = n - 1;
+    }
+
+    V get(long key) {
+        long h = hash(key);
+        Stripe<V> s = stripes[(int) (h >>> 32) & mask];
+        s.lock.readLock().lock();
+        try {
+            return s.get(key, (int) h);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    /** Runs {@code fn} on the value (or null) while holding the stripe's read lock. */
+    <R> R read(long key, Function<? super V, R> fn) {
+        long h = hash(key);
+        Stripe<V> s = stripes[(int) (h >>> 32) & mask];
+        s.lock.readLock().lock();
+        try {
+            return fn.apply(s.get(key, (int) h));
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    /** Stores the value and returns the previous one, or null. */
+    V put(long key, V value) {
+        return compute(key, old -> value, true);
+    }
+
+    /** Stores the value unless the key is present, returning the existing value or null. */
+    V putIfAbsent(long key, V value) {
+        return compute(key, old -> old == null ? value : old, true);
+    }
+
+    /**
+     * Replaces the value with {@code fn(old)} while holding the stripe's
+     * write lock. {@code old} is null if the key is absent; returning null
+     * leaves the map unchanged.
+     *
+     * @return the new value
+     */
+    V compute(long key, UnaryOperator<V> fn) {
+        return compute(key, fn, false);
+    }
+
+    private V compute(long key, UnaryOperator<V> fn, boolean returnOld) {
+        long h = hash(key);
+        Stripe<V> s = stripes[(int) (h >>> 32) & mask];
+        s.lock.writeLock().lock();
+        try {
+            V old = s.get(key, (int) h);
+            V value = fn.apply(old);
+            if (value != null && value != old) {
+                s.put(key, (int) h, value);
+            }
+            return returnOld ? old : value;
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /** One lock and one linear-probing table. */
+    private static final class Stripe<V> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        long[] keys = new long[16];
+        Object[] values = new Object[16];
+        int size;
+
+        @SuppressWarnings("unchecked")
+        V get(long key, int h) {
+            int m = keys.length - 1;
+            for (int i = h & m; ; i = (i + 1) & m) {
+                Object v = values[i];
+                if (v == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return (V) v;
+                }
+            }
+        }
+
+        void put(long key, int h, V value) {
+            int m = keys.length - 1;
+            for (int i = h & m; ; i = (i + 1) & m) {
+                if (values[i] == null) {
+                    keys[i] = key;
+                    values[i] = value;
+                    if (++size * 4 > keys.length * 3) {
+                        grow();
+                    }
+                    return;
+                }
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void grow() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], (int) hash(oldKeys[i]), (V) oldValues[i]);
+                }
+            }
+        }
+    }
+}
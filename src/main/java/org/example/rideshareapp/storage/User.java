@@ -0,0 +1,12 @@
+package org.example.rideshareapp.storage;
+
+/**
+ * A row of the {@code users} table.
+ *
+ * @param id             the user ID
+ * @param username       the login name
+ * @param passwordHash   the stored password value
+ * @param classification {@code Rider} or {@code Driver}
+ */
+public record User(int id, String username, String passwordHash, String classification) {
+}
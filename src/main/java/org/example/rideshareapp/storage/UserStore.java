@@ -0,0 +1,54 @@
+package org.example.rideshareapp.storage;
+
+import java.util.Optional;
+
+/**
+ * Stores user accounts.
+ */
+public interface UserStore {
+
+    /**
+     * Looks up a user by ID.
+     *
+     * @param id the user ID
+     * @return the user, if it exists
+     */
+    Optional<User> findById(int id);
+
+    /**
+     * Looks up a user by login name.
+     *
+     * @param username the username
+     * @return the user, if it exists
+     */
+    Optional<User> findByUsername(String username);
+
+    /**
+     * Creates a user.
+     *
+     * @param username       the username, which must be unique
+     * @param passwordHash   the password value to store
+     * @param classification the user classification
+     * @return the new user, or empty if the username is already taken
+     */
+    Optional<User> create(String username, String passwordHash, String classification);
+
+    /**
+     * Replaces the stored fields of an existing user.
+     *
+     * @param user the user, matched by ID
+     * @return true if the user exists and the new username is free
+     */
+    boolean update(User user);
+
+    /**
+     * Replaces a user's password value, but only if it still holds the
+     * expected one, so a concurrent profile update is never overwritten.
+     *
+     * @param id       the user ID
+     * @param expected the value the caller read
+     * @param newValue the value to store
+     * @return true if the value was replaced
+     */
+    boolean replacePasswordHash(int id, String expected, String newValue);
+}
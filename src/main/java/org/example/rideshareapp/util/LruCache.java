@@ -0,0 +1,312 @@
+package org.example.rideshareapp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Bounded, thread-safe least-recently-used cache with optional expiry.
+ *
+ * <p>The cache is split into segments, each an access-ordered
+ * {@link LinkedHashMap} behind its own lock, so threads working on
+ * different keys rarely contend. Each segment holds an equal share of the
+ * capacity and evicts its own least recently used entry when full. Entries
+ * can also be given a time to live, after which they are treated as absent
+ * and dropped on the next access.</p>
+ *
+ * <p>Hit, miss, eviction and expiry counts are kept in {@link LongAdder}s and
+ * reported by {@link #stats()}.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Snapshot of a cache's counters.
+     *
+     * @param hits      lookups that found a live entry
+     * @param misses    lookups that did not
+     * @param evictions entries dropped to make room
+     * @param expired   entries dropped because their time to live passed
+     * @param size      entries currently held
+     * @param capacity  maximum entries
+     */
+    public record Stats(long hits, long misses, long evictions, long expired, int size, int capacity) {
+
+        /**
+         * Returns the fraction of lookups that were hits.
+         *
+         * @return the hit rate between 0 and 1, or 0 if there were no lookups
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final int capacity;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * Creates a cache whose entries never expire.
+     *
+     * @param capacity maximum entries
+     */
+    public LruCache(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity  maximum entries
+     * @param ttlMillis time to live per entry, or 0 for none
+     */
+    public LruCache(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity  maximum entries
+     * @param ttlMillis time to live per entry, or 0 for none
+     * @param segments  number of independently locked segments, rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(int capacity, long ttlMillis, int segments) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        // Small caches get fewer segments so each still holds a useful number of entries.
+        int n = Integer.highestOneBit(Math.max(1, Math.min(segments, capacity / 8)));
+        this.segments = new Segment[n];
+        int perSegment = (capacity + n - 1) / n;
+        for (int i = 0; i < n; i++) {
+            this.segments[i] = new Segment<>(perSegment, evictions);
+        }
+        this.mask = n - 1;
+        this.capacity = perSegment * n;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * Returns the cached value for a key and marks it recently used.
+     *
+     * @param key the key
+     * @return the value, or null if absent or expired
+     */
+    public V get(K key) {
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            Entry<V> e = s.map.get(key);
+            if (e != null && ttlNanos > 0 && System.nanoTime() - e.createdAt > ttlNanos) {
+                s.map.remove(key);
+                expired.increment();
+                e = null;
+            }
+            if (e == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return e.value;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value for a key, like {@link #get}, but without
+     * counting a hit or miss. For lookups the cache's own bookkeeping makes,
+     * which should not show up in its hit rate.
+     *
+     * @param key the key
+     * @return the value, or null if absent or expired
+     */
+    public V peek(K key) {
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            Entry<V> e = s.map.get(key);
+            if (e == null || (ttlNanos > 0 && System.nanoTime() - e.createdAt > ttlNanos)) {
+                return null;
+            }
+            return e.value;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a value, evicting the segment's least recently used entry if
+     * it is full. A null value removes the key.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            s.map.put(key, new Entry<>(value, ttlNanos > 0 ? System.nanoTime() : 0));
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Stores a value only if {@code condition} holds, checked while holding
+     * the key's segment lock. Callers use this to skip caching a value that
+     * a concurrent {@link #invalidate} has made stale.
+     *
+     * @param key       the key
+     * @param value     the value
+     * @param condition checked under the lock just before storing
+     * @return true if the value was stored
+     */
+    public boolean putIf(K key, V value, BooleanSupplier condition) {
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            if (!condition.getAsBoolean()) {
+                return false;
+            }
+            s.map.put(key, new Entry<>(value, ttlNanos > 0 ? System.nanoTime() : 0));
+            return true;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value for a key, creating and storing it first if
+     * it is absent or expired. {@code factory} runs under the key's segment
+     * lock, so it should be cheap; concurrent callers for one key get the
+     * same value.
+     *
+     * @param key     the key
+     * @param factory creates the value
+     * @return the cached or new value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            Entry<V> e = s.map.get(key);
+            if (e != null && (ttlNanos == 0 || System.nanoTime() - e.createdAt <= ttlNanos)) {
+                return e.value;
+            }
+            value = factory.apply(key);
+            s.map.put(key, new Entry<>(value, ttlNanos > 0 ? System.nanoTime() : 0));
+            return value;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        Segment<K, V> s = segmentFor(key);
+        s.lock.lock();
+        try {
+            s.map.remove(key);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every entry. Counters are kept.
+     */
+    public void clear() {
+        for (Segment<K, V> s : segments) {
+            s.lock.lock();
+            try {
+                s.map.clear();
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries held, including any that have expired
+     * but not been looked up since.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        int n = 0;
+        for (Segment<K, V> s : segments) {
+            s.lock.lock();
+            try {
+                n += s.map.size();
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the cache's counters.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expired.sum(), size(), capacity);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h * 0x9E3779B9 >>> 16) & mask];
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+
+    /** One lock and one access-ordered map. */
+    private static final class Segment<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<K, Entry<V>> map;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<>(Math.min(capacity, 1024) * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
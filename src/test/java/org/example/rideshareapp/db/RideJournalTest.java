@@ -0,0 +1,314 @@
+package org.example.rideshareapp.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RideJournalTest {
+
+    @TempDir
+    Path dir;
+
+    /** A migrated SQLite file with its own pool and writer. */
+    private static final class Database implements AutoCloseable {
+        final ConnectionPool pool;
+        final WriteQueue writer;
+
+        Database(Path file) throws SQLException {
+            pool = new ConnectionPool("test", "jdbc:sqlite:" + file, new Properties(),
+                    List.of("PRAGMA busy_timeout = 5000"), 2, 0, 5_000, 60_000, 60_000, 16);
+            writer = new WriteQueue(pool, 64, 1_000);
+            try (Connection c = pool.borrow()) {
+                SchemaMigrator.migrate(c);
+            }
+        }
+
+        RideJournal open(Path journalDir, int segmentBytes) throws SQLException {
+            RideJournal journal = new RideJournal(journalDir, segmentBytes, writer);
+            try (Connection c = pool.borrow()) {
+                journal.open(c);
+            }
+            return journal;
+        }
+
+        /** Makes every projection fail, so the checkpoint stays where it is. */
+        void breakProjection() throws SQLException {
+            execute("ALTER TABLE journal_checkpoint RENAME TO journal_checkpoint_off");
+        }
+
+        void restoreProjection() throws SQLException {
+            execute("ALTER TABLE journal_checkpoint_off RENAME TO journal_checkpoint");
+        }
+
+        long rides() throws SQLException {
+            return queryLong("SELECT COUNT(*) FROM rides");
+        }
+
+        long checkpoint() throws SQLException {
+            return queryLong("SELECT COALESCE(MAX(sequence), 0) FROM journal_checkpoint");
+        }
+
+        String origin(long rideId) throws SQLException {
+            try (Connection c = pool.borrow();
+                 PreparedStatement ps = c.prepareStatement("SELECT origin FROM rides WHERE id = ?")) {
+                ps.setLong(1, rideId);
+                ResultSet rs = ps.executeQuery();
+                assertTrue(rs.next(), "ride " + rideId + " was not projected");
+                return rs.getString(1);
+            }
+        }
+
+        private void execute(String sql) throws SQLException {
+            try (Connection c = pool.borrow(); Statement s = c.createStatement()) {
+                s.execute(sql);
+            }
+        }
+
+        private long queryLong(String sql) throws SQLException {
+            try (Connection c = pool.borrow(); Statement s = c.createStatement()) {
+                ResultSet rs = s.executeQuery(sql);
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+            pool.close();
+        }
+    }
+
+    private static RideEvent ride(long rideId, String origin) {
+        return RideEvent.requested(rideId, 7, origin, "Destination " + rideId, 3.5, 12.25);
+    }
+
+    /** Size of a journaled request made by {@link #ride}, per the record layout. */
+    private static int recordSize(long rideId, String origin) {
+        int originBytes = origin == null ? 0 : origin.getBytes(StandardCharsets.UTF_8).length;
+        int destinationBytes = ("Destination " + rideId).getBytes(StandardCharsets.UTF_8).length;
+        return 57 + 2 + originBytes + 2 + destinationBytes + 4;
+    }
+
+    private static void awaitProjected(RideJournal journal) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (journal.lag() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "still " + journal.lag() + " events unprojected");
+            Thread.sleep(20);
+        }
+    }
+
+    private List<Path> segments(Path journalDir) throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    /** Overwrites bytes of a segment file. */
+    private static void overwrite(Path segment, long offset, byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    @Test
+    void recoveredEventsKeepTheirAddressesInFull() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        String longOrigin = "Ünïcødé Straße ".repeat(300);
+        try (Database first = new Database(dir.resolve("first.db"))) {
+            RideJournal journal = first.open(journalDir, 1 << 20);
+            journal.append(ride(1, longOrigin));
+            journal.append(ride(2, null));
+            journal.append(ride(3, ""));
+            awaitProjected(journal);
+            journal.close();
+        }
+        // A database that has seen none of them replays all three from the journal.
+        try (Database second = new Database(dir.resolve("second.db"))) {
+            RideJournal journal = second.open(journalDir, 1 << 20);
+            awaitProjected(journal);
+            assertEquals(3, second.rides());
+            assertEquals(longOrigin, second.origin(1));
+            assertNull(second.origin(2));
+            assertEquals("", second.origin(3));
+            assertEquals(4, journal.append(ride(4, "After")));
+            journal.close();
+        }
+    }
+
+    @Test
+    void truncatesATornTail() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        long offset = 0;
+        try (Database first = new Database(dir.resolve("first.db"))) {
+            RideJournal journal = first.open(journalDir, 1 << 20);
+            for (long id = 1; id <= 5; id++) {
+                journal.append(ride(id, "Origin " + id));
+                if (id < 5) {
+                    offset += recordSize(id, "Origin " + id);
+                }
+            }
+            awaitProjected(journal);
+            journal.close();
+        }
+        // The last record was cut short: everything after its first 20 bytes never reached the disk.
+        overwrite(segments(journalDir).get(0), offset + 20, new byte[recordSize(5, "Origin 5") - 20]);
+
+        try (Database second = new Database(dir.resolve("second.db"))) {
+            RideJournal journal = second.open(journalDir, 1 << 20);
+            awaitProjected(journal);
+            assertEquals(4, second.rides());
+            // The next event takes the torn record's place and sequence.
+            assertEquals(5, journal.append(ride(6, "Replacement")));
+            awaitProjected(journal);
+            journal.close();
+        }
+        try (Database third = new Database(dir.resolve("third.db"))) {
+            RideJournal journal = third.open(journalDir, 1 << 20);
+            awaitProjected(journal);
+            assertEquals(5, third.rides());
+            assertEquals("Replacement", third.origin(6));
+            journal.close();
+        }
+    }
+
+    @Test
+    void stopsAtTheFirstCorruptRecord() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        long offset = 0;
+        try (Database first = new Database(dir.resolve("first.db"))) {
+            RideJournal journal = first.open(journalDir, 1 << 20);
+            for (long id = 1; id <= 5; id++) {
+                journal.append(ride(id, "Origin " + id));
+                if (id < 3) {
+                    offset += recordSize(id, "Origin " + id);
+                }
+            }
+            awaitProjected(journal);
+            journal.close();
+        }
+        // One flipped bit in the third record's origin fails its CRC.
+        overwrite(segments(journalDir).get(0), offset + 59, "P".getBytes(StandardCharsets.US_ASCII));
+
+        try (Database second = new Database(dir.resolve("second.db"))) {
+            RideJournal journal = second.open(journalDir, 1 << 20);
+            awaitProjected(journal);
+            assertEquals(2, second.rides());
+            assertEquals(3, journal.append(ride(6, "After")));
+            journal.close();
+        }
+    }
+
+    @Test
+    void rollsOverAtTheRecordSizeBoundary() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        // The smallest segment holds exactly one record with both addresses at the limit.
+        String longest = "x".repeat(RideJournal.MAX_TEXT_BYTES);
+        RideEvent largest = RideEvent.requested(1, 7, longest, longest, 3.5, 12.25);
+        try (Database db = new Database(dir.resolve("rides.db"))) {
+            RideJournal journal = db.open(journalDir, 0);
+            db.breakProjection();
+            assertEquals(1, journal.append(largest));
+            assertEquals(1, segments(journalDir).size());
+            assertEquals(2, journal.append(ride(2, "Small")));
+            assertEquals(3, journal.append(ride(3, "Also small")));
+            assertEquals(4, journal.append(RideEvent.requested(4, 7, longest, longest, 3.5, 12.25)));
+            journal.close();
+
+            List<Path> segments = segments(journalDir);
+            assertEquals(3, segments.size());
+            assertTrue(segments.get(0).getFileName().toString().contains("0000000000000000001"));
+            assertTrue(segments.get(1).getFileName().toString().contains("0000000000000000002"));
+            assertTrue(segments.get(2).getFileName().toString().contains("0000000000000000004"));
+
+            db.restoreProjection();
+            RideJournal reopened = db.open(journalDir, 0);
+            awaitProjected(reopened);
+            assertEquals(4, db.rides());
+            assertEquals(longest, db.origin(1));
+            assertEquals("Also small", db.origin(3));
+            assertEquals(longest, db.origin(4));
+            reopened.close();
+        }
+    }
+
+    @Test
+    void refusesAnOversizeAddressWithoutUsingASequence() throws Exception {
+        try (Database db = new Database(dir.resolve("rides.db"))) {
+            RideJournal journal = db.open(dir.resolve("journal"), 1 << 20);
+            assertThrows(IllegalArgumentException.class,
+                    () -> journal.append(ride(1, "x".repeat(RideJournal.MAX_TEXT_BYTES + 1))));
+            assertEquals(1, journal.append(ride(1, "Fits")));
+            journal.close();
+        }
+    }
+
+    @Test
+    void retriesAFailedBatchWithoutNewEvents() throws Exception {
+        try (Database db = new Database(dir.resolve("rides.db"))) {
+            RideJournal journal = db.open(dir.resolve("journal"), 1 << 20);
+            db.breakProjection();
+            for (long id = 1; id <= 3; id++) {
+                journal.append(ride(id, "Origin " + id));
+            }
+            Thread.sleep(300);
+            assertEquals(3, journal.lag());
+
+            db.restoreProjection();
+            // Nothing else is appended; the failed batch must go through on its own.
+            awaitProjected(journal);
+            assertEquals(3, db.rides());
+            assertEquals(3, db.checkpoint());
+            journal.close();
+        }
+    }
+
+    @Test
+    void replaysFromTheCheckpointAfterAFailedProjection() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        try (Database db = new Database(dir.resolve("rides.db"))) {
+            RideJournal journal = db.open(journalDir, 1 << 20);
+            journal.append(ride(1, "Origin 1"));
+            journal.append(ride(2, "Origin 2"));
+            awaitProjected(journal);
+
+            db.breakProjection();
+            for (long id = 3; id <= 5; id++) {
+                journal.append(ride(id, "Origin " + id));
+            }
+            journal.close();
+            db.restoreProjection();
+            assertEquals(2, db.checkpoint());
+            assertEquals(2, db.rides());
+
+            RideJournal reopened = db.open(journalDir, 1 << 20);
+            awaitProjected(reopened);
+            assertEquals(5, db.rides());
+            assertEquals(5, db.checkpoint());
+            assertEquals("Origin 5", db.origin(5));
+            assertEquals(6, reopened.nextRideId());
+            assertEquals(6, reopened.append(ride(6, "Origin 6")));
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.rideshareapp.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchMatcherTest {
+
+    /** A batch in the matcher's compressed form. */
+    private record Batch(int requests, int[] offsets, int[] drivers, double[] costs) {
+
+        int[] match(BatchMatcher.Strategy strategy) {
+            return BatchMatcher.match(requests, offsets, drivers, costs, strategy);
+        }
+
+        double totalCost(int[] result) {
+            return BatchMatcher.totalCost(offsets, drivers, costs, result);
+        }
+    }
+
+    /** Builds a batch from {driver, cost} candidate pairs, one list per request. */
+    private static Batch batch(double[][]... candidates) {
+        int n = candidates.length;
+        int[] offsets = new int[n + 1];
+        for (int r = 0; r < n; r++) {
+            offsets[r + 1] = offsets[r] + candidates[r].length;
+        }
+        int[] drivers = new int[offsets[n]];
+        double[] costs = new double[offsets[n]];
+        for (int r = 0; r < n; r++) {
+            for (int j = 0; j < candidates[r].length; j++) {
+                drivers[offsets[r] + j] = (int) candidates[r][j][0];
+                costs[offsets[r] + j] = candidates[r][j][1];
+            }
+        }
+        return new Batch(n, offsets, drivers, costs);
+    }
+
+    private static double[] c(int driver, double cost) {
+        return new double[]{driver, cost};
+    }
+
+    private static int matched(int[] result) {
+        return (int) IntStream.of(result).filter(d -> d >= 0).count();
+    }
+
+    /** Each request gets one of its own candidates or -1, and no driver is assigned twice. */
+    private static void assertValid(Batch b, int[] result) {
+        assertEquals(b.requests(), result.length);
+        Set<Integer> used = new HashSet<>();
+        for (int r = 0; r < result.length; r++) {
+            if (result[r] < 0) {
+                continue;
+            }
+            assertTrue(used.add(result[r]), "driver " + result[r] + " assigned twice");
+            boolean candidate = false;
+            for (int i = b.offsets()[r]; i < b.offsets()[r + 1]; i++) {
+                candidate |= b.drivers()[i] == result[r];
+            }
+            assertTrue(candidate, "driver " + result[r] + " is not a candidate of request " + r);
+        }
+    }
+
+    @Test
+    void strategiesRankByTotalCost() {
+        Batch b = batch(
+                // first come takes driver 1 for request 0, leaving request 1 the expensive driver 2
+                new double[][]{c(1, 1), c(2, 2)},
+                new double[][]{c(1, 0.5), c(2, 10)},
+                // greedy takes the cheapest pair, request 2 with driver 3, leaving request 3 the expensive driver 4
+                new double[][]{c(3, 1), c(4, 3)},
+                new double[][]{c(3, 1.5), c(4, 100)});
+
+        int[] firstCome = b.match(BatchMatcher.Strategy.FIRST_COME);
+        int[] greedy = b.match(BatchMatcher.Strategy.GREEDY);
+        int[] optimal = b.match(BatchMatcher.Strategy.OPTIMAL);
+
+        assertArrayEquals(new int[]{1, 2, 3, 4}, firstCome);
+        assertArrayEquals(new int[]{2, 1, 3, 4}, greedy);
+        assertArrayEquals(new int[]{2, 1, 4, 3}, optimal);
+        assertEquals(112, b.totalCost(firstCome), 1e-9);
+        assertEquals(103.5, b.totalCost(greedy), 1e-9);
+        assertEquals(7, b.totalCost(optimal), 1e-9);
+    }
+
+    @Test
+    void strategiesRankByTotalCostOnNearbyDrivers() {
+        Random random = new Random(42);
+        int requests = 400;
+        int k = 6;
+        double[][] drivers = new double[2_000][];
+        for (int d = 0; d < drivers.length; d++) {
+            drivers[d] = new double[]{random.nextDouble() * 20, random.nextDouble() * 20};
+        }
+        // each request's k nearest drivers, as dispatch looks them up
+        double[][][] candidates = new double[requests][][];
+        for (int r = 0; r < requests; r++) {
+            double x = random.nextDouble() * 20;
+            double y = random.nextDouble() * 20;
+            candidates[r] = IntStream.range(0, drivers.length)
+                    .mapToObj(d -> c(d, Math.hypot(drivers[d][0] - x, drivers[d][1] - y)))
+                    .sorted(Comparator.comparingDouble(p -> p[1]))
+                    .limit(k)
+                    .toArray(double[][]::new);
+        }
+        Batch b = batch(candidates);
+
+        int[] firstCome = b.match(BatchMatcher.Strategy.FIRST_COME);
+        int[] greedy = b.match(BatchMatcher.Strategy.GREEDY);
+        int[] optimal = b.match(BatchMatcher.Strategy.OPTIMAL);
+
+        assertValid(b, firstCome);
+        assertValid(b, greedy);
+        assertValid(b, optimal);
+        // with plenty of drivers every strategy matches every request, so the costs compare directly
+        assertEquals(requests, matched(firstCome));
+        assertEquals(requests, matched(greedy));
+        assertEquals(requests, matched(optimal));
+        assertTrue(b.totalCost(optimal) <= b.totalCost(greedy) + 1e-9);
+        assertTrue(b.totalCost(greedy) <= b.totalCost(firstCome) + 1e-9);
+    }
+
+    @Test
+    void neverAssignsADriverTwice() {
+        Random random = new Random(7);
+        for (int t = 0; t < 500; t++) {
+            Batch b = randomBatch(random, 1 + random.nextInt(40), 1 + random.nextInt(30), 5);
+            for (BatchMatcher.Strategy strategy : BatchMatcher.Strategy.values()) {
+                assertValid(b, b.match(strategy));
+            }
+        }
+    }
+
+    @Test
+    void componentWithFewerDriversThanRequests() {
+        Batch b = batch(
+                // three requests sharing two drivers
+                new double[][]{c(1, 5)},
+                new double[][]{c(1, 1), c(2, 9)},
+                new double[][]{c(2, 2)},
+                // and a component of its own
+                new double[][]{c(3, 4)});
+
+        for (BatchMatcher.Strategy strategy : BatchMatcher.Strategy.values()) {
+            int[] result = b.match(strategy);
+            assertValid(b, result);
+            assertEquals(2, matched(new int[]{result[0], result[1], result[2]}), strategy.name());
+            assertEquals(3, result[3], strategy.name());
+        }
+        int[] optimal = b.match(BatchMatcher.Strategy.OPTIMAL);
+        assertArrayEquals(new int[]{-1, 1, 2, 3}, optimal);
+        assertEquals(7, b.totalCost(optimal), 1e-9);
+    }
+
+    @Test
+    void optimalMatchesMostRequestsBeforeCost() {
+        // request 0 could take driver 1 for nothing, but then request 1 would go without
+        Batch b = batch(
+                new double[][]{c(1, 0), c(2, 50)},
+                new double[][]{c(1, 50)});
+
+        assertArrayEquals(new int[]{2, 1}, b.match(BatchMatcher.Strategy.OPTIMAL));
+    }
+
+    @Test
+    void optimalAgreesWithExhaustiveSearch() {
+        Random random = new Random(1);
+        for (int t = 0; t < 2_000; t++) {
+            Batch b = randomBatch(random, 1 + random.nextInt(7), 1 + random.nextInt(8), 4);
+            double[] best = best(b, 0, new HashSet<>());
+            int[] optimal = b.match(BatchMatcher.Strategy.OPTIMAL);
+
+            assertValid(b, optimal);
+            assertEquals((int) best[0], matched(optimal));
+            assertEquals(best[1], b.totalCost(optimal), 1e-6);
+            for (BatchMatcher.Strategy strategy : BatchMatcher.Strategy.values()) {
+                int[] result = b.match(strategy);
+                assertTrue(matched(result) <= matched(optimal));
+                if (matched(result) == matched(optimal)) {
+                    assertTrue(b.totalCost(optimal) <= b.totalCost(result) + 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    void requestsWithoutCandidatesGoUnmatched() {
+        Batch b = batch(new double[][]{}, new double[][]{c(1, 1)}, new double[][]{});
+
+        for (BatchMatcher.Strategy strategy : BatchMatcher.Strategy.values()) {
+            assertArrayEquals(new int[]{-1, 1, -1}, b.match(strategy));
+        }
+        assertArrayEquals(new int[0], batch().match(BatchMatcher.Strategy.OPTIMAL));
+    }
+
+    /** Up to {@code k} distinct random candidates per request, out of {@code drivers}. */
+    private static Batch randomBatch(Random random, int requests, int drivers, int k) {
+        double[][][] candidates = new double[requests][][];
+        for (int r = 0; r < requests; r++) {
+            List<Integer> pool = new ArrayList<>(IntStream.range(0, drivers).boxed().toList());
+            Collections.shuffle(pool, random);
+            candidates[r] = pool.stream()
+                    .limit(random.nextInt(Math.min(drivers, k) + 1))
+                    .map(d -> c(100 + d, random.nextDouble() * 5))
+                    .toArray(double[][]::new);
+        }
+        return batch(candidates);
+    }
+
+    /** Most matches, then lowest cost, over every assignment of requests {@code r} onward. */
+    private static double[] best(Batch b, int r, Set<Integer> used) {
+        if (r == b.requests()) {
+            return new double[]{0, 0};
+        }
+        double[] best = best(b, r + 1, used);
+        for (int i = b.offsets()[r]; i < b.offsets()[r + 1]; i++) {
+            if (used.add(b.drivers()[i])) {
+                double[] rest = best(b, r + 1, used);
+                used.remove(b.drivers()[i]);
+                double count = rest[0] + 1;
+                double cost = rest[1] + b.costs()[i];
+                if (count > best[0] || (count == best[0] && cost < best[1])) {
+                    best = new double[]{count, cost};
+                }
+            }
+        }
+        return best;
+    }
+}